@@ -0,0 +1,37 @@
+-- AI 计划生成任务表
+-- 任务由后端各节点通过 FOR UPDATE SKIP LOCKED 认领执行,节点失联后超时任务会被重新认领
+-- 执行方式同 001:在 Supabase SQL Editor 中复制并执行此脚本
+
+-- ============================================
+-- 1. 创建 ai_generation_jobs 表
+-- ============================================
+CREATE TABLE IF NOT EXISTS ai_generation_jobs (
+    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    user_id UUID NOT NULL REFERENCES auth.users(id) ON DELETE CASCADE,
+    status TEXT NOT NULL DEFAULT 'pending' CHECK (status IN ('pending', 'running', 'completed', 'failed')),
+    request JSONB NOT NULL,
+    result JSONB,
+    error TEXT,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    worker_id TEXT,
+    locked_at TIMESTAMPTZ,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT NOW()
+);
+
+-- 创建索引
+CREATE INDEX IF NOT EXISTS idx_ai_generation_jobs_status_created_at ON ai_generation_jobs(status, created_at);
+CREATE INDEX IF NOT EXISTS idx_ai_generation_jobs_user_id ON ai_generation_jobs(user_id);
+
+-- 复用 001 中的 update_updated_at_column 函数
+CREATE TRIGGER update_ai_generation_jobs_updated_at BEFORE UPDATE ON ai_generation_jobs
+FOR EACH ROW EXECUTE FUNCTION update_updated_at_column();
+
+-- ============================================
+-- 2. 启用 Row Level Security (RLS)
+-- ============================================
+ALTER TABLE ai_generation_jobs ENABLE ROW LEVEL SECURITY;
+
+-- 用户只能查看自己的任务(后端服务使用 service role 连接,不受此限制)
+CREATE POLICY "Users can view own ai jobs" ON ai_generation_jobs
+    FOR SELECT USING (auth.uid() = user_id);
@@ -0,0 +1,23 @@
+-- 高德地图查询缓存表(地点搜索、地理编码的原始响应)
+-- 作为内存缓存之下的持久层,重启后仍然有效,多个后端节点共享;过期行由后端定时清理
+-- 执行方式同 001:在 Supabase SQL Editor 中复制并执行此脚本
+
+-- ============================================
+-- 1. 创建 amap_cache 表
+-- ============================================
+CREATE TABLE IF NOT EXISTS amap_cache (
+    cache_key TEXT PRIMARY KEY,
+    api TEXT NOT NULL CHECK (api IN ('search', 'geocode')),
+    response TEXT NOT NULL,
+    expires_at TIMESTAMPTZ NOT NULL,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT NOW()
+);
+
+-- 创建索引
+CREATE INDEX IF NOT EXISTS idx_amap_cache_expires_at ON amap_cache(expires_at);
+
+-- ============================================
+-- 2. 启用 Row Level Security (RLS)
+-- ============================================
+-- 不创建任何策略:只有后端(service role 连接)可以读写
+ALTER TABLE amap_cache ENABLE ROW LEVEL SECURITY;
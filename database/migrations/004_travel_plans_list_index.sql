@@ -0,0 +1,10 @@
+-- 旅行计划列表索引
+-- 列表按 (user_id, created_at DESC, id DESC) 游标分页,复合索引与排序一致,
+-- 每页只读取索引上的一段,不再扫描该用户的全部计划再排序
+-- 执行方式同 001:在 Supabase SQL Editor 中复制并执行此脚本
+
+CREATE INDEX IF NOT EXISTS idx_travel_plans_user_created
+    ON travel_plans(user_id, created_at DESC, id DESC);
+
+-- 新索引以 user_id 开头,可以替代原来的单列索引
+DROP INDEX IF EXISTS idx_travel_plans_user_id;
@@ -0,0 +1,94 @@
+package com.shingeki.travelplannerbackend.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.DnsResolver;
+import org.apache.hc.client5.http.SchemePortResolver;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.io.HttpClientConnectionOperator;
+import org.apache.hc.client5.http.ssl.TlsSocketStrategy;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+
+/**
+ * 高德 Web 服务 HTTP 客户端配置
+ * 与通义千问相同,使用带连接池的 Apache HttpClient 复用 keep-alive 连接;
+ * HttpClient 默认带 Accept-Encoding: gzip 请求压缩响应并自动解压
+ */
+@Configuration
+public class AmapHttpClientConfig {
+
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager amapConnectionManager(
+            @Value("${amap.http.max-connections:50}") int maxConnections,
+            @Value("${amap.http.connect-timeout:3s}") Duration connectTimeout,
+            @Value("${amap.http.read-timeout:5s}") Duration readTimeout,
+            @Value("${amap.http.connection-ttl:5m}") Duration connectionTtl,
+            MeterRegistry meterRegistry) {
+        PoolingHttpClientConnectionManagerBuilder builder = new PoolingHttpClientConnectionManagerBuilder() {
+            @Override
+            protected HttpClientConnectionOperator createConnectionOperator(SchemePortResolver schemePortResolver,
+                                                                            DnsResolver dnsResolver,
+                                                                            TlsSocketStrategy tlsSocketStrategy) {
+                return new TimedConnectionOperator(
+                        super.createConnectionOperator(schemePortResolver, dnsResolver, tlsSocketStrategy),
+                        meterRegistry, "amap");
+            }
+        };
+        // 只访问 restapi.amap.com 一个主机,单路由上限与总上限相同
+        PoolingHttpClientConnectionManager connectionManager = builder
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnections)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setSocketTimeout(Timeout.of(readTimeout))
+                        .setTimeToLive(TimeValue.of(connectionTtl))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(10))
+                        .build())
+                .build();
+
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "amap").bindTo(meterRegistry);
+        return connectionManager;
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient amapHttpClient(
+            @Qualifier("amapConnectionManager") PoolingHttpClientConnectionManager connectionManager,
+            @Value("${amap.http.pool-acquire-timeout:2s}") Duration poolAcquireTimeout,
+            @Value("${amap.http.read-timeout:5s}") Duration readTimeout,
+            @Value("${amap.http.idle-eviction:60s}") Duration idleEviction) {
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(poolAcquireTimeout))
+                        .setResponseTimeout(Timeout.of(readTimeout))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(idleEviction))
+                .build();
+    }
+
+    @Bean
+    public RestTemplate amapRestTemplate(RestTemplateBuilder restTemplateBuilder,
+                                         @Qualifier("amapHttpClient") CloseableHttpClient httpClient,
+                                         MeterRegistry meterRegistry) {
+        return restTemplateBuilder
+                .requestFactory(() -> new HttpComponentsClientHttpRequestFactory(httpClient))
+                .additionalInterceptors(new FirstByteTimingInterceptor(meterRegistry, "amap"))
+                .build();
+    }
+}
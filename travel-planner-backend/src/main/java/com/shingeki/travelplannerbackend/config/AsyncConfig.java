@@ -0,0 +1,128 @@
+package com.shingeki.travelplannerbackend.config;
+
+import com.shingeki.travelplannerbackend.security.CurrentUser;
+import com.shingeki.travelplannerbackend.service.AmapUpstreamScheduler;
+import com.shingeki.travelplannerbackend.support.FairTaskExecutor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.task.ThreadPoolTaskSchedulerBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.util.Objects;
+
+/**
+ * 异步任务配置
+ * AI 相关的耗时任务(解析、生成、流式生成)运行在独立的有界线程池上,不占用 Tomcat 请求线程;
+ * 线程和队列都满时直接拒绝(返回 503),避免 AI 高峰拖垮计划增删改查等普通接口
+ * 所有 AI 线程池都把提交任务时的用户(CurrentUser)传到执行线程,用于按用户统计用量
+ */
+@Configuration
+@EnableScheduling
+public class AsyncConfig {
+
+    @Bean(name = "aiTaskExecutor")
+    public ThreadPoolTaskExecutor aiTaskExecutor(
+            @Value("${ai.executor.core-size:32}") int coreSize,
+            @Value("${ai.executor.max-size:64}") int maxSize,
+            @Value("${ai.executor.queue-capacity:200}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(coreSize);
+        executor.setMaxPoolSize(maxSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("ai-task-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.setTaskDecorator(CurrentUser::propagate);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 长行程按天并行生成使用的线程池,与 aiTaskExecutor 分开以免互相等待
+     */
+    @Bean(name = "aiFanOutExecutor")
+    public ThreadPoolTaskExecutor aiFanOutExecutor(
+            @Value("${ai.fanout.pool-size:16}") int poolSize,
+            @Value("${ai.fanout.queue-capacity:200}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("ai-fanout-");
+        executor.setTaskDecorator(CurrentUser::propagate);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 用户输入解析的对冲请求线程池,不排队,满时直接调用不对冲
+     */
+    @Bean(name = "aiHedgeExecutor")
+    public ThreadPoolTaskExecutor aiHedgeExecutor(
+            @Value("${ai.parse.hedge.pool-size:16}") int poolSize) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("ai-hedge-");
+        executor.setTaskDecorator(CurrentUser::propagate);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 预测性生成使用的线程池,线程数即同时进行的预测生成上限,不排队
+     */
+    @Bean(name = "aiSpeculationExecutor")
+    public ThreadPoolTaskExecutor aiSpeculationExecutor(
+            @Value("${ai.speculation.max-concurrent:4}") int maxConcurrent) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrent);
+        executor.setMaxPoolSize(maxConcurrent);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("ai-speculation-");
+        executor.setTaskDecorator(CurrentUser::propagate);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 高德查询并发使用的线程池(行程坐标补全、批量查询、接口代理),线程数即同时进行的高德查询上限
+     * 按调用方(已登录为用户,否则为客户端地址)公平排队,单个调用方的批量查询不会占满队列挡住其他人;
+     * 任务带上提交时间,上游调度的 max-wait 从提交时开始计算
+     */
+    @Bean(name = "amapExecutor")
+    public FairTaskExecutor amapExecutor(
+            @Value("${amap.executor.pool-size:8}") int poolSize,
+            @Value("${amap.executor.queue-capacity:500}") int queueCapacity) {
+        return new FairTaskExecutor("amap-", poolSize, queueCapacity,
+                () -> Objects.requireNonNullElse(CurrentUser.caller(), AmapUpstreamScheduler.ANONYMOUS),
+                task -> AmapUpstreamScheduler.propagateSubmitTime(CurrentUser.propagate(task)));
+    }
+
+    /**
+     * 定时任务(任务认领、续租等)使用的调度线程池,按 spring.task.scheduling.* 配置
+     * 与 aiJobEventsScheduler 并存时 Spring Boot 不再自动创建,需要显式声明
+     */
+    @Bean(name = "taskScheduler")
+    public ThreadPoolTaskScheduler taskScheduler(ThreadPoolTaskSchedulerBuilder builder) {
+        return builder.build();
+    }
+
+    /**
+     * 生成任务 SSE 订阅的状态轮询线程池,与定时任务分开,订阅再多也不会推迟任务续租
+     */
+    @Bean(name = "aiJobEventsScheduler")
+    public ThreadPoolTaskScheduler aiJobEventsScheduler(
+            @Value("${ai.jobs.events.pool-size:4}") int poolSize) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(poolSize);
+        scheduler.setThreadNamePrefix("ai-job-events-");
+        scheduler.setRemoveOnCancelPolicy(true);
+        scheduler.initialize();
+        return scheduler;
+    }
+}
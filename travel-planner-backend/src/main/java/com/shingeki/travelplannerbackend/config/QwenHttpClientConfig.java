@@ -0,0 +1,147 @@
+package com.shingeki.travelplannerbackend.config;
+
+import com.shingeki.travelplannerbackend.support.AdaptiveConcurrencyLimiter;
+import com.shingeki.travelplannerbackend.support.CircuitBreaker;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.DnsResolver;
+import org.apache.hc.client5.http.SchemePortResolver;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.io.HttpClientConnectionOperator;
+import org.apache.hc.client5.http.ssl.TlsSocketStrategy;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+
+/**
+ * 通义千问 HTTP 客户端配置
+ * 使用带连接池的 Apache HttpClient,复用 keep-alive 连接,避免并发时每次调用都重新建立 TLS 连接
+ */
+@Configuration
+public class QwenHttpClientConfig {
+
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager qwenConnectionManager(
+            @Value("${qwen.http.max-connections:100}") int maxConnections,
+            @Value("${qwen.http.max-connections-per-route:50}") int maxConnectionsPerRoute,
+            @Value("${qwen.http.connect-timeout:10s}") Duration connectTimeout,
+            @Value("${qwen.http.read-timeout:120s}") Duration readTimeout,
+            @Value("${qwen.http.connection-ttl:5m}") Duration connectionTtl,
+            MeterRegistry meterRegistry) {
+        // 新建连接的耗时单独记录(ai.http.connect)
+        PoolingHttpClientConnectionManagerBuilder builder = new PoolingHttpClientConnectionManagerBuilder() {
+            @Override
+            protected HttpClientConnectionOperator createConnectionOperator(SchemePortResolver schemePortResolver,
+                                                                            DnsResolver dnsResolver,
+                                                                            TlsSocketStrategy tlsSocketStrategy) {
+                return new TimedConnectionOperator(
+                        super.createConnectionOperator(schemePortResolver, dnsResolver, tlsSocketStrategy),
+                        meterRegistry, "qwen");
+            }
+        };
+        PoolingHttpClientConnectionManager connectionManager = builder
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setSocketTimeout(Timeout.of(readTimeout))
+                        .setTimeToLive(TimeValue.of(connectionTtl))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(10))
+                        .build())
+                .build();
+
+        // 连接池指标:租用、空闲、等待中的连接数
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "qwen").bindTo(meterRegistry);
+        return connectionManager;
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient qwenHttpClient(
+            @Qualifier("qwenConnectionManager") PoolingHttpClientConnectionManager connectionManager,
+            @Value("${qwen.http.pool-acquire-timeout:5s}") Duration poolAcquireTimeout,
+            @Value("${qwen.http.idle-eviction:60s}") Duration idleEviction) {
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(poolAcquireTimeout))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(idleEviction))
+                .build();
+    }
+
+    @Bean
+    public RestTemplate qwenRestTemplate(RestTemplateBuilder restTemplateBuilder,
+                                         @Qualifier("qwenHttpClient") CloseableHttpClient httpClient,
+                                         MeterRegistry meterRegistry) {
+        return restTemplateBuilder
+                .requestFactory(() -> new HttpComponentsClientHttpRequestFactory(httpClient))
+                .additionalInterceptors(new FirstByteTimingInterceptor(meterRegistry, "qwen"))
+                .build();
+    }
+
+    /**
+     * 通义千问调用的自适应并发限制,上游变慢时自动收缩并发,超出部分排队或快速拒绝
+     */
+    @Bean
+    public AdaptiveConcurrencyLimiter qwenConcurrencyLimiter(
+            @Value("${qwen.limiter.initial-limit:16}") int initialLimit,
+            @Value("${qwen.limiter.min-limit:2}") int minLimit,
+            @Value("${qwen.limiter.max-limit:64}") int maxLimit,
+            @Value("${qwen.limiter.backoff-ratio:0.9}") double backoffRatio,
+            @Value("${qwen.limiter.latency-threshold:90s}") Duration latencyThreshold,
+            @Value("${qwen.limiter.queue-size:32}") int queueSize,
+            @Value("${qwen.limiter.max-wait:10s}") Duration maxWait,
+            @Value("${qwen.limiter.retry-after:10s}") Duration retryAfter,
+            MeterRegistry meterRegistry) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit,
+                backoffRatio, latencyThreshold, queueSize, maxWait, retryAfter);
+
+        Gauge.builder("ai.limiter.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .tag("name", "qwen").register(meterRegistry);
+        Gauge.builder("ai.limiter.in_flight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                .tag("name", "qwen").register(meterRegistry);
+        Gauge.builder("ai.limiter.queue_depth", limiter, AdaptiveConcurrencyLimiter::getQueueDepth)
+                .tag("name", "qwen").register(meterRegistry);
+        FunctionCounter.builder("ai.limiter.rejections", limiter, AdaptiveConcurrencyLimiter::getRejected)
+                .tag("name", "qwen").register(meterRegistry);
+        return limiter;
+    }
+
+    /**
+     * 通义千问调用熔断器,上游故障期间直接返回降级结果,不再等待读取超时
+     */
+    @Bean
+    public CircuitBreaker qwenCircuitBreaker(
+            @Value("${qwen.circuit-breaker.window-size:20}") int windowSize,
+            @Value("${qwen.circuit-breaker.minimum-calls:10}") int minimumCalls,
+            @Value("${qwen.circuit-breaker.failure-rate-threshold:0.5}") double failureRateThreshold,
+            @Value("${qwen.circuit-breaker.open-duration:30s}") Duration openDuration,
+            @Value("${qwen.circuit-breaker.half-open-calls:3}") int halfOpenCalls,
+            MeterRegistry meterRegistry) {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(windowSize, minimumCalls, failureRateThreshold,
+                openDuration, halfOpenCalls);
+
+        // 0 - 关闭,1 - 打开,2 - 半开
+        Gauge.builder("ai.circuit_breaker.state", circuitBreaker, cb -> cb.getState().ordinal())
+                .tag("name", "qwen").register(meterRegistry);
+        FunctionCounter.builder("ai.circuit_breaker.not_permitted", circuitBreaker, CircuitBreaker::getNotPermitted)
+                .tag("name", "qwen").register(meterRegistry);
+        return circuitBreaker;
+    }
+}
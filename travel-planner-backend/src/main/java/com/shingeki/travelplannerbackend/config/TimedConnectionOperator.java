@@ -0,0 +1,80 @@
+package com.shingeki.travelplannerbackend.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.hc.client5.http.io.HttpClientConnectionOperator;
+import org.apache.hc.client5.http.io.ManagedHttpClientConnection;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.io.SocketConfig;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.net.NamedEndpoint;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 记录新建连接耗时(DNS、TCP 和 TLS 握手)的连接操作器,指标为 ai.http.connect
+ * 连接池复用的连接不经过这里,耗时分布可以反映 keep-alive 复用是否生效
+ */
+class TimedConnectionOperator implements HttpClientConnectionOperator {
+
+    private final HttpClientConnectionOperator delegate;
+    private final MeterRegistry meterRegistry;
+    private final String client;
+
+    TimedConnectionOperator(HttpClientConnectionOperator delegate, MeterRegistry meterRegistry, String client) {
+        this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+        this.client = client;
+    }
+
+    @Override
+    public void connect(ManagedHttpClientConnection conn, HttpHost host, InetSocketAddress localAddress,
+                        TimeValue connectTimeout, SocketConfig socketConfig, HttpContext context) throws IOException {
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            delegate.connect(conn, host, localAddress, connectTimeout, socketConfig, context);
+            outcome = "success";
+        } finally {
+            record(host, outcome, start);
+        }
+    }
+
+    @Override
+    public void connect(ManagedHttpClientConnection conn, HttpHost host, NamedEndpoint endpointName,
+                        InetSocketAddress localAddress, Timeout connectTimeout, SocketConfig socketConfig,
+                        Object attachment, HttpContext context) throws IOException {
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            delegate.connect(conn, host, endpointName, localAddress, connectTimeout, socketConfig, attachment, context);
+            outcome = "success";
+        } finally {
+            record(host, outcome, start);
+        }
+    }
+
+    @Override
+    public void upgrade(ManagedHttpClientConnection conn, HttpHost host, HttpContext context) throws IOException {
+        delegate.upgrade(conn, host, context);
+    }
+
+    @Override
+    public void upgrade(ManagedHttpClientConnection conn, HttpHost host, NamedEndpoint endpointName,
+                        Object attachment, HttpContext context) throws IOException {
+        delegate.upgrade(conn, host, endpointName, attachment, context);
+    }
+
+    private void record(HttpHost host, String outcome, long start) {
+        Timer.builder("ai.http.connect")
+                .tag("client", client)
+                .tag("host", host.getHostName())
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+}
@@ -4,13 +4,30 @@ import com.shingeki.travelplannerbackend.dto.GeneratePlanRequest;
 import com.shingeki.travelplannerbackend.dto.GeneratedPlanResponse;
 import com.shingeki.travelplannerbackend.security.SupabaseJwtValidator;
 import com.shingeki.travelplannerbackend.service.AIService;
+import com.shingeki.travelplannerbackend.service.SpeculativePlanService;
+import com.shingeki.travelplannerbackend.support.LimitExceededException;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * AI 控制器 - 生成旅行计划
@@ -23,43 +40,169 @@ public class AIController {
     @Autowired
     private AIService aiService;
 
+    @Autowired
+    private SpeculativePlanService speculativePlanService;
+
     @Autowired
     private SupabaseJwtValidator jwtValidator;
 
+    @Autowired
+    @Qualifier("aiTaskExecutor")
+    private TaskExecutor aiTaskExecutor;
+
+    // AI 请求在独立线程池中的最长处理时间
+    @Value("${ai.request-timeout:170s}")
+    private Duration aiRequestTimeout;
+
+    // 与 server.tomcat.connection-timeout 保持一致
+    private static final long STREAM_TIMEOUT_MS = 180000L;
+
     /**
      * 智能解析用户输入
+     * 在 AI 线程池中异步执行,不占用 Tomcat 请求线程
      */
     @PostMapping("/parse-input")
-    public ResponseEntity<Map<String, Object>> parseUserInput(
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> parseUserInput(
             @RequestBody Map<String, String> request,
             @RequestHeader("Authorization") String authHeader) {
         
         // 验证用户身份
-        jwtValidator.validateTokenAndGetUserId(authHeader);
+        UUID userId = jwtValidator.validateTokenAndGetUserId(authHeader);
         
         String userInput = request.get("userInput");
         
-        // 调用 AI 服务解析用户输入
-        Map<String, Object> parsedData = aiService.parseUserInput(userInput);
-        
-        return ResponseEntity.ok(parsedData);
+        // 调用 AI 服务解析用户输入;需求完整时在后台预测生成计划(需开启 ai.speculation.enabled)
+        return CompletableFuture
+                .supplyAsync(() -> aiService.parseUserInput(userInput), aiTaskExecutor)
+                .orTimeout(aiRequestTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .thenApply(result -> {
+                    speculativePlanService.speculate(userId, userInput, result);
+                    return ResponseEntity.ok(result);
+                });
     }
 
     /**
      * 生成旅行计划
+     * 在 AI 线程池中异步执行,不占用 Tomcat 请求线程
      */
     @PostMapping("/generate-plan")
-    public ResponseEntity<GeneratedPlanResponse> generatePlan(
+    public CompletableFuture<ResponseEntity<GeneratedPlanResponse>> generatePlan(
             @Valid @RequestBody GeneratePlanRequest request,
             @RequestHeader("Authorization") String authHeader) {
         
         // 验证用户身份
-        jwtValidator.validateTokenAndGetUserId(authHeader);
+        UUID userId = jwtValidator.validateTokenAndGetUserId(authHeader);
+
+        // 与预测一致时,生成请求会合并到预测任务或直接命中缓存
+        speculativePlanService.claim(userId, request);
         
         // 调用 AI 服务生成计划
-        GeneratedPlanResponse response = aiService.generateTravelPlan(request);
+        return CompletableFuture
+                .supplyAsync(() -> aiService.generateTravelPlan(request), aiTaskExecutor)
+                .orTimeout(aiRequestTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .thenApply(ResponseEntity::ok);
+    }
+
+    /**
+     * 流式生成旅行计划(SSE)
+     * 事件:activity - 每完成一个活动推送一次;day - 每完成一天推送一次;complete - 完整计划;error - 生成失败
+     */
+    @PostMapping(value = "/generate-plan/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter generatePlanStream(
+            @Valid @RequestBody GeneratePlanRequest request,
+            @RequestHeader("Authorization") String authHeader,
+            HttpServletResponse servletResponse) {
         
-        return ResponseEntity.ok(response);
+        // 验证用户身份
+        UUID userId = jwtValidator.validateTokenAndGetUserId(authHeader);
+        Future<?> speculation = speculativePlanService.claim(userId, request);
+
+        // 禁止 nginx 缓冲 SSE 响应
+        servletResponse.setHeader("X-Accel-Buffering", "no");
+
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MS);
+        aiTaskExecutor.execute(() -> {
+            try {
+                // 流式生成不经过请求合并,先等待进行中的预测完成,再从缓存推送
+                awaitSpeculation(speculation);
+                GeneratedPlanResponse response = aiService.streamTravelPlan(request, dayPlan -> {
+                    try {
+                        emitter.send(SseEmitter.event().name("day").data(dayPlan, MediaType.APPLICATION_JSON));
+                    } catch (IOException e) {
+                        throw new IllegalStateException("客户端已断开连接", e);
+                    }
+                }, (day, activity) -> {
+                    try {
+                        Map<String, Object> event = new HashMap<>();
+                        event.put("day", day);
+                        event.put("activity", activity);
+                        emitter.send(SseEmitter.event().name("activity").data(event, MediaType.APPLICATION_JSON));
+                    } catch (IOException e) {
+                        throw new IllegalStateException("客户端已断开连接", e);
+                    }
+                });
+                emitter.send(SseEmitter.event().name("complete").data(response, MediaType.APPLICATION_JSON));
+                emitter.complete();
+            } catch (Exception e) {
+                try {
+                    Map<String, String> error = new HashMap<>();
+                    error.put("error", e.getMessage());
+                    emitter.send(SseEmitter.event().name("error").data(error, MediaType.APPLICATION_JSON));
+                    emitter.complete();
+                } catch (Exception sendError) {
+                    emitter.completeWithError(e);
+                }
+            }
+        });
+        
+        return emitter;
+    }
+
+    /**
+     * AI 线程池已满
+     */
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<Map<String, String>> handleTaskRejected(TaskRejectedException ex) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", "AI 服务繁忙，请稍后重试");
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", "10")
+                .body(error);
+    }
+
+    private void awaitSpeculation(Future<?> speculation) {
+        if (speculation == null) {
+            return;
+        }
+        try {
+            speculation.get(aiRequestTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // 预测失败或超时时正常流式生成
+        }
+    }
+
+    /**
+     * 上游 AI 调用已达到并发上限且等待队列已满,快速拒绝
+     */
+    @ExceptionHandler(LimitExceededException.class)
+    public ResponseEntity<Map<String, String>> handleLimitExceeded(LimitExceededException ex) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", String.valueOf(ex.getRetryAfter().toSeconds()))
+                .body(error);
+    }
+
+    /**
+     * AI 处理超时
+     */
+    @ExceptionHandler(TimeoutException.class)
+    public ResponseEntity<Map<String, String>> handleTimeout(TimeoutException ex) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", "AI 处理超时，请稍后重试");
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(error);
     }
 
     /**
@@ -0,0 +1,129 @@
+package com.shingeki.travelplannerbackend.controller;
+
+import com.shingeki.travelplannerbackend.dto.AIJobDTO;
+import com.shingeki.travelplannerbackend.dto.GeneratePlanRequest;
+import com.shingeki.travelplannerbackend.security.SupabaseJwtValidator;
+import com.shingeki.travelplannerbackend.service.AIJobService;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * AI 生成任务控制器 - 提交任务后通过轮询或 SSE 获取结果,不依赖单个长连接
+ */
+@RestController
+@RequestMapping("/api/ai/jobs")
+@CrossOrigin(origins = "*")
+public class AIJobController {
+
+    @Autowired
+    private AIJobService aiJobService;
+
+    @Autowired
+    private SupabaseJwtValidator jwtValidator;
+
+    @Autowired
+    @Qualifier("aiJobEventsScheduler")
+    private TaskScheduler eventsScheduler;
+
+    private static final long EVENTS_TIMEOUT_MS = 170000L;
+    private static final Duration EVENTS_POLL_INTERVAL = Duration.ofSeconds(1);
+
+    /**
+     * 提交生成任务
+     */
+    @PostMapping
+    public ResponseEntity<AIJobDTO> submitJob(
+            @Valid @RequestBody GeneratePlanRequest request,
+            @RequestHeader("Authorization") String authHeader) {
+        UUID userId = jwtValidator.validateTokenAndGetUserId(authHeader);
+        AIJobDTO job = aiJobService.submit(request, userId);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+    }
+
+    /**
+     * 查询任务状态和结果
+     */
+    @GetMapping("/{jobId}")
+    public ResponseEntity<AIJobDTO> getJob(
+            @PathVariable UUID jobId,
+            @RequestHeader("Authorization") String authHeader) {
+        UUID userId = jwtValidator.validateTokenAndGetUserId(authHeader);
+        return ResponseEntity.ok(aiJobService.getJob(jobId, userId));
+    }
+
+    /**
+     * 订阅任务状态(SSE)
+     * 事件:status - 状态变化;complete - 任务完成;error - 任务失败
+     * 连接断开后可重新订阅或改用轮询,任务不受影响
+     */
+    @GetMapping(value = "/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeJob(
+            @PathVariable UUID jobId,
+            @RequestHeader("Authorization") String authHeader,
+            HttpServletResponse servletResponse) {
+        UUID userId = jwtValidator.validateTokenAndGetUserId(authHeader);
+        aiJobService.getJob(jobId, userId); // 校验权限
+
+        servletResponse.setHeader("X-Accel-Buffering", "no");
+        SseEmitter emitter = new SseEmitter(EVENTS_TIMEOUT_MS);
+        AtomicReference<String> lastStatus = new AtomicReference<>();
+        AtomicReference<ScheduledFuture<?>> poller = new AtomicReference<>();
+
+        poller.set(eventsScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                AIJobDTO job = aiJobService.getJob(jobId, userId);
+                if (!job.getStatus().equals(lastStatus.getAndSet(job.getStatus()))) {
+                    emitter.send(SseEmitter.event().name("status").data(job.getStatus()));
+                }
+                if ("completed".equals(job.getStatus())) {
+                    emitter.send(SseEmitter.event().name("complete").data(job, MediaType.APPLICATION_JSON));
+                    emitter.complete();
+                } else if ("failed".equals(job.getStatus())) {
+                    Map<String, String> error = new HashMap<>();
+                    error.put("error", job.getError());
+                    emitter.send(SseEmitter.event().name("error").data(error, MediaType.APPLICATION_JSON));
+                    emitter.complete();
+                }
+            } catch (Exception e) {
+                emitter.completeWithError(e);
+            }
+        }, EVENTS_POLL_INTERVAL));
+
+        Runnable stopPolling = () -> {
+            ScheduledFuture<?> future = poller.get();
+            if (future != null) {
+                future.cancel(false);
+            }
+        };
+        emitter.onCompletion(stopPolling);
+        emitter.onTimeout(stopPolling);
+        emitter.onError(e -> stopPolling.run());
+
+        return emitter;
+    }
+
+    /**
+     * 全局异常处理
+     */
+    @ExceptionHandler(RuntimeException.class)
+    public ResponseEntity<Map<String, String>> handleRuntimeException(RuntimeException ex) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
+    }
+}
@@ -1,56 +1,77 @@
 package com.shingeki.travelplannerbackend.controller;
 
-import org.springframework.beans.factory.annotation.Value;
+import com.shingeki.travelplannerbackend.dto.MapBatchRequest;
+import com.shingeki.travelplannerbackend.dto.MapBatchResponse;
+import com.shingeki.travelplannerbackend.dto.PoiDTO;
+import com.shingeki.travelplannerbackend.security.SupabaseJwtValidator;
+import com.shingeki.travelplannerbackend.service.AmapResponseStatus;
+import com.shingeki.travelplannerbackend.service.AmapService;
+import com.shingeki.travelplannerbackend.service.MapBatchService;
+import com.shingeki.travelplannerbackend.service.PoiIndex;
+import com.shingeki.travelplannerbackend.support.Json;
+import com.shingeki.travelplannerbackend.support.LimitExceededException;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.client.RestTemplate;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
 
 /**
  * 地图服务控制器 - 代理高德地图 Web 服务 API
+ * 接口不要求登录;带 Authorization 时按用户、否则按客户端地址在高德上游调度中公平排队
  */
 @RestController
 @RequestMapping("/api/map")
 @CrossOrigin(origins = "*")
 public class MapController {
 
-    @Value("${amap.api.key}")
-    private String amapApiKey;
+    @Autowired
+    private AmapService amapService;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Autowired
+    private MapBatchService mapBatchService;
+
+    @Autowired
+    private PoiIndex poiIndex;
+
+    @Autowired
+    private SupabaseJwtValidator jwtValidator;
+
+    @Autowired
+    @Qualifier("amapExecutor")
+    private TaskExecutor amapExecutor;
 
     /**
      * 地点搜索接口（POI搜索）
+     * 命中本地索引或内存缓存时直接返回,否则在高德线程池中查询,等待高德期间不占用请求线程
      * @param keywords 搜索关键词
      * @param city 城市（可选）
      * @return 搜索结果
      */
     @GetMapping("/search")
-    public ResponseEntity<?> searchPlace(
+    public CompletableFuture<ResponseEntity<?>> searchPlace(
             @RequestParam String keywords,
-            @RequestParam(required = false) String city
+            @RequestParam(required = false) String city,
+            @RequestHeader(value = "Authorization", required = false) String authHeader
     ) {
-        try {
-            // 构建请求 URL
-            String url = "https://restapi.amap.com/v3/place/text?key=" + amapApiKey
-                    + "&keywords=" + keywords
-                    + "&types="
-                    + "&city=" + (city != null ? city : "")
-                    + "&offset=1"
-                    + "&page=1"
-                    + "&extensions=base";
-
-            // 调用高德 Web 服务 API
-            String response = restTemplate.getForObject(url, String.class);
-            
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            Map<String, Object> error = new HashMap<>();
-            error.put("error", "地点搜索失败: " + e.getMessage());
-            return ResponseEntity.status(500).body(error);
+        identifyCaller(authHeader);
+        String local = amapService.searchPlaceLocal(keywords, city);
+        if (local != null) {
+            return CompletableFuture.completedFuture(upstream(local, "地点搜索失败"));
         }
+        // 调用高德 Web 服务 API
+        return proxy(() -> amapService.searchPlaceUpstream(keywords, city), "地点搜索失败");
     }
 
     /**
@@ -59,18 +80,185 @@ public class MapController {
      * @return 坐标信息
      */
     @GetMapping("/geocode")
-    public ResponseEntity<?> geocode(@RequestParam String address) {
+    public CompletableFuture<ResponseEntity<?>> geocode(
+            @RequestParam String address,
+            @RequestHeader(value = "Authorization", required = false) String authHeader
+    ) {
+        identifyCaller(authHeader);
+        String local = amapService.geocodeLocal(address, null);
+        if (local != null) {
+            return CompletableFuture.completedFuture(upstream(local, "地理编码失败"));
+        }
+        return proxy(() -> amapService.geocodeUpstream(address, null), "地理编码失败");
+    }
+
+    /**
+     * 附近地点,只查本地 POI 索引,不调用高德
+     * @param lat 纬度
+     * @param lng 经度
+     * @param radius 半径(米)
+     * @param type 类型关键词（可选）,如"风景名胜"、"餐饮服务"
+     * @param limit 最多返回条数
+     * @return 按距离由近到远的地点
+     */
+    @GetMapping("/nearby")
+    public ResponseEntity<?> nearby(
+            @RequestParam double lat,
+            @RequestParam double lng,
+            @RequestParam(defaultValue = "1000") int radius,
+            @RequestParam(required = false) String type,
+            @RequestParam(defaultValue = "20") int limit
+    ) {
         try {
-            String url = "https://restapi.amap.com/v3/geocode/geo?key=" + amapApiKey
-                    + "&address=" + address;
+            return ResponseEntity.ok(pois(poiIndex.nearby(lat, lng, radius, type, limit)));
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
 
-            String response = restTemplate.getForObject(url, String.class);
-            
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
+    /**
+     * 地点名称联想,只查本地 POI 索引,不调用高德
+     * @param keywords 名称前缀
+     * @param city 城市（可选）
+     * @param limit 最多返回条数
+     * @return 名称以 keywords 开头的地点
+     */
+    @GetMapping("/autocomplete")
+    public ResponseEntity<?> autocomplete(
+            @RequestParam String keywords,
+            @RequestParam(required = false) String city,
+            @RequestParam(defaultValue = "10") int limit
+    ) {
+        try {
+            return ResponseEntity.ok(pois(poiIndex.autocomplete(keywords, city, limit)));
+        } catch (IllegalArgumentException e) {
             Map<String, Object> error = new HashMap<>();
-            error.put("error", "地理编码失败: " + e.getMessage());
-            return ResponseEntity.status(500).body(error);
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
         }
     }
+
+    /**
+     * 批量地点搜索:相同的查询只调用一次高德,不同查询并发执行
+     * @param request 查询列表,每项为关键词和城市(可选)
+     * @return 与请求顺序一致的结果,每项包含高德原始响应或错误信息
+     */
+    @PostMapping("/search/batch")
+    public CompletableFuture<ResponseEntity<?>> searchPlaceBatch(
+            @RequestBody MapBatchRequest request,
+            @RequestHeader(value = "Authorization", required = false) String authHeader
+    ) {
+        identifyCaller(authHeader);
+        return batch(() -> mapBatchService.search(request.getQueries()));
+    }
+
+    /**
+     * 批量地理编码
+     * @param request 查询列表,每项为地址和城市(可选)
+     * @return 与请求顺序一致的结果
+     */
+    @PostMapping("/geocode/batch")
+    public CompletableFuture<ResponseEntity<?>> geocodeBatch(
+            @RequestBody MapBatchRequest request,
+            @RequestHeader(value = "Authorization", required = false) String authHeader
+    ) {
+        identifyCaller(authHeader);
+        return batch(() -> mapBatchService.geocode(request.getQueries()));
+    }
+
+    /**
+     * 带有效 JWT 时记录当前用户(高德线程池会把用户带到执行线程);无效或未登录时按客户端地址排队,不拒绝请求
+     */
+    private void identifyCaller(String authHeader) {
+        if (authHeader == null || authHeader.isBlank()) {
+            return;
+        }
+        try {
+            jwtValidator.validateTokenAndGetUserId(authHeader);
+        } catch (RuntimeException e) {
+            // 地图接口不要求登录
+        }
+    }
+
+    private CompletableFuture<ResponseEntity<?>> batch(Supplier<CompletableFuture<MapBatchResponse>> call) {
+        try {
+            return call.get().thenApply(ResponseEntity::ok);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(error));
+        }
+    }
+
+    private Map<String, Object> pois(List<PoiDTO> pois) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("count", pois.size());
+        result.put("pois", pois);
+        return result;
+    }
+
+    private CompletableFuture<ResponseEntity<?>> proxy(Supplier<String> call, String failure) {
+        try {
+            return CompletableFuture.<ResponseEntity<?>>supplyAsync(() -> upstream(call.get(), failure), amapExecutor)
+                    .exceptionally(e -> {
+                        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                        if (cause instanceof LimitExceededException limitExceeded) {
+                            return tooManyRequests(limitExceeded);
+                        }
+                        Map<String, Object> error = new HashMap<>();
+                        error.put("error", failure + ": " + cause.getMessage());
+                        return ResponseEntity.status(500).body(error);
+                    });
+        } catch (TaskRejectedException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", "地图服务繁忙,请稍后重试");
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", "1")
+                    .body(error));
+        }
+    }
+
+    /**
+     * 高德返回错误时不再以 200 透传:配额超限 429,参数错误 400,其他错误 502
+     */
+    private ResponseEntity<?> upstream(String response, String failure) {
+        JsonNode root;
+        try {
+            root = Json.MAPPER.readTree(response);
+        } catch (Exception e) {
+            root = null;
+        }
+        AmapResponseStatus status = AmapResponseStatus.of(root);
+        if (status == AmapResponseStatus.OK || status == AmapResponseStatus.EMPTY) {
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(response);
+        }
+
+        Map<String, Object> error = new HashMap<>();
+        String info = root != null ? root.path("info").asText() : "高德响应无法解析";
+        error.put("error", failure + ": " + info);
+        if (root != null && root.hasNonNull("infocode")) {
+            error.put("infocode", root.path("infocode").asText());
+        }
+        if (status == AmapResponseStatus.RATE_LIMITED) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header("Retry-After", "1")
+                    .body(error);
+        }
+        HttpStatus httpStatus = status == AmapResponseStatus.INVALID_REQUEST
+                ? HttpStatus.BAD_REQUEST : HttpStatus.BAD_GATEWAY;
+        return ResponseEntity.status(httpStatus).body(error);
+    }
+
+    /**
+     * 高德调用排队已满或等待配额超时
+     */
+    private ResponseEntity<?> tooManyRequests(LimitExceededException e) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("error", e.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header("Retry-After", String.valueOf(Math.max(1, e.getRetryAfter().toSeconds())))
+                .body(error);
+    }
 }
@@ -2,6 +2,7 @@ package com.shingeki.travelplannerbackend.controller;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shingeki.travelplannerbackend.support.Json;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
@@ -37,7 +38,7 @@ public class SpeechWebSocketHandler extends BinaryWebSocketHandler {
     @Value("${xfyun.api.secret:}")
     private String xfyunApiSecret;
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ObjectMapper objectMapper = Json.MAPPER;
     
     // 存储前端 WebSocket 会话和对应的科大讯飞会话
     private final Map<String, Session> xfyunSessions = new ConcurrentHashMap<>();
@@ -1,20 +1,33 @@
 package com.shingeki.travelplannerbackend.controller;
 
 import com.shingeki.travelplannerbackend.dto.CreateTravelPlanRequest;
+import com.shingeki.travelplannerbackend.dto.RegeneratePlanRequest;
+import com.shingeki.travelplannerbackend.dto.RegeneratedDayResponse;
 import com.shingeki.travelplannerbackend.dto.TravelPlanDTO;
 import com.shingeki.travelplannerbackend.dto.TravelPlanDetailDTO;
+import com.shingeki.travelplannerbackend.dto.TravelPlanPageDTO;
 import com.shingeki.travelplannerbackend.security.SupabaseJwtValidator;
 import com.shingeki.travelplannerbackend.service.TravelPlanService;
+import com.shingeki.travelplannerbackend.support.LimitExceededException;
+import com.shingeki.travelplannerbackend.support.PlanConflictException;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * 旅行计划控制器
@@ -30,6 +43,13 @@ public class TravelPlanController {
     @Autowired
     private SupabaseJwtValidator jwtValidator;
 
+    @Autowired
+    @Qualifier("aiTaskExecutor")
+    private TaskExecutor aiTaskExecutor;
+
+    @Value("${ai.request-timeout:170s}")
+    private Duration aiRequestTimeout;
+
     /**
      * 获取当前用户的所有旅行计划
      */
@@ -41,6 +61,21 @@ public class TravelPlanController {
         return ResponseEntity.ok(plans);
     }
 
+    /**
+     * 分页获取当前用户的旅行计划(按创建时间倒序,可按状态过滤)
+     * 下一页传入上一页返回的 nextCursor
+     */
+    @GetMapping("/page")
+    public ResponseEntity<TravelPlanPageDTO> getUserTravelPlanPage(
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestHeader("Authorization") String authHeader) {
+        UUID userId = jwtValidator.validateTokenAndGetUserId(authHeader);
+        TravelPlanPageDTO page = travelPlanService.getUserTravelPlanPage(userId, status, cursor, size);
+        return ResponseEntity.ok(page);
+    }
+
     /**
      * 根据ID获取旅行计划(简要信息)
      */
@@ -117,6 +152,86 @@ public class TravelPlanController {
         return ResponseEntity.ok(plan);
     }
 
+    /**
+     * 重新生成某一天的安排(只写回这一天)
+     */
+    @PostMapping("/{planId}/days/{day}/regenerate")
+    public CompletableFuture<ResponseEntity<RegeneratedDayResponse>> regenerateDay(
+            @PathVariable UUID planId,
+            @PathVariable int day,
+            @RequestBody(required = false) RegeneratePlanRequest request,
+            @RequestHeader("Authorization") String authHeader) {
+        UUID userId = jwtValidator.validateTokenAndGetUserId(authHeader);
+        String instructions = request != null ? request.getInstructions() : null;
+        return CompletableFuture
+                .supplyAsync(() -> travelPlanService.regenerateDay(planId, day, instructions, userId), aiTaskExecutor)
+                .orTimeout(aiRequestTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .thenApply(ResponseEntity::ok);
+    }
+
+    /**
+     * 重新生成某一天中的单个活动(activityIndex 从 0 开始)
+     */
+    @PostMapping("/{planId}/days/{day}/activities/{activityIndex}/regenerate")
+    public CompletableFuture<ResponseEntity<RegeneratedDayResponse>> regenerateActivity(
+            @PathVariable UUID planId,
+            @PathVariable int day,
+            @PathVariable int activityIndex,
+            @RequestBody(required = false) RegeneratePlanRequest request,
+            @RequestHeader("Authorization") String authHeader) {
+        UUID userId = jwtValidator.validateTokenAndGetUserId(authHeader);
+        String instructions = request != null ? request.getInstructions() : null;
+        return CompletableFuture
+                .supplyAsync(() -> travelPlanService.regenerateActivity(planId, day, activityIndex, instructions, userId),
+                        aiTaskExecutor)
+                .orTimeout(aiRequestTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .thenApply(ResponseEntity::ok);
+    }
+
+    /**
+     * AI 线程池已满
+     */
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<Map<String, String>> handleTaskRejected(TaskRejectedException ex) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", "AI 服务繁忙，请稍后重试");
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", "10")
+                .body(error);
+    }
+
+    /**
+     * 上游 AI 调用已达到并发上限且等待队列已满,快速拒绝
+     */
+    @ExceptionHandler(LimitExceededException.class)
+    public ResponseEntity<Map<String, String>> handleLimitExceeded(LimitExceededException ex) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", String.valueOf(ex.getRetryAfter().toSeconds()))
+                .body(error);
+    }
+
+    /**
+     * AI 处理超时
+     */
+    @ExceptionHandler(TimeoutException.class)
+    public ResponseEntity<Map<String, String>> handleTimeout(TimeoutException ex) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", "AI 处理超时，请稍后重试");
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(error);
+    }
+
+    /**
+     * 重新生成期间计划已被修改,写回未生效
+     */
+    @ExceptionHandler(PlanConflictException.class)
+    public ResponseEntity<Map<String, String>> handlePlanConflict(PlanConflictException ex) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+    }
+
     /**
      * 全局异常处理
      */
@@ -1,5 +1,6 @@
 package com.shingeki.travelplannerbackend.dto;
 
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -11,6 +12,9 @@ import java.math.BigDecimal;
  */
 public class GeneratePlanRequest {
 
+    // 天数上限,按天并行生成时每天一次模型调用,限制单个请求的调用量
+    public static final int MAX_DURATION = 30;
+
     @NotBlank(message = "用户输入不能为空")
     private String userInput;
 
@@ -19,6 +23,7 @@ public class GeneratePlanRequest {
 
     @NotNull(message = "天数不能为空")
     @Min(value = 1, message = "天数至少为1天")
+    @Max(value = MAX_DURATION, message = "天数最多为" + MAX_DURATION + "天")
     private Integer duration;
 
     @NotNull(message = "预算不能为空")
@@ -32,6 +37,8 @@ public class GeneratePlanRequest {
     
     private String additionalRequirements; // 额外要求，例如："预算主要用于美食，住宿标准要高一些"
 
+    private String generationMode; // 生成模式：auto(默认)、single(一次生成)、fanout(按天并行生成)
+
     // Getters and Setters
     public String getUserInput() {
         return userInput;
@@ -88,4 +95,12 @@ public class GeneratePlanRequest {
     public void setAdditionalRequirements(String additionalRequirements) {
         this.additionalRequirements = additionalRequirements;
     }
+
+    public String getGenerationMode() {
+        return generationMode;
+    }
+
+    public void setGenerationMode(String generationMode) {
+        this.generationMode = generationMode;
+    }
 }
@@ -1,5 +1,7 @@
 package com.shingeki.travelplannerbackend.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.util.List;
 
 /**
@@ -13,6 +15,9 @@ public class GeneratedPlanResponse {
     private BudgetBreakdown budgetBreakdown;
     private List<String> tips;
 
+    @JsonIgnore
+    private boolean fallback; // 是否为降级模板(不返回给前端)
+
     public static class DayPlan {
         private Integer day;
         private String date;
@@ -239,4 +244,12 @@ public class GeneratedPlanResponse {
     public void setTips(List<String> tips) {
         this.tips = tips;
     }
+
+    public boolean isFallback() {
+        return fallback;
+    }
+
+    public void setFallback(boolean fallback) {
+        this.fallback = fallback;
+    }
 }
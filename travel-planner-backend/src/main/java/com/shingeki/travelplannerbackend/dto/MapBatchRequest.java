@@ -0,0 +1,49 @@
+package com.shingeki.travelplannerbackend.dto;
+
+import java.util.List;
+
+/**
+ * 批量地点搜索 / 地理编码请求
+ */
+public class MapBatchRequest {
+    private List<Query> queries;
+
+    // Getters and Setters
+    public List<Query> getQueries() {
+        return queries;
+    }
+
+    public void setQueries(List<Query> queries) {
+        this.queries = queries;
+    }
+
+    public static class Query {
+        private String query; // 搜索关键词或地址
+        private String city; // 限定城市(可选)
+
+        public Query() {
+        }
+
+        public Query(String query, String city) {
+            this.query = query;
+            this.city = city;
+        }
+
+        // Getters and Setters
+        public String getQuery() {
+            return query;
+        }
+
+        public void setQuery(String query) {
+            this.query = query;
+        }
+
+        public String getCity() {
+            return city;
+        }
+
+        public void setCity(String city) {
+            this.city = city;
+        }
+    }
+}
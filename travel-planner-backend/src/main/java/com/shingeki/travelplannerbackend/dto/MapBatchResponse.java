@@ -0,0 +1,91 @@
+package com.shingeki.travelplannerbackend.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+import java.util.List;
+
+/**
+ * 批量地点搜索 / 地理编码结果,顺序与请求一致
+ */
+public class MapBatchResponse {
+    private List<Result> results;
+
+    public MapBatchResponse() {
+    }
+
+    public MapBatchResponse(List<Result> results) {
+        this.results = results;
+    }
+
+    // Getters and Setters
+    public List<Result> getResults() {
+        return results;
+    }
+
+    public void setResults(List<Result> results) {
+        this.results = results;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Result {
+        private String query;
+        private String city;
+        private String status; // ok, error
+        @JsonRawValue
+        private String data; // 高德原始响应
+        private String error;
+
+        public Result() {
+        }
+
+        public Result(String query, String city, String status, String data, String error) {
+            this.query = query;
+            this.city = city;
+            this.status = status;
+            this.data = data;
+            this.error = error;
+        }
+
+        // Getters and Setters
+        public String getQuery() {
+            return query;
+        }
+
+        public void setQuery(String query) {
+            this.query = query;
+        }
+
+        public String getCity() {
+            return city;
+        }
+
+        public void setCity(String city) {
+            this.city = city;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public void setStatus(String status) {
+            this.status = status;
+        }
+
+        public String getData() {
+            return data;
+        }
+
+        public void setData(String data) {
+            this.data = data;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public void setError(String error) {
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.shingeki.travelplannerbackend.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * 本地 POI 索引中的地点
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PoiDTO {
+    private String id;
+    private String name;
+    private String type;
+    private String address;
+    private String province;
+    private String city;
+    private String district;
+    private double latitude;
+    private double longitude;
+    private String source; // seed, amap
+    private Double distance; // 附近搜索时与中心点的距离(米)
+
+    public PoiDTO() {
+    }
+
+    /**
+     * 复制一份并附上距离,索引中的对象不修改
+     */
+    public PoiDTO withDistance(double distance) {
+        PoiDTO copy = new PoiDTO();
+        copy.id = id;
+        copy.name = name;
+        copy.type = type;
+        copy.address = address;
+        copy.province = province;
+        copy.city = city;
+        copy.district = district;
+        copy.latitude = latitude;
+        copy.longitude = longitude;
+        copy.source = source;
+        copy.distance = distance;
+        return copy;
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public void setAddress(String address) {
+        this.address = address;
+    }
+
+    public String getProvince() {
+        return province;
+    }
+
+    public void setProvince(String province) {
+        this.province = province;
+    }
+
+    public String getCity() {
+        return city;
+    }
+
+    public void setCity(String city) {
+        this.city = city;
+    }
+
+    public String getDistrict() {
+        return district;
+    }
+
+    public void setDistrict(String district) {
+        this.district = district;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public void setLatitude(double latitude) {
+        this.latitude = latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public void setLongitude(double longitude) {
+        this.longitude = longitude;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public void setSource(String source) {
+        this.source = source;
+    }
+
+    public Double getDistance() {
+        return distance;
+    }
+
+    public void setDistance(Double distance) {
+        this.distance = distance;
+    }
+}
@@ -0,0 +1,17 @@
+package com.shingeki.travelplannerbackend.dto;
+
+/**
+ * 重新生成某一天或某个活动的请求 DTO
+ */
+public class RegeneratePlanRequest {
+    private String instructions; // 调整要求，例如："换成室内景点"
+
+    // Getters and Setters
+    public String getInstructions() {
+        return instructions;
+    }
+
+    public void setInstructions(String instructions) {
+        this.instructions = instructions;
+    }
+}
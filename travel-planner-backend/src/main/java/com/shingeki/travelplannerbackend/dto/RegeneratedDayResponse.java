@@ -0,0 +1,35 @@
+package com.shingeki.travelplannerbackend.dto;
+
+/**
+ * 重新生成后的单日安排及重新计算的预算分配
+ */
+public class RegeneratedDayResponse {
+    private GeneratedPlanResponse.DayPlan dayPlan;
+    private GeneratedPlanResponse.BudgetBreakdown budgetBreakdown;
+
+    public RegeneratedDayResponse() {
+    }
+
+    public RegeneratedDayResponse(GeneratedPlanResponse.DayPlan dayPlan,
+                                  GeneratedPlanResponse.BudgetBreakdown budgetBreakdown) {
+        this.dayPlan = dayPlan;
+        this.budgetBreakdown = budgetBreakdown;
+    }
+
+    // Getters and Setters
+    public GeneratedPlanResponse.DayPlan getDayPlan() {
+        return dayPlan;
+    }
+
+    public void setDayPlan(GeneratedPlanResponse.DayPlan dayPlan) {
+        this.dayPlan = dayPlan;
+    }
+
+    public GeneratedPlanResponse.BudgetBreakdown getBudgetBreakdown() {
+        return budgetBreakdown;
+    }
+
+    public void setBudgetBreakdown(GeneratedPlanResponse.BudgetBreakdown budgetBreakdown) {
+        this.budgetBreakdown = budgetBreakdown;
+    }
+}
@@ -0,0 +1,36 @@
+package com.shingeki.travelplannerbackend.dto;
+
+import java.util.List;
+
+/**
+ * 旅行计划列表的一页
+ * nextCursor 为下一页的游标,没有更多计划时为 null
+ */
+public class TravelPlanPageDTO {
+    private List<TravelPlanDTO> items;
+    private String nextCursor;
+
+    public TravelPlanPageDTO() {
+    }
+
+    public TravelPlanPageDTO(List<TravelPlanDTO> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<TravelPlanDTO> getItems() {
+        return items;
+    }
+
+    public void setItems(List<TravelPlanDTO> items) {
+        this.items = items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
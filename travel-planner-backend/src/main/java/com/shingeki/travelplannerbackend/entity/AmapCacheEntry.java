@@ -0,0 +1,78 @@
+package com.shingeki.travelplannerbackend.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * 高德地图查询缓存实体类
+ * 以规范化后的查询为键保存高德原始响应,见 AmapCacheService
+ */
+@Entity
+@Table(name = "amap_cache", indexes = {
+        @Index(name = "idx_amap_cache_expires_at", columnList = "expires_at")
+})
+public class AmapCacheEntry {
+
+    @Id
+    @Column(name = "cache_key", nullable = false)
+    private String cacheKey;
+
+    @Column(name = "api", nullable = false)
+    private String api; // search, geocode
+
+    @Column(name = "response", columnDefinition = "TEXT", nullable = false)
+    private String response;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+
+    // Getters and Setters
+    public String getCacheKey() {
+        return cacheKey;
+    }
+
+    public void setCacheKey(String cacheKey) {
+        this.cacheKey = cacheKey;
+    }
+
+    public String getApi() {
+        return api;
+    }
+
+    public void setApi(String api) {
+        this.api = api;
+    }
+
+    public String getResponse() {
+        return response;
+    }
+
+    public void setResponse(String response) {
+        this.response = response;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,54 @@
+package com.shingeki.travelplannerbackend.repository;
+
+import com.shingeki.travelplannerbackend.entity.AIGenerationJob;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * AI 计划生成任务仓库接口
+ */
+@Repository
+public interface AIGenerationJobRepository extends JpaRepository<AIGenerationJob, UUID> {
+
+    /**
+     * 锁定待处理的任务(包括工作节点失联后超时的运行中任务)
+     * SKIP LOCKED 保证多个节点并发认领时不会拿到同一个任务,需在事务中调用
+     */
+    @Query(value = "SELECT * FROM ai_generation_jobs " +
+            "WHERE status = 'pending' OR (status = 'running' AND locked_at < :staleBefore) " +
+            "ORDER BY created_at " +
+            "LIMIT :limit " +
+            "FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<AIGenerationJob> lockClaimableJobs(@Param("staleBefore") LocalDateTime staleBefore,
+                                            @Param("limit") int limit);
+
+    /**
+     * 加行锁读取任务,用于在同一事务中检查归属后再更新,需在事务中调用
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT j FROM AIGenerationJob j WHERE j.id = :id")
+    Optional<AIGenerationJob> findByIdForUpdate(@Param("id") UUID id);
+
+    /**
+     * 续租:刷新本节点仍在执行的任务的 locked_at,返回续租成功的行数
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE AIGenerationJob j SET j.lockedAt = :now " +
+            "WHERE j.id IN :ids AND j.workerId = :workerId AND j.status = 'running'")
+    int renewLeases(@Param("ids") Collection<UUID> ids,
+                    @Param("workerId") String workerId,
+                    @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,40 @@
+package com.shingeki.travelplannerbackend.repository;
+
+import com.shingeki.travelplannerbackend.entity.AmapCacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * 高德地图查询缓存仓库接口
+ */
+@Repository
+public interface AmapCacheRepository extends JpaRepository<AmapCacheEntry, String> {
+
+    /**
+     * 写入或覆盖缓存,多个节点同时写入同一个键时不会冲突
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO amap_cache (cache_key, api, response, expires_at, created_at) " +
+            "VALUES (:cacheKey, :api, :response, :expiresAt, NOW()) " +
+            "ON CONFLICT (cache_key) DO UPDATE SET api = EXCLUDED.api, response = EXCLUDED.response, " +
+            "expires_at = EXCLUDED.expires_at, created_at = NOW()", nativeQuery = true)
+    int upsert(@Param("cacheKey") String cacheKey,
+               @Param("api") String api,
+               @Param("response") String response,
+               @Param("expiresAt") LocalDateTime expiresAt);
+
+    /**
+     * 删除在 before 之前过期的缓存
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM AmapCacheEntry e WHERE e.expiresAt < :before")
+    int deleteExpiredBefore(@Param("before") LocalDateTime before);
+}
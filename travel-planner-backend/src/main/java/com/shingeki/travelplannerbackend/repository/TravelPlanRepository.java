@@ -1,9 +1,16 @@
 package com.shingeki.travelplannerbackend.repository;
 
 import com.shingeki.travelplannerbackend.entity.TravelPlan;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
@@ -22,4 +29,66 @@ public interface TravelPlanRepository extends JpaRepository<TravelPlan, UUID> {
      * 根据用户ID和状态查询旅行计划
      */
     List<TravelPlan> findByUserIdAndStatus(UUID userId, String status);
+
+    String SUMMARY_SELECT = "SELECT p.id AS id, p.destination AS destination, p.startDate AS startDate, " +
+            "p.endDate AS endDate, p.duration AS duration, p.budget AS budget, p.travelers AS travelers, " +
+            "p.preferences AS preferences, p.status AS status, p.createdAt AS createdAt, p.updatedAt AS updatedAt " +
+            "FROM TravelPlan p WHERE p.userId = :userId AND (:status IS NULL OR p.status = :status) ";
+
+    String SUMMARY_ORDER = "ORDER BY p.createdAt DESC, p.id DESC";
+
+    /**
+     * 列表第一页:按创建时间倒序的计划摘要,status 为 null 时不过滤
+     * 走 (user_id, created_at DESC, id DESC) 索引
+     */
+    @Query(SUMMARY_SELECT + SUMMARY_ORDER)
+    List<TravelPlanSummary> findSummariesByUserIdAndStatus(@Param("userId") UUID userId,
+                                                           @Param("status") String status,
+                                                           Pageable pageable);
+
+    /**
+     * 列表后续页:从游标 (createdAt, id) 之后继续取,不使用 OFFSET
+     */
+    @Query(SUMMARY_SELECT +
+            "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) " +
+            SUMMARY_ORDER)
+    List<TravelPlanSummary> findSummariesByUserIdAndStatusAfter(@Param("userId") UUID userId,
+                                                                @Param("status") String status,
+                                                                @Param("createdAt") LocalDateTime createdAt,
+                                                                @Param("id") UUID id,
+                                                                Pageable pageable);
+
+    /**
+     * 按日期批量刷新该用户未完成计划的状态,只更新状态有变化的行,返回更新行数
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE travel_plans SET status = CASE " +
+            "WHEN CAST(:today AS date) < start_date THEN 'planning' " +
+            "WHEN CAST(:today AS date) > end_date THEN 'completed' ELSE 'ongoing' END, " +
+            "updated_at = now() " +
+            "WHERE user_id = :userId AND status <> 'completed' AND status <> CASE " +
+            "WHEN CAST(:today AS date) < start_date THEN 'planning' " +
+            "WHEN CAST(:today AS date) > end_date THEN 'completed' ELSE 'ongoing' END", nativeQuery = true)
+    int refreshStatuses(@Param("userId") UUID userId, @Param("today") LocalDate today);
+
+    /**
+     * 只替换 AI 计划中的一个片段(某一天或某个活动)并写入重新计算的预算分配
+     * 预算按全部天数计算,因此每日安排(dailyPlans)当前值与 expectedDays 不一致
+     * (任意一天已被并发修改)时不更新,返回 0
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE travel_plans SET " +
+            "ai_generated_plan = jsonb_set(jsonb_set(ai_generated_plan, CAST(:path AS text[]), CAST(:fragment AS jsonb)), " +
+            "'{budgetBreakdown}', CAST(:budget AS jsonb)), " +
+            "updated_at = now() " +
+            "WHERE id = :planId AND user_id = :userId " +
+            "AND ai_generated_plan -> 'dailyPlans' = CAST(:expectedDays AS jsonb)", nativeQuery = true)
+    int replacePlanFragment(@Param("planId") UUID planId,
+                            @Param("userId") UUID userId,
+                            @Param("path") String path,
+                            @Param("expectedDays") String expectedDays,
+                            @Param("fragment") String fragment,
+                            @Param("budget") String budget);
 }
@@ -0,0 +1,24 @@
+package com.shingeki.travelplannerbackend.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * 旅行计划列表投影
+ * 只包含列表需要的列,不读取 user_input 与 ai_generated_plan
+ */
+public interface TravelPlanSummary {
+    UUID getId();
+    String getDestination();
+    LocalDate getStartDate();
+    LocalDate getEndDate();
+    Integer getDuration();
+    BigDecimal getBudget();
+    Integer getTravelers();
+    String[] getPreferences();
+    String getStatus();
+    LocalDateTime getCreatedAt();
+    LocalDateTime getUpdatedAt();
+}
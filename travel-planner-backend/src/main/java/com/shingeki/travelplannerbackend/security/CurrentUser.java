@@ -0,0 +1,82 @@
+package com.shingeki.travelplannerbackend.security;
+
+import java.util.UUID;
+
+/**
+ * 当前请求的用户 - 校验 JWT 时记录,用于按用户统计 AI 用量
+ * 同时记录客户端地址(由 CurrentUserFilter 设置),未登录的请求按客户端地址区分调用方
+ * 请求结束时由 CurrentUserFilter 清除;AI 线程池通过 propagate 把提交任务时的用户带到执行线程
+ */
+public final class CurrentUser {
+
+    private static final ThreadLocal<UUID> USER_ID = new ThreadLocal<>();
+    private static final ThreadLocal<String> CLIENT_ADDRESS = new ThreadLocal<>();
+
+    private CurrentUser() {
+    }
+
+    public static UUID get() {
+        return USER_ID.get();
+    }
+
+    public static void set(UUID userId) {
+        if (userId == null) {
+            USER_ID.remove();
+        } else {
+            USER_ID.set(userId);
+        }
+    }
+
+    public static void setClientAddress(String clientAddress) {
+        if (clientAddress == null) {
+            CLIENT_ADDRESS.remove();
+        } else {
+            CLIENT_ADDRESS.set(clientAddress);
+        }
+    }
+
+    /**
+     * 调用方标识:已登录时为用户 ID,否则为客户端地址,都没有时为 null
+     */
+    public static String caller() {
+        UUID userId = USER_ID.get();
+        return userId != null ? userId.toString() : CLIENT_ADDRESS.get();
+    }
+
+    public static void clear() {
+        USER_ID.remove();
+        CLIENT_ADDRESS.remove();
+    }
+
+    /**
+     * 以指定用户执行任务,结束后恢复执行线程原来的用户
+     */
+    public static Runnable wrap(UUID userId, Runnable task) {
+        return wrap(userId, null, task);
+    }
+
+    /**
+     * 以指定用户和客户端地址执行任务,结束后恢复执行线程原来的值
+     */
+    public static Runnable wrap(UUID userId, String clientAddress, Runnable task) {
+        return () -> {
+            UUID previous = USER_ID.get();
+            String previousAddress = CLIENT_ADDRESS.get();
+            set(userId);
+            setClientAddress(clientAddress);
+            try {
+                task.run();
+            } finally {
+                set(previous);
+                setClientAddress(previousAddress);
+            }
+        };
+    }
+
+    /**
+     * 线程池的 TaskDecorator:任务以提交时的用户和客户端地址执行
+     */
+    public static Runnable propagate(Runnable task) {
+        return wrap(USER_ID.get(), CLIENT_ADDRESS.get(), task);
+    }
+}
@@ -0,0 +1,29 @@
+package com.shingeki.travelplannerbackend.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * 记录客户端地址,请求结束时清除 CurrentUser,避免 Tomcat 线程复用时用户串到下一个请求
+ * 经 nginx 转发时客户端地址取自 X-Forwarded-For(server.forward-headers-strategy=native)
+ */
+@Component
+public class CurrentUserFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        CurrentUser.setClientAddress(request.getRemoteAddr());
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            CurrentUser.clear();
+        }
+    }
+}
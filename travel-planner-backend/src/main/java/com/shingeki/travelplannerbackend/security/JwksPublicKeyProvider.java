@@ -1,6 +1,7 @@
 package com.shingeki.travelplannerbackend.security;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shingeki.travelplannerbackend.support.Json;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -22,7 +23,7 @@ public class JwksPublicKeyProvider {
     @Value("${supabase.project-ref}") // 例如: abc123.supabase.co
     private String projectRef;
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ObjectMapper objectMapper = Json.MAPPER;
     private final Map<String, PublicKey> keyCache = new ConcurrentHashMap<>();
     private volatile Instant lastFetched = Instant.MIN;
     private volatile boolean fetchAttempted = false; // 标记是否尝试过获取 JWKS
@@ -10,8 +10,7 @@ import org.springframework.stereotype.Service;
 import javax.crypto.spec.SecretKeySpec;
 import java.security.PublicKey;
 import java.util.Base64;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shingeki.travelplannerbackend.support.Json;
 
 @Service
 public class SupabaseJwtValidator {
@@ -38,10 +37,7 @@ public class SupabaseJwtValidator {
             String headerJson = new String(Base64.getUrlDecoder().decode(chunks[0]));
             System.out.println("JWT Header: " + headerJson);
 
-            ObjectMapper objectMapper = new ObjectMapper();
-            TypeReference<java.util.Map<String, Object>> typeRef = new TypeReference<>() {
-            };
-            java.util.Map<String, Object> header = objectMapper.readValue(headerJson, typeRef);
+            java.util.Map<String, Object> header = Json.MAP_READER.readValue(headerJson);
 
             String kid = (String) header.get("kid");
             String alg = (String) header.get("alg");
@@ -121,6 +117,9 @@ public class SupabaseJwtValidator {
             throw new RuntimeException("User ID not found in JWT");
         }
         
-        return java.util.UUID.fromString(userIdStr);
+        java.util.UUID userId = java.util.UUID.fromString(userIdStr);
+        // 记录当前用户,AI 调用的用量按用户统计
+        CurrentUser.set(userId);
+        return userId;
     }
 }
\ No newline at end of file
@@ -0,0 +1,283 @@
+package com.shingeki.travelplannerbackend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shingeki.travelplannerbackend.dto.AIJobDTO;
+import com.shingeki.travelplannerbackend.dto.GeneratePlanRequest;
+import com.shingeki.travelplannerbackend.dto.GeneratedPlanResponse;
+import com.shingeki.travelplannerbackend.entity.AIGenerationJob;
+import com.shingeki.travelplannerbackend.repository.AIGenerationJobRepository;
+import com.shingeki.travelplannerbackend.security.CurrentUser;
+import com.shingeki.travelplannerbackend.support.Json;
+import com.shingeki.travelplannerbackend.support.LimitExceededException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * AI 计划生成任务服务
+ * 提交的任务先写入数据库,由各节点定时认领执行;执行中定期续租(刷新 locked_at),
+ * 节点重启或失联后不再续租,超时的任务会被其他节点重新认领。任务状态只由当前持有者写入
+ */
+@Slf4j
+@Service
+public class AIJobService {
+
+    private final AIGenerationJobRepository jobRepository;
+    private final AIService aiService;
+    private final TaskExecutor aiTaskExecutor;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper = Json.MAPPER;
+
+    private final String workerId;
+    private final AtomicInteger runningJobs = new AtomicInteger();
+    // 本节点正在执行的任务,定期续租
+    private final Set<UUID> leasedJobs = ConcurrentHashMap.newKeySet();
+
+    @Value("${ai.jobs.worker.enabled:true}")
+    private boolean workerEnabled;
+
+    // 本节点同时执行的任务数上限
+    @Value("${ai.jobs.worker.max-concurrent:8}")
+    private int maxConcurrent;
+
+    // 运行中任务超过该时间未续租,视为工作节点失联,可被重新认领;需为续租间隔的数倍
+    @Value("${ai.jobs.stale-after:5m}")
+    private Duration staleAfter;
+
+    @Value("${ai.jobs.max-attempts:3}")
+    private int maxAttempts;
+
+    public AIJobService(AIGenerationJobRepository jobRepository,
+                        AIService aiService,
+                        @Qualifier("aiTaskExecutor") TaskExecutor aiTaskExecutor,
+                        PlatformTransactionManager transactionManager) {
+        this.jobRepository = jobRepository;
+        this.aiService = aiService;
+        this.aiTaskExecutor = aiTaskExecutor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.workerId = resolveHostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    /**
+     * 提交生成任务,立即返回任务 ID
+     */
+    public AIJobDTO submit(GeneratePlanRequest request, UUID userId) {
+        AIGenerationJob job = new AIGenerationJob();
+        job.setUserId(userId);
+        job.setStatus("pending");
+        try {
+            job.setRequest(objectMapper.writeValueAsString(request));
+        } catch (Exception e) {
+            throw new RuntimeException("保存生成任务失败: " + e.getMessage(), e);
+        }
+        return convertToDTO(jobRepository.save(job));
+    }
+
+    /**
+     * 查询任务状态和结果
+     */
+    public AIJobDTO getJob(UUID jobId, UUID userId) {
+        AIGenerationJob job = jobRepository.findById(jobId)
+                .orElseThrow(() -> new RuntimeException("任务不存在"));
+
+        // 验证是否是用户自己的任务
+        if (!job.getUserId().equals(userId)) {
+            throw new RuntimeException("无权访问此任务");
+        }
+
+        return convertToDTO(job);
+    }
+
+    /**
+     * 定时认领并执行待处理任务
+     */
+    @Scheduled(fixedDelayString = "${ai.jobs.worker.poll-interval:2s}")
+    public void pollJobs() {
+        if (!workerEnabled) {
+            return;
+        }
+        int capacity = maxConcurrent - runningJobs.get();
+        if (capacity <= 0) {
+            return;
+        }
+
+        List<AIGenerationJob> claimed;
+        try {
+            claimed = transactionTemplate.execute(status -> claimJobs(capacity));
+        } catch (Exception e) {
+            log.warn("认领生成任务失败: {}", e.getMessage());
+            return;
+        }
+        if (claimed == null) {
+            return;
+        }
+
+        for (AIGenerationJob job : claimed) {
+            runningJobs.incrementAndGet();
+            leasedJobs.add(job.getId());
+            try {
+                aiTaskExecutor.execute(CurrentUser.wrap(job.getUserId(), () -> runJob(job.getId(), job.getRequest())));
+            } catch (TaskRejectedException e) {
+                // 线程池已满,放回队列等待下次认领
+                runningJobs.decrementAndGet();
+                leasedJobs.remove(job.getId());
+                updateJob(job.getId(), j -> {
+                    j.setStatus("pending");
+                    j.setWorkerId(null);
+                    j.setLockedAt(null);
+                });
+            }
+        }
+    }
+
+    /**
+     * 定时为本节点执行中的任务续租,执行时间再长也不会被其他节点当作失联任务重新认领
+     */
+    @Scheduled(fixedDelayString = "${ai.jobs.heartbeat-interval:30s}")
+    public void renewLeases() {
+        if (leasedJobs.isEmpty()) {
+            return;
+        }
+        try {
+            jobRepository.renewLeases(Set.copyOf(leasedJobs), workerId, LocalDateTime.now());
+        } catch (Exception e) {
+            log.warn("生成任务续租失败: {}", e.getMessage());
+        }
+    }
+
+    private List<AIGenerationJob> claimJobs(int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        List<AIGenerationJob> jobs = jobRepository.lockClaimableJobs(now.minus(staleAfter), limit);
+
+        jobs.forEach(job -> {
+            job.setAttempts(job.getAttempts() + 1);
+            if (job.getAttempts() > maxAttempts) {
+                job.setStatus("failed");
+                job.setError("任务重试次数过多");
+            } else {
+                job.setStatus("running");
+                job.setWorkerId(workerId);
+                job.setLockedAt(now);
+            }
+        });
+        jobRepository.saveAll(jobs);
+
+        return jobs.stream().filter(job -> "running".equals(job.getStatus())).toList();
+    }
+
+    private void runJob(UUID jobId, String requestJson) {
+        try {
+            GeneratePlanRequest request = Json.PLAN_REQUEST_READER.readValue(requestJson);
+            GeneratedPlanResponse response = aiService.generateTravelPlan(request);
+            String resultJson = Json.PLAN_WRITER.writeValueAsString(response);
+            updateJob(jobId, job -> {
+                job.setStatus("completed");
+                job.setResult(resultJson);
+                job.setError(null);
+            });
+        } catch (LimitExceededException | TaskRejectedException e) {
+            // AI 调用或本地线程池过载,放回队列稍后重试,不计入重试次数
+            updateJob(jobId, job -> {
+                job.setStatus("pending");
+                job.setAttempts(job.getAttempts() - 1);
+                job.setWorkerId(null);
+                job.setLockedAt(null);
+            });
+        } catch (Exception e) {
+            log.warn("生成任务 {} 执行失败: {}", jobId, e.getMessage());
+            updateJob(jobId, job -> {
+                if (isTransient(e) && job.getAttempts() < maxAttempts) {
+                    // 暂时性故障放回队列,由下次认领重试,重试次数用完才标记失败
+                    job.setStatus("pending");
+                    job.setWorkerId(null);
+                    job.setLockedAt(null);
+                } else {
+                    job.setStatus("failed");
+                }
+                job.setError(e.getMessage());
+            });
+        } finally {
+            leasedJobs.remove(jobId);
+            runningJobs.decrementAndGet();
+        }
+    }
+
+    /**
+     * 是否为暂时性故障:任务请求无法解析、上游返回除 408 和 429 外的 4xx 时重试也会同样失败
+     */
+    private static boolean isTransient(Exception e) {
+        if (e instanceof JsonProcessingException) {
+            return false;
+        }
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HttpClientErrorException clientError) {
+                int status = clientError.getStatusCode().value();
+                return status == 408 || status == 429;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 更新任务;只有本节点仍持有(worker_id 为本节点且状态为 running)时才写入,
+     * 任务已被其他节点重新认领或已经结束时不覆盖
+     */
+    private void updateJob(UUID jobId, Consumer<AIGenerationJob> update) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> jobRepository.findByIdForUpdate(jobId).ifPresent(job -> {
+                if (!workerId.equals(job.getWorkerId()) || !"running".equals(job.getStatus())) {
+                    log.warn("生成任务 {} 已不归本节点持有,放弃写入", jobId);
+                    return;
+                }
+                update.accept(job);
+                jobRepository.save(job);
+            }));
+        } catch (Exception e) {
+            log.warn("更新生成任务 {} 失败: {}", jobId, e.getMessage());
+        }
+    }
+
+    private AIJobDTO convertToDTO(AIGenerationJob job) {
+        AIJobDTO dto = new AIJobDTO();
+        dto.setId(job.getId());
+        dto.setStatus(job.getStatus());
+        dto.setError(job.getError());
+        dto.setCreatedAt(job.getCreatedAt());
+        dto.setUpdatedAt(job.getUpdatedAt());
+
+        if (job.getResult() != null) {
+            try {
+                dto.setResult(Json.PLAN_READER.readValue(job.getResult()));
+            } catch (Exception e) {
+                log.warn("解析任务结果失败: {}", e.getMessage());
+            }
+        }
+        return dto;
+    }
+
+    private String resolveHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "worker";
+        }
+    }
+}
@@ -1,60 +1,156 @@
 package com.shingeki.travelplannerbackend.service;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.shingeki.travelplannerbackend.dto.GeneratePlanRequest;
 import com.shingeki.travelplannerbackend.dto.GeneratedPlanResponse;
+import com.shingeki.travelplannerbackend.service.llm.LlmRouter;
+import com.shingeki.travelplannerbackend.service.llm.LlmTask;
+import com.shingeki.travelplannerbackend.support.CircuitBreaker;
+import com.shingeki.travelplannerbackend.support.CircuitOpenException;
+import com.shingeki.travelplannerbackend.support.Json;
+import com.shingeki.travelplannerbackend.support.LatencyTracker;
+import com.shingeki.travelplannerbackend.support.LimitExceededException;
+import com.shingeki.travelplannerbackend.support.SingleFlight;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.web.client.RestTemplateBuilder;
-import org.springframework.http.*;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
-import java.time.Duration;
+import java.text.Normalizer;
 import java.util.*;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
- * AI 服务 - 调用通义千问 API 生成旅行计划
+ * AI 服务 - 调用大模型解析用户输入、生成旅行计划
  */
+@Slf4j
 @Service
 public class AIService {
 
-    @Value("${qwen.api.key}")
-    private String qwenApiKey;
+    @Value("${ai.parse.local-fast-path.enabled:true}")
+    private boolean localParseEnabled;
+
+    // 达到该天数的行程默认按天并行生成
+    @Value("${ai.fanout.min-days:7}")
+    private int fanOutMinDays;
+
+    // 单个请求同时进行的每日生成调用数
+    @Value("${ai.fanout.parallelism:4}")
+    private int fanOutParallelism;
+
+    // 计划输出格式:compact - 短键 + 位置数组(输出 token 更少);verbose - 完整字段名
+    @Value("${ai.plan.output-format:compact}")
+    private String planOutputFormat;
 
-    @Value("${qwen.api.url}")
-    private String qwenApiUrl;
+    @Value("${ai.parse.hedge.enabled:true}")
+    private boolean hedgeEnabled;
 
-    private final RestTemplate restTemplate;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    // 样本数不足时 p95 不可靠,不做对冲
+    @Value("${ai.parse.hedge.min-samples:20}")
+    private int hedgeMinSamples;
+
+    @Value("${ai.parse.hedge.min-delay:500ms}")
+    private Duration hedgeMinDelay;
+
+    private final LlmRouter llmRouter;
+    private final ObjectMapper objectMapper = Json.MAPPER;
+    private final PlanCacheService planCacheService;
+    private final LocalInputParser localInputParser;
+    private final ItineraryGeoEnricher geoEnricher;
+    private final TaskExecutor fanOutExecutor;
+    private final CircuitBreaker qwenCircuitBreaker;
+    private final TaskExecutor hedgeExecutor;
+    private final LatencyTracker parseLatency = new LatencyTracker(200);
+    private final Counter hedgeSent;
+    private final Counter hedgeWon;
+    private final MeterRegistry meterRegistry;
+
+    // 相同请求并发到达时只调用一次 AI
+    private final SingleFlight<String, GeneratedPlanResponse> generateFlight = new SingleFlight<>();
+    private final SingleFlight<String, Map<String, Object>> parseFlight = new SingleFlight<>();
     
-    // 构造函数注入,配置超时时间
-    public AIService(RestTemplateBuilder restTemplateBuilder) {
-        org.springframework.http.client.SimpleClientHttpRequestFactory factory = new org.springframework.http.client.SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout((int) Duration.ofSeconds(10).toMillis());  // 连接超时 10 秒
-        factory.setReadTimeout((int) Duration.ofSeconds(120).toMillis());    // 读取超时 120 秒(AI 生成需要较长时间)
-        
-        this.restTemplate = restTemplateBuilder
-                .requestFactory(() -> factory)
-                .build();
+    // 构造函数注入,模型调用通过 LlmRouter 按任务路由
+    public AIService(LlmRouter llmRouter, PlanCacheService planCacheService,
+                     LocalInputParser localInputParser, ItineraryGeoEnricher geoEnricher,
+                     @Qualifier("aiFanOutExecutor") TaskExecutor fanOutExecutor,
+                     @Qualifier("qwenCircuitBreaker") CircuitBreaker qwenCircuitBreaker,
+                     @Qualifier("aiHedgeExecutor") TaskExecutor hedgeExecutor,
+                     MeterRegistry meterRegistry) {
+        this.llmRouter = llmRouter;
+        this.planCacheService = planCacheService;
+        this.localInputParser = localInputParser;
+        this.geoEnricher = geoEnricher;
+        this.fanOutExecutor = fanOutExecutor;
+        this.qwenCircuitBreaker = qwenCircuitBreaker;
+        this.hedgeExecutor = hedgeExecutor;
+        this.meterRegistry = meterRegistry;
+        this.hedgeSent = Counter.builder("ai.parse.hedge").tag("result", "sent").register(meterRegistry);
+        this.hedgeWon = Counter.builder("ai.parse.hedge").tag("result", "won").register(meterRegistry);
+        Gauge.builder("ai.parse.latency.p95", parseLatency, tracker -> tracker.percentile(0.95))
+                .register(meterRegistry);
+        registerSingleFlightMetrics(meterRegistry, "generate", generateFlight);
+        registerSingleFlightMetrics(meterRegistry, "parse", parseFlight);
     }
 
     /**
      * 智能解析用户输入
+     * 先使用本地规则解析,结果明确时直接返回;否则调用 AI 解析
+     * 返回结果中的 parseSource 标明解析来源:local / llm / none
      */
     public Map<String, Object> parseUserInput(String userInput) {
+        if (localParseEnabled) {
+            LocalInputParser.Result local = localInputParser.parse(userInput);
+            if (local.confident()) {
+                Map<String, Object> result = local.fields();
+                result.put("parseSource", "local");
+                return result;
+            }
+        }
+
+        // 并发的相同输入共享一次 AI 调用,每个调用方拿到各自的副本
+        Map<String, Object> shared = parseFlight.execute(normalizeInput(userInput), () -> parseWithAI(userInput));
+        return new HashMap<>(shared);
+    }
+
+    /**
+     * 调用 AI 解析用户输入
+     */
+    private Map<String, Object> parseWithAI(String userInput) {
         try {
             // 构建解析提示词
             String prompt = buildParsePrompt(userInput);
             
-            // 调用通义千问 API
-            String aiResponse = callQwenAPI(prompt);
+            // 调用小模型解析(慢请求会对冲)
+            String aiResponse = callLlmHedged(prompt);
             
             // 解析 AI 响应为结构化数据
-            return parseInputResponse(aiResponse);
+            Map<String, Object> result = parseInputResponse(aiResponse);
+            result.put("parseSource", "llm");
+            return result;
+        } catch (LimitExceededException e) {
+            // 过载时直接拒绝,由控制器返回 503
+            throw e;
         } catch (Exception e) {
-            System.err.println("AI 解析用户输入失败: " + e.getMessage());
-            e.printStackTrace();
+            log.warn("AI 解析用户输入失败: {}", e.getMessage(), e);
             // 返回空的解析结果，让前端使用原始输入
             Map<String, Object> emptyResult = new HashMap<>();
             emptyResult.put("destination", "");
@@ -63,6 +159,7 @@ public class AIService {
             emptyResult.put("travelers", null);
             emptyResult.put("preferences", new ArrayList<String>());
             emptyResult.put("additionalRequirements", "");
+            emptyResult.put("parseSource", "none");
             return emptyResult;
         }
     }
@@ -71,24 +168,498 @@ public class AIService {
      * 生成旅行计划
      */
     public GeneratedPlanResponse generateTravelPlan(GeneratePlanRequest request) {
+        // 相同(规范化后)需求直接返回缓存结果
+        Optional<GeneratedPlanResponse> cached = planCacheService.get(request);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
+        // 相同需求正在生成时等待同一个结果,而不是重复调用 AI;每个调用方拿到各自的副本
+        GeneratedPlanResponse shared = generateFlight.execute(planCacheService.keyOf(request), () -> doGenerateTravelPlan(request));
+        return copyFor(shared, request);
+    }
+
+    /**
+     * 复制合并请求的共享结果,目的地使用调用方自己的写法
+     */
+    private GeneratedPlanResponse copyFor(GeneratedPlanResponse shared, GeneratePlanRequest request) {
         try {
+            GeneratedPlanResponse copy = Json.PLAN_READER.readValue(Json.PLAN_WRITER.writeValueAsBytes(shared));
+            copy.setFallback(shared.isFallback());
+            copy.setDestination(request.getDestination());
+            return copy;
+        } catch (Exception e) {
+            throw new RuntimeException("复制旅行计划失败: " + e.getMessage(), e);
+        }
+    }
+
+    private GeneratedPlanResponse doGenerateTravelPlan(GeneratePlanRequest request) {
+        try {
+            if (useFanOut(request)) {
+                GeneratedPlanResponse response = generateFanOut(request);
+                geoEnricher.enrich(response, request.getDestination());
+                planCacheService.put(request, response);
+                return response;
+            }
+
             // 构建提示词
             String prompt = buildPrompt(request);
             
-            // 调用通义千问 API
-            String aiResponse = callQwenAPI(prompt);
+            // 调用大模型
+            String aiResponse = callLlm(LlmTask.GENERATE, prompt);
             
             // 解析 AI 响应
             GeneratedPlanResponse response = parseAIResponse(aiResponse, request);
+            // 返回前补全活动坐标,缓存的计划也带坐标
+            geoEnricher.enrich(response, request.getDestination());
+            planCacheService.put(request, response);
             
             return response;
+        } catch (LimitExceededException | TaskRejectedException e) {
+            throw e;
+        } catch (CircuitOpenException e) {
+            // 上游故障期间直接返回降级计划(不缓存)
+            log.warn("AI 服务熔断,返回默认计划");
+            recordFallback("circuit_open");
+            return createFallbackResponse(request);
         } catch (Exception e) {
-            System.err.println("AI 生成计划失败: " + e.getMessage());
-            e.printStackTrace();
+            log.error("AI 生成计划失败: {}", e.getMessage(), e);
             throw new RuntimeException("AI 生成计划失败: " + e.getMessage(), e);
         }
     }
     
+    /**
+     * 流式生成旅行计划 - 每完成一个活动 / 一天的行程即回调推送,结束后返回完整计划
+     */
+    public GeneratedPlanResponse streamTravelPlan(GeneratePlanRequest request,
+                                                  Consumer<GeneratedPlanResponse.DayPlan> onDay,
+                                                  BiConsumer<Integer, GeneratedPlanResponse.Activity> onActivity) {
+        Optional<GeneratedPlanResponse> cached = planCacheService.get(request);
+        if (cached.isPresent()) {
+            if (cached.get().getDailyPlans() != null) {
+                cached.get().getDailyPlans().forEach(dayPlan -> replayDay(dayPlan, onDay, onActivity));
+            }
+            return cached.get();
+        }
+
+        String prompt = buildPrompt(request);
+        PlanStreamParser parser = new PlanStreamParser(objectMapper, onDay, onActivity, useCompactOutput());
+
+        try {
+            llmRouter.stream(LlmTask.GENERATE, prompt, parser::feed);
+        } catch (LimitExceededException e) {
+            throw e;
+        } catch (CircuitOpenException e) {
+            log.warn("AI 服务熔断,返回默认计划");
+            recordFallback("circuit_open");
+            GeneratedPlanResponse fallback = createFallbackResponse(request);
+            fallback.getDailyPlans().forEach(dayPlan -> replayDay(dayPlan, onDay, onActivity));
+            return fallback;
+        } catch (Exception e) {
+            log.warn("AI 流式生成计划失败: {}", e.getMessage());
+            if (parser.getDays().isEmpty()) {
+                throw new RuntimeException("AI 生成计划失败: " + e.getMessage(), e);
+            }
+        }
+
+        // 输出中断时保留已生成的天,缺少的天使用降级模板补齐
+        int emitted = parser.getDays().size();
+        GeneratedPlanResponse response = completePlan(parser, request);
+        response.getDailyPlans().stream()
+                .filter(dayPlan -> !parser.getDays().contains(dayPlan))
+                .forEach(dayPlan -> replayDay(dayPlan, onDay, onActivity));
+        if (response.getDailyPlans().size() > emitted) {
+            log.warn("AI 输出不完整,已补齐 {} 天", response.getDailyPlans().size() - emitted);
+        }
+        // 逐天推送的内容不带坐标,最终的完整计划带坐标
+        geoEnricher.enrich(response, request.getDestination());
+        planCacheService.put(request, response);
+        return response;
+    }
+
+    /**
+     * 推送一天已有的行程(缓存命中或降级补齐时)
+     */
+    private void replayDay(GeneratedPlanResponse.DayPlan dayPlan,
+                           Consumer<GeneratedPlanResponse.DayPlan> onDay,
+                           BiConsumer<Integer, GeneratedPlanResponse.Activity> onActivity) {
+        if (dayPlan.getActivities() != null) {
+            dayPlan.getActivities().forEach(activity -> onActivity.accept(dayPlan.getDay(), activity));
+        }
+        onDay.accept(dayPlan);
+    }
+
+    /**
+     * 重新生成某一天的安排
+     * 只把前后两天的详细安排和其余天的活动标题作为上下文,输出量只有一天,耗时和 token 约为整体生成的 1/天数
+     */
+    public GeneratedPlanResponse.DayPlan regenerateDay(GeneratePlanRequest request,
+                                                       List<GeneratedPlanResponse.DayPlan> dailyPlans,
+                                                       int day, String instructions) {
+        String aiResponse = callLlm(LlmTask.GENERATE, buildRegenerateDayPrompt(request, dailyPlans, day, instructions));
+        GeneratedPlanResponse.DayPlan dayPlan;
+        try {
+            dayPlan = Json.DAY_PLAN_READER.readValue(extractJSON(aiResponse));
+            if (dayPlan.getActivities() == null || dayPlan.getActivities().isEmpty()) {
+                throw new RuntimeException("没有活动安排");
+            }
+        } catch (Exception e) {
+            recordParseFailure("regenerate_day");
+            throw new RuntimeException("重新生成第 " + day + " 天计划失败: " + e.getMessage(), e);
+        }
+        dayPlan.setDay(day);
+        geoEnricher.enrichActivities(dayPlan.getActivities(), request.getDestination());
+        return dayPlan;
+    }
+
+    /**
+     * 重新生成某一天中的单个活动,时间段保持不变
+     */
+    public GeneratedPlanResponse.Activity regenerateActivity(GeneratePlanRequest request,
+                                                             GeneratedPlanResponse.DayPlan dayPlan,
+                                                             int index, String instructions) {
+        GeneratedPlanResponse.Activity original = dayPlan.getActivities().get(index);
+        String aiResponse = callLlm(LlmTask.GENERATE, buildRegenerateActivityPrompt(request, dayPlan, index, instructions));
+        GeneratedPlanResponse.Activity activity;
+        try {
+            activity = Json.ACTIVITY_READER.readValue(extractJSON(aiResponse));
+            if (activity.getTitle() == null || activity.getTitle().isBlank()) {
+                throw new RuntimeException("缺少活动标题");
+            }
+        } catch (Exception e) {
+            recordParseFailure("regenerate_activity");
+            throw new RuntimeException("重新生成活动失败: " + e.getMessage(), e);
+        }
+        if (activity.getTime() == null || activity.getTime().isBlank()) {
+            activity.setTime(original.getTime());
+        }
+        geoEnricher.enrichActivities(List.of(activity), request.getDestination());
+        return activity;
+    }
+
+    /**
+     * 规范化用户输入,用于合并相同的解析请求
+     */
+    private String normalizeInput(String userInput) {
+        if (userInput == null) {
+            return "";
+        }
+        return Normalizer.normalize(userInput, Normalizer.Form.NFKC).trim().replaceAll("\\s+", " ");
+    }
+
+    /**
+     * 模型输出无法解析(或不完整)的次数,按操作区分
+     */
+    private void recordParseFailure(String operation) {
+        meterRegistry.counter("ai.response.parse_failures", "operation", operation).increment();
+    }
+
+    /**
+     * 返回降级内容的次数:circuit_open - 熔断,empty_response - 没有可用的天,
+     * partial - 缺少的天用模板补齐,fanout_day - 并行生成中某天失败
+     */
+    private void recordFallback(String reason) {
+        meterRegistry.counter("ai.plan.fallbacks", "reason", reason).increment();
+    }
+
+    private void registerSingleFlightMetrics(MeterRegistry meterRegistry, String operation, SingleFlight<?, ?> flight) {
+        FunctionCounter.builder("ai.singleflight.calls", flight, SingleFlight::getExecuted)
+                .tag("operation", operation).tag("result", "executed").register(meterRegistry);
+        FunctionCounter.builder("ai.singleflight.calls", flight, SingleFlight::getCollapsed)
+                .tag("operation", operation).tag("result", "collapsed").register(meterRegistry);
+        Gauge.builder("ai.singleflight.in_flight", flight, SingleFlight::inFlightCount)
+                .tag("operation", operation).register(meterRegistry);
+    }
+
+    /**
+     * 是否使用按天并行生成
+     */
+    private boolean useFanOut(GeneratePlanRequest request) {
+        String mode = request.getGenerationMode();
+        if ("fanout".equalsIgnoreCase(mode)) {
+            return true;
+        }
+        if ("single".equalsIgnoreCase(mode)) {
+            return false;
+        }
+        return request.getDuration() >= fanOutMinDays;
+    }
+
+    /**
+     * 按天并行生成:先生成每天主题的骨架,再并行生成每天的详细安排,最后按天序合并
+     * 总耗时取决于最慢的一天,而不是所有天之和
+     */
+    private GeneratedPlanResponse generateFanOut(GeneratePlanRequest request) {
+        int duration = request.getDuration();
+        if (duration > GeneratePlanRequest.MAX_DURATION) {
+            throw new RuntimeException("天数最多为" + GeneratePlanRequest.MAX_DURATION + "天");
+        }
+        PlanSkeleton skeleton = generateSkeleton(request);
+
+        Semaphore permits = new Semaphore(fanOutParallelism);
+        AtomicBoolean fellBack = new AtomicBoolean();
+        // 第一次本地拒绝(限流、熔断、线程池满)后不再提交,尚未开始的天直接跳过
+        AtomicReference<RuntimeException> aborted = new AtomicReference<>();
+        List<CompletableFuture<GeneratedPlanResponse.DayPlan>> futures = new ArrayList<>();
+        for (int day = 1; day <= duration; day++) {
+            final int dayNumber = day;
+            permits.acquireUninterruptibly();
+            if (aborted.get() != null) {
+                permits.release();
+                break;
+            }
+            CompletableFuture<GeneratedPlanResponse.DayPlan> future;
+            try {
+                future = CompletableFuture.supplyAsync(() -> {
+                    RuntimeException abort = aborted.get();
+                    if (abort != null) {
+                        throw abort;
+                    }
+                    return generateDay(request, skeleton, dayNumber);
+                }, fanOutExecutor);
+            } catch (TaskRejectedException e) {
+                permits.release();
+                aborted.compareAndSet(null, e);
+                throw e;
+            }
+            futures.add(future
+                    .exceptionally(e -> {
+                        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                        // 本地限流和熔断不用模板天顶替,交给上层拒绝或整体降级
+                        if (cause instanceof LimitExceededException || cause instanceof CircuitOpenException) {
+                            aborted.compareAndSet(null, (RuntimeException) cause);
+                            throw (RuntimeException) cause;
+                        }
+                        log.warn("第 {} 天生成失败: {}", dayNumber, cause.getMessage());
+                        recordFallback("fanout_day");
+                        fellBack.set(true);
+                        return createFallbackDay(request, dayNumber);
+                    })
+                    .whenComplete((dayPlan, e) -> permits.release()));
+        }
+        if (aborted.get() != null) {
+            throw aborted.get();
+        }
+
+        // 按天序合并,天数以骨架为准,忽略模型返回的 day 字段
+        List<GeneratedPlanResponse.DayPlan> dailyPlans = new ArrayList<>();
+        for (int i = 0; i < futures.size(); i++) {
+            GeneratedPlanResponse.DayPlan dayPlan;
+            try {
+                dayPlan = futures.get(i).join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+            dayPlan.setDay(i + 1);
+            dailyPlans.add(dayPlan);
+        }
+
+        GeneratedPlanResponse response = new GeneratedPlanResponse();
+        response.setDestination(request.getDestination());
+        response.setSummary(skeleton.summary);
+        response.setDailyPlans(dailyPlans);
+        response.setBudgetBreakdown(PlanBudgets.recompute(dailyPlans));
+        response.setTips(skeleton.tips != null ? skeleton.tips : new ArrayList<>());
+        // 含模板天的计划不缓存
+        response.setFallback(fellBack.get());
+        return response;
+    }
+
+    /**
+     * 生成行程骨架(每天一个主题/区域)
+     */
+    private PlanSkeleton generateSkeleton(GeneratePlanRequest request) {
+        String aiResponse = callLlm(LlmTask.GENERATE, buildSkeletonPrompt(request));
+        try {
+            PlanSkeleton skeleton = objectMapper.readValue(extractJSON(aiResponse), PlanSkeleton.class);
+            if (skeleton.days == null) {
+                skeleton.days = new ArrayList<>();
+            }
+            return skeleton;
+        } catch (Exception e) {
+            log.warn("解析行程骨架失败: {}", e.getMessage());
+            recordParseFailure("skeleton");
+            PlanSkeleton skeleton = new PlanSkeleton();
+            skeleton.summary = request.getDestination() + request.getDuration() + "日游";
+            skeleton.days = new ArrayList<>();
+            return skeleton;
+        }
+    }
+
+    /**
+     * 生成某一天的详细安排
+     */
+    private GeneratedPlanResponse.DayPlan generateDay(GeneratePlanRequest request, PlanSkeleton skeleton, int day) {
+        String aiResponse = callLlm(LlmTask.GENERATE, buildDayPrompt(request, skeleton, day));
+        try {
+            return Json.DAY_PLAN_READER.readValue(extractJSON(aiResponse));
+        } catch (Exception e) {
+            throw new RuntimeException("解析第 " + day + " 天计划失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 构建骨架提示词
+     */
+    private String buildSkeletonPrompt(GeneratePlanRequest request) {
+        StringBuilder prompt = new StringBuilder();
+        prompt.append("你是一个专业的旅行规划师。请根据以下用户需求，先规划整个行程的框架，不需要具体活动。\n\n");
+        appendRequirements(prompt, request);
+        prompt.append("\n请以 JSON 格式返回行程框架，格式如下：\n");
+        prompt.append("{\n");
+        prompt.append("  \"summary\": \"行程概述\",\n");
+        prompt.append("  \"days\": [\n");
+        prompt.append("    { \"day\": 1, \"theme\": \"当天主题\", \"area\": \"当天主要游览区域\" }\n");
+        prompt.append("  ],\n");
+        prompt.append("  \"tips\": [\"旅行建议1\", \"旅行建议2\"]\n");
+        prompt.append("}\n\n");
+        prompt.append("重要注意事项：\n");
+        prompt.append("1. days 必须包含全部 ").append(request.getDuration()).append(" 天，每天一个主题\n");
+        prompt.append("2. 相邻几天的区域要考虑地理位置，减少往返\n");
+        prompt.append("3. 只返回 JSON，不要有其他文字说明\n");
+        return prompt.toString();
+    }
+
+    /**
+     * 构建单日提示词,带上前后两天的主题以避免重复
+     */
+    private String buildDayPrompt(GeneratePlanRequest request, PlanSkeleton skeleton, int day) {
+        StringBuilder prompt = new StringBuilder();
+        prompt.append("你是一个专业的旅行规划师。请为下面行程中的第 ").append(day).append(" 天生成详细安排。\n\n");
+        appendRequirements(prompt, request);
+
+        prompt.append("\n行程概述：").append(skeleton.summary).append("\n");
+        prompt.append("行程框架：\n");
+        for (SkeletonDay skeletonDay : skeleton.days) {
+            prompt.append("- 第").append(skeletonDay.day).append("天：").append(skeletonDay.theme)
+                    .append("（").append(skeletonDay.area).append("）\n");
+        }
+        prompt.append("\n当天平均预算约：")
+                .append(Math.round(request.getBudget().doubleValue() / request.getDuration())).append("元\n");
+
+        prompt.append("\n请以 JSON 格式只返回第 ").append(day).append(" 天的计划，格式如下：\n");
+        prompt.append("{\n");
+        prompt.append("  \"day\": ").append(day).append(",\n");
+        prompt.append("  \"activities\": [\n");
+        prompt.append("    {\n");
+        prompt.append("      \"time\": \"09:00-12:00\",\n");
+        prompt.append("      \"type\": \"attraction\",\n");
+        prompt.append("      \"title\": \"景点名称\",\n");
+        prompt.append("      \"description\": \"详细描述\",\n");
+        prompt.append("      \"location\": \"地点名称（只写地点名称，不要写详细地址）\",\n");
+        prompt.append("      \"estimatedCost\": 100.0\n");
+        prompt.append("    }\n");
+        prompt.append("  ]\n");
+        prompt.append("}\n\n");
+        prompt.append("重要注意事项：\n");
+        prompt.append("1. type 可选值：transport, attraction, restaurant, accommodation\n");
+        prompt.append("2. 安排要符合当天主题，不要与其他天的主题重复\n");
+        prompt.append("3. 包含当天的餐饮和住宿安排\n");
+        prompt.append("4. **location 字段只写地点名称**，不要写详细地址\n");
+        prompt.append("5. 只返回 JSON，不要有其他文字说明\n");
+        return prompt.toString();
+    }
+
+    /**
+     * 构建单日重新生成提示词:前后两天给出详细安排以衔接地点,其余天只列活动标题以避免重复
+     */
+    private String buildRegenerateDayPrompt(GeneratePlanRequest request,
+                                            List<GeneratedPlanResponse.DayPlan> dailyPlans,
+                                            int day, String instructions) {
+        StringBuilder prompt = new StringBuilder();
+        prompt.append("你是一个专业的旅行规划师。用户对已有行程中第 ").append(day)
+                .append(" 天的安排不满意，请只重新规划这一天。\n\n");
+        appendRequirements(prompt, request);
+
+        prompt.append("\n其他天的安排：\n");
+        double otherCost = 0;
+        for (GeneratedPlanResponse.DayPlan other : dailyPlans) {
+            if (other.getDay() == null || other.getDay() == day || other.getActivities() == null) {
+                continue;
+            }
+            boolean neighbor = Math.abs(other.getDay() - day) == 1;
+            prompt.append("- 第").append(other.getDay()).append("天：");
+            List<String> items = new ArrayList<>();
+            for (GeneratedPlanResponse.Activity activity : other.getActivities()) {
+                otherCost += activity.getEstimatedCost() != null ? activity.getEstimatedCost() : 0.0;
+                items.add(neighbor
+                        ? activity.getTime() + " " + activity.getTitle() + "（" + activity.getLocation() + "）"
+                        : activity.getTitle());
+            }
+            prompt.append(String.join("；", items)).append("\n");
+        }
+
+        double remaining = request.getBudget().doubleValue() - otherCost;
+        double average = request.getBudget().doubleValue() / request.getDuration();
+        prompt.append("\n当天预算约：").append(Math.round(remaining > 0 ? remaining : average)).append("元\n");
+        if (instructions != null && !instructions.isBlank()) {
+            prompt.append("本次调整要求：").append(instructions).append("\n");
+        }
+
+        prompt.append("\n请以 JSON 格式只返回第 ").append(day).append(" 天的计划，格式如下：\n");
+        prompt.append("{\"day\":").append(day).append(",\"activities\":[{\"time\":\"09:00-12:00\",\"type\":\"attraction\",")
+                .append("\"title\":\"景点名称\",\"description\":\"详细描述\",\"location\":\"地点名称\",\"estimatedCost\":100.0}]}\n\n");
+        prompt.append("重要注意事项：\n");
+        prompt.append("1. type 可选值：transport, attraction, restaurant, accommodation, shopping\n");
+        prompt.append("2. 不要与其他天的活动重复，并与前后两天的地点顺路衔接\n");
+        prompt.append("3. 包含当天的餐饮和住宿安排\n");
+        prompt.append("4. **location 字段只写地点名称**，不要写详细地址\n");
+        prompt.append("5. 只返回 JSON，不要有其他文字说明\n");
+        return prompt.toString();
+    }
+
+    /**
+     * 构建单个活动重新生成提示词,只带当天的其他活动作为上下文
+     */
+    private String buildRegenerateActivityPrompt(GeneratePlanRequest request, GeneratedPlanResponse.DayPlan dayPlan,
+                                                 int index, String instructions) {
+        GeneratedPlanResponse.Activity original = dayPlan.getActivities().get(index);
+        StringBuilder prompt = new StringBuilder();
+        prompt.append("你是一个专业的旅行规划师。请替换下面行程第 ").append(dayPlan.getDay())
+                .append(" 天中的一个活动。\n\n");
+        appendRequirements(prompt, request);
+
+        prompt.append("\n当天安排：\n");
+        List<GeneratedPlanResponse.Activity> activities = dayPlan.getActivities();
+        for (int i = 0; i < activities.size(); i++) {
+            GeneratedPlanResponse.Activity activity = activities.get(i);
+            prompt.append(i == index ? "- [需要替换] " : "- ")
+                    .append(activity.getTime()).append(" ").append(activity.getTitle())
+                    .append("（").append(activity.getLocation()).append("）\n");
+        }
+        if (instructions != null && !instructions.isBlank()) {
+            prompt.append("本次调整要求：").append(instructions).append("\n");
+        }
+
+        prompt.append("\n请以 JSON 格式只返回替换后的一个活动，时间段保持为 ").append(original.getTime()).append("，格式如下：\n");
+        prompt.append("{\"time\":\"").append(original.getTime()).append("\",\"type\":\"attraction\",")
+                .append("\"title\":\"名称\",\"description\":\"详细描述\",\"location\":\"地点名称\",\"estimatedCost\":100.0}\n\n");
+        prompt.append("重要注意事项：\n");
+        prompt.append("1. 不要与当天其他活动重复，地点要与前后活动顺路\n");
+        prompt.append("2. 花费与原活动（").append(original.getEstimatedCost()).append("元）相近\n");
+        prompt.append("3. **location 字段只写地点名称**，不要写详细地址\n");
+        prompt.append("4. 只返回 JSON，不要有其他文字说明\n");
+        return prompt.toString();
+    }
+
+    /**
+     * 追加用户需求信息
+     */
+    private void appendRequirements(StringBuilder prompt, GeneratePlanRequest request) {
+        prompt.append("用户需求：").append(request.getUserInput()).append("\n\n");
+        prompt.append("具体信息：\n");
+        prompt.append("- 目的地：").append(request.getDestination()).append("\n");
+        prompt.append("- 天数：").append(request.getDuration()).append("天\n");
+        prompt.append("- 预算：").append(request.getBudget()).append("元\n");
+        prompt.append("- 人数：").append(request.getTravelers()).append("人\n");
+        if (request.getPreferences() != null && !request.getPreferences().isEmpty()) {
+            prompt.append("- 偏好：").append(request.getPreferences()).append("\n");
+        }
+        if (request.getAdditionalRequirements() != null && !request.getAdditionalRequirements().isEmpty()) {
+            prompt.append("- 额外要求：").append(request.getAdditionalRequirements()).append("\n");
+        }
+    }
+
     /**
      * 构建用户输入解析提示词
      */
@@ -148,8 +719,8 @@ public class AIService {
             
             return result;
         } catch (Exception e) {
-            System.err.println("解析 AI 响应失败: " + e.getMessage());
-            e.printStackTrace();
+            log.warn("解析 AI 响应失败: {}", e.getMessage(), e);
+            recordParseFailure("parse_input");
             throw new RuntimeException("解析 AI 响应失败", e);
         }
     }
@@ -157,23 +728,17 @@ public class AIService {
     /**
      * 构建提示词
      */
-    private String buildPrompt(GeneratePlanRequest request) {
+    String buildPrompt(GeneratePlanRequest request) {
+        if (useCompactOutput()) {
+            // 固定的格式说明在前,用户需求在后
+            StringBuilder prompt = new StringBuilder(CompactPlanCodec.PROMPT_PREFIX);
+            appendRequirements(prompt, request);
+            return prompt.toString();
+        }
+
         StringBuilder prompt = new StringBuilder();
         prompt.append("你是一个专业的旅行规划师。请根据以下用户需求，生成一份详细的旅行计划。\n\n");
-        prompt.append("用户需求：").append(request.getUserInput()).append("\n\n");
-        prompt.append("具体信息：\n");
-        prompt.append("- 目的地：").append(request.getDestination()).append("\n");
-        prompt.append("- 天数：").append(request.getDuration()).append("天\n");
-        prompt.append("- 预算：").append(request.getBudget()).append("元\n");
-        prompt.append("- 人数：").append(request.getTravelers()).append("人\n");
-        
-        if (request.getPreferences() != null && !request.getPreferences().isEmpty()) {
-            prompt.append("- 偏好：").append(request.getPreferences()).append("\n");
-        }
-        
-        if (request.getAdditionalRequirements() != null && !request.getAdditionalRequirements().isEmpty()) {
-            prompt.append("- 额外要求：").append(request.getAdditionalRequirements()).append("\n");
-        }
+        appendRequirements(prompt, request);
         
         prompt.append("\n请以 JSON 格式返回旅行计划，格式如下：\n");
         prompt.append("{\n");
@@ -214,59 +779,101 @@ public class AIService {
         return prompt.toString();
     }
 
+    private boolean useCompactOutput() {
+        return "compact".equalsIgnoreCase(planOutputFormat);
+    }
+
     /**
-     * 调用通义千问 API
+     * 调用大模型,返回输出文本
      */
-    private String callQwenAPI(String prompt) {
+    private String callLlm(LlmTask task, String prompt) {
+        return llmRouter.complete(task, prompt).content();
+    }
+
+    /**
+     * 对冲调用:首个请求超过近期 p95 耗时仍未返回时再发送一个相同请求,取先成功的结果
+     */
+    private String callLlmHedged(String prompt) {
+        if (!hedgeEnabled || parseLatency.count() < hedgeMinSamples
+                || qwenCircuitBreaker.getState() != CircuitBreaker.State.CLOSED) {
+            return timedParseCall(prompt);
+        }
+        long hedgeDelayMs = Math.max(parseLatency.percentile(0.95), hedgeMinDelay.toMillis());
+
+        CompletableFuture<String> primary;
         try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("Authorization", "Bearer " + qwenApiKey);
+            primary = CompletableFuture.supplyAsync(() -> timedParseCall(prompt), hedgeExecutor);
+        } catch (TaskRejectedException e) {
+            return timedParseCall(prompt);
+        }
 
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", "qwen-plus-2025-09-11");
-            
-            Map<String, Object> input = new HashMap<>();
-            List<Map<String, String>> messages = new ArrayList<>();
-            
-            Map<String, String> message = new HashMap<>();
-            message.put("role", "user");
-            message.put("content", prompt);
-            messages.add(message);
-            
-            input.put("messages", messages);
-            requestBody.put("input", input);
-            
-            Map<String, Object> parameters = new HashMap<>();
-            parameters.put("result_format", "message");
-            requestBody.put("parameters", parameters);
+        try {
+            return primary.get(hedgeDelayMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // 超过 p95 仍未返回,发送对冲请求
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("AI 解析被中断", e);
+        }
 
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
-            
-            ResponseEntity<String> response = restTemplate.exchange(
-                qwenApiUrl,
-                HttpMethod.POST,
-                entity,
-                String.class
-            );
-
-            if (response.getStatusCode() == HttpStatus.OK) {
-                JsonNode root = objectMapper.readTree(response.getBody());
-                return root.path("output").path("choices").get(0)
-                        .path("message").path("content").asText();
-            } else {
-                throw new RuntimeException("API 调用失败: " + response.getStatusCode());
+        CompletableFuture<String> hedge;
+        try {
+            hedge = CompletableFuture.supplyAsync(() -> timedParseCall(prompt), hedgeExecutor);
+        } catch (TaskRejectedException e) {
+            return awaitResult(primary);
+        }
+        hedgeSent.increment();
+
+        // 任一请求成功即返回;两个都失败时返回后失败的异常
+        CompletableFuture<String> first = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        primary.whenComplete((value, e) -> {
+            if (e == null) {
+                first.complete(value);
+            } else if (failures.incrementAndGet() == 2) {
+                first.completeExceptionally(e);
             }
-        } catch (Exception e) {
-            System.err.println("调用通义千问 API 失败: " + e.getMessage());
-            throw new RuntimeException("调用 AI API 失败: " + e.getMessage(), e);
+        });
+        hedge.whenComplete((value, e) -> {
+            if (e == null) {
+                if (first.complete(value)) {
+                    hedgeWon.increment();
+                }
+            } else if (failures.incrementAndGet() == 2) {
+                first.completeExceptionally(e);
+            }
+        });
+        return awaitResult(first);
+    }
+
+    private String timedParseCall(String prompt) {
+        long start = System.currentTimeMillis();
+        String result = callLlm(LlmTask.PARSE, prompt);
+        parseLatency.record(System.currentTimeMillis() - start);
+        return result;
+    }
+
+    private String awaitResult(CompletableFuture<String> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw unwrap(e.getCause());
         }
     }
 
+    private RuntimeException unwrap(Throwable e) {
+        if (e instanceof CompletionException && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e instanceof RuntimeException runtimeException ? runtimeException : new RuntimeException(e);
+    }
+
     /**
      * 提取 JSON 字符串（移除可能的 markdown 代码块标记）
      */
-    private String extractJSON(String aiResponse) {
+    String extractJSON(String aiResponse) {
         String jsonString = aiResponse.trim();
         if (jsonString.startsWith("```json")) {
             jsonString = jsonString.substring(7);
@@ -283,22 +890,68 @@ public class AIService {
     /**
      * 解析 AI 响应
      */
-    private GeneratedPlanResponse parseAIResponse(String aiResponse, GeneratePlanRequest request) {
-        try {
-            // 提取 JSON 部分
-            String jsonString = extractJSON(aiResponse);
+    GeneratedPlanResponse parseAIResponse(String aiResponse, GeneratePlanRequest request) {
+        // 增量解析器会跳过 markdown 标记,输出被截断时保留已完整的天
+        PlanStreamParser parser = new PlanStreamParser(objectMapper, dayPlan -> {
+        }, (day, activity) -> {
+        }, useCompactOutput());
+        parser.feed(aiResponse);
+        if (!parser.isComplete()) {
+            log.warn("AI 响应不完整,已解析 {} 天", parser.getDays().size());
+            log.debug("AI 响应内容: {}", aiResponse);
+        }
+        return completePlan(parser, request);
+    }
 
-            GeneratedPlanResponse response = objectMapper.readValue(jsonString, GeneratedPlanResponse.class);
-            response.setDestination(request.getDestination());
-            
-            return response;
-        } catch (Exception e) {
-            System.err.println("解析 AI 响应失败: " + e.getMessage());
-            System.err.println("AI 响应内容: " + aiResponse);
-            
-            // 返回一个简单的默认响应
+    /**
+     * 用解析结果组装计划:没有任何完整的天时返回降级模板;
+     * 缺少的天用降级安排补齐并重新计算预算,补齐过的计划标记为降级结果(不缓存)
+     */
+    private GeneratedPlanResponse completePlan(PlanStreamParser parser, GeneratePlanRequest request) {
+        GeneratedPlanResponse response = parser.finish();
+        if (!parser.isComplete()) {
+            recordParseFailure("plan");
+        }
+        if (response == null || parser.getDays().isEmpty()) {
+            recordFallback("empty_response");
             return createFallbackResponse(request);
         }
+        response.setDestination(request.getDestination());
+
+        List<GeneratedPlanResponse.DayPlan> dailyPlans = new ArrayList<>(parser.getDays());
+        Set<Integer> present = new HashSet<>();
+        for (int i = 0; i < dailyPlans.size(); i++) {
+            GeneratedPlanResponse.DayPlan dayPlan = dailyPlans.get(i);
+            if (dayPlan.getDay() == null) {
+                dayPlan.setDay(i + 1);
+            }
+            present.add(dayPlan.getDay());
+        }
+
+        boolean filled = false;
+        for (int day = 1; day <= request.getDuration(); day++) {
+            if (!present.contains(day)) {
+                dailyPlans.add(createFallbackDay(request, day));
+                filled = true;
+            }
+        }
+        dailyPlans.sort(Comparator.comparing(GeneratedPlanResponse.DayPlan::getDay));
+        response.setDailyPlans(dailyPlans);
+        if (filled) {
+            recordFallback("partial");
+        }
+
+        if (filled || response.getBudgetBreakdown() == null) {
+            response.setBudgetBreakdown(PlanBudgets.recompute(dailyPlans));
+        }
+        if (response.getSummary() == null) {
+            response.setSummary(request.getDestination() + request.getDuration() + "日游");
+        }
+        if (response.getTips() == null) {
+            response.setTips(new ArrayList<>());
+        }
+        response.setFallback(filled || !parser.isComplete());
+        return response;
     }
 
     /**
@@ -306,27 +959,13 @@ public class AIService {
      */
     private GeneratedPlanResponse createFallbackResponse(GeneratePlanRequest request) {
         GeneratedPlanResponse response = new GeneratedPlanResponse();
+        response.setFallback(true);
         response.setDestination(request.getDestination());
         response.setSummary("由于 AI 服务暂时不可用，这是一个基础的旅行计划模板。");
         
         List<GeneratedPlanResponse.DayPlan> dailyPlans = new ArrayList<>();
         for (int i = 1; i <= request.getDuration(); i++) {
-            GeneratedPlanResponse.DayPlan dayPlan = new GeneratedPlanResponse.DayPlan();
-            dayPlan.setDay(i);
-            
-            List<GeneratedPlanResponse.Activity> activities = new ArrayList<>();
-            
-            GeneratedPlanResponse.Activity activity = new GeneratedPlanResponse.Activity();
-            activity.setTime("09:00-18:00");
-            activity.setType("attraction");
-            activity.setTitle("探索" + request.getDestination());
-            activity.setDescription("自由活动时间，探索当地景点");
-            activity.setLocation(request.getDestination());
-            activity.setEstimatedCost(request.getBudget().doubleValue() / request.getDuration());
-            
-            activities.add(activity);
-            dayPlan.setActivities(activities);
-            dailyPlans.add(dayPlan);
+            dailyPlans.add(createFallbackDay(request, i));
         }
         
         response.setDailyPlans(dailyPlans);
@@ -349,4 +988,43 @@ public class AIService {
         
         return response;
     }
+
+    /**
+     * 创建某一天的降级安排
+     */
+    private GeneratedPlanResponse.DayPlan createFallbackDay(GeneratePlanRequest request, int day) {
+        GeneratedPlanResponse.DayPlan dayPlan = new GeneratedPlanResponse.DayPlan();
+        dayPlan.setDay(day);
+        
+        List<GeneratedPlanResponse.Activity> activities = new ArrayList<>();
+        
+        GeneratedPlanResponse.Activity activity = new GeneratedPlanResponse.Activity();
+        activity.setTime("09:00-18:00");
+        activity.setType("attraction");
+        activity.setTitle("探索" + request.getDestination());
+        activity.setDescription("自由活动时间，探索当地景点");
+        activity.setLocation(request.getDestination());
+        activity.setEstimatedCost(request.getBudget().doubleValue() / request.getDuration());
+        
+        activities.add(activity);
+        dayPlan.setActivities(activities);
+        return dayPlan;
+    }
+
+    /**
+     * 行程骨架
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private static class PlanSkeleton {
+        public String summary;
+        public List<SkeletonDay> days;
+        public List<String> tips;
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private static class SkeletonDay {
+        public Integer day;
+        public String theme;
+        public String area;
+    }
 }
@@ -0,0 +1,226 @@
+package com.shingeki.travelplannerbackend.service;
+
+import com.shingeki.travelplannerbackend.entity.AmapCacheEntry;
+import com.shingeki.travelplannerbackend.repository.AmapCacheRepository;
+import com.shingeki.travelplannerbackend.support.LruTtlCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * 高德地图查询缓存
+ * 以规范化后的查询为键缓存高德原始响应,分两层:内存 LRU + TTL,以及 amap_cache 表(重启后仍然有效,多节点共享)
+ * 按响应状态决定是否缓存:有结果的缓存 ttl;没有结果的缓存 negative-ttl;
+ * 参数错误只在内存中缓存 negative-ttl;配额超限和其他错误不缓存,此时如有已过期不久的缓存则返回旧结果
+ */
+@Slf4j
+@Service
+public class AmapCacheService {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final AmapCacheRepository repository;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final boolean persistentEnabled;
+    private final Duration ttl;
+    private final Duration negativeTtl;
+    private final Duration staleIfError;
+    private final LruTtlCache<String, String> memory;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public AmapCacheService(AmapCacheRepository repository,
+                            MeterRegistry meterRegistry,
+                            @Value("${amap.cache.enabled:true}") boolean enabled,
+                            @Value("${amap.cache.max-entries:20000}") int maxEntries,
+                            @Value("${amap.cache.ttl:7d}") Duration ttl,
+                            @Value("${amap.cache.negative-ttl:1h}") Duration negativeTtl,
+                            @Value("${amap.cache.persistent.enabled:true}") boolean persistentEnabled,
+                            @Value("${amap.cache.stale-if-error:7d}") Duration staleIfError) {
+        this.repository = repository;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.persistentEnabled = persistentEnabled && repository != null;
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+        this.staleIfError = staleIfError;
+        this.memory = new LruTtlCache<>(maxEntries, ttl);
+
+        Gauge.builder("amap.cache.size", memory, LruTtlCache::size).register(meterRegistry);
+        FunctionCounter.builder("amap.cache.evictions", memory, LruTtlCache::getEvictions).register(meterRegistry);
+        Gauge.builder("amap.cache.hit_ratio", this, AmapCacheService::hitRatio).register(meterRegistry);
+        // 命中缓存(含返回旧结果)即少调用一次高德
+        FunctionCounter.builder("amap.cache.upstream_saved", hits, AtomicLong::get).register(meterRegistry);
+    }
+
+    /**
+     * 规范化缓存键:全角转半角、转小写、合并空白;城市名去掉末尾的"市"
+     */
+    public static String keyOf(String api, String query, String city) {
+        return api + "|" + normalizeCity(city) + "|" + normalize(query);
+    }
+
+    /**
+     * 只查内存层,不访问数据库和高德;未命中返回 null,不计为未命中(随后的 get 会计数)
+     */
+    public String peek(String api, String key) {
+        if (!enabled) {
+            return null;
+        }
+        String cached = memory.get(key);
+        if (cached != null) {
+            hit(api, "memory");
+        }
+        return cached;
+    }
+
+    /**
+     * 读取缓存,未命中时调用 upstream 并按响应状态写入缓存
+     */
+    public String get(String api, String key, Supplier<String> upstream) {
+        if (!enabled) {
+            return upstream.get();
+        }
+
+        String cached = memory.get(key);
+        if (cached != null) {
+            hit(api, "memory");
+            return cached;
+        }
+
+        AmapCacheEntry stale = null;
+        AmapCacheEntry entry = readPersistent(key);
+        if (entry != null) {
+            Duration remaining = Duration.between(LocalDateTime.now(), entry.getExpiresAt());
+            if (!remaining.isNegative() && !remaining.isZero()) {
+                memory.put(key, entry.getResponse(), remaining);
+                hit(api, "persistent");
+                return entry.getResponse();
+            }
+            stale = entry;
+        }
+
+        misses.incrementAndGet();
+        meterRegistry.counter("amap.cache.requests", "api", api, "result", "miss", "tier", "none").increment();
+
+        String response;
+        try {
+            response = upstream.get();
+        } catch (RuntimeException e) {
+            if (stale != null) {
+                log.warn("高德 {} 调用失败,返回过期缓存: {}", api, e.getMessage());
+                return serveStale(api, stale);
+            }
+            throw e;
+        }
+
+        AmapResponseStatus status = AmapResponseStatus.of(response);
+        meterRegistry.counter("amap.upstream.requests", "api", api,
+                "status", status.name().toLowerCase(Locale.ROOT)).increment();
+        switch (status) {
+            case OK -> store(api, key, response, ttl);
+            case EMPTY -> store(api, key, response, negativeTtl);
+            case INVALID_REQUEST -> memory.put(key, response, negativeTtl);
+            case RATE_LIMITED, ERROR -> {
+                if (stale != null) {
+                    log.warn("高德 {} 返回 {},返回过期缓存", api, status);
+                    return serveStale(api, stale);
+                }
+            }
+        }
+        return response;
+    }
+
+    /**
+     * 定时清理过期超过 stale-if-error 的缓存行
+     */
+    @Scheduled(fixedDelayString = "${amap.cache.cleanup-interval:1h}",
+            initialDelayString = "${amap.cache.cleanup-interval:1h}")
+    public void cleanupPersistent() {
+        if (!enabled || !persistentEnabled) {
+            return;
+        }
+        try {
+            int deleted = repository.deleteExpiredBefore(LocalDateTime.now().minus(staleIfError));
+            if (deleted > 0) {
+                log.info("已清理 {} 条过期的高德缓存", deleted);
+            }
+        } catch (Exception e) {
+            log.warn("清理高德缓存失败: {}", e.getMessage());
+        }
+    }
+
+    double hitRatio() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+
+    private void hit(String api, String tier) {
+        hits.incrementAndGet();
+        meterRegistry.counter("amap.cache.requests", "api", api, "result", "hit", "tier", tier).increment();
+    }
+
+    private String serveStale(String api, AmapCacheEntry stale) {
+        hits.incrementAndGet();
+        meterRegistry.counter("amap.cache.requests", "api", api, "result", "stale", "tier", "persistent").increment();
+        return stale.getResponse();
+    }
+
+    private AmapCacheEntry readPersistent(String key) {
+        if (!persistentEnabled) {
+            return null;
+        }
+        try {
+            AmapCacheEntry entry = repository.findById(key).orElse(null);
+            if (entry != null && entry.getExpiresAt().plus(staleIfError).isBefore(LocalDateTime.now())) {
+                return null;
+            }
+            return entry;
+        } catch (Exception e) {
+            log.warn("读取高德缓存表失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void store(String api, String key, String response, Duration entryTtl) {
+        memory.put(key, response, entryTtl);
+        if (!persistentEnabled) {
+            return;
+        }
+        try {
+            repository.upsert(key, api, response, LocalDateTime.now().plus(entryTtl));
+        } catch (Exception e) {
+            log.warn("写入高德缓存表失败: {}", e.getMessage());
+        }
+    }
+
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT).trim();
+        return WHITESPACE.matcher(normalized).replaceAll(" ");
+    }
+
+    static String normalizeCity(String city) {
+        String normalized = normalize(city);
+        if (normalized.length() > 2 && normalized.endsWith("市")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        return normalized;
+    }
+}
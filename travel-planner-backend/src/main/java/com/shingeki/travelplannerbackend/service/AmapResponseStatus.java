@@ -0,0 +1,60 @@
+package com.shingeki.travelplannerbackend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.shingeki.travelplannerbackend.support.Json;
+
+import java.util.Set;
+
+/**
+ * 高德 Web 服务响应的分类,决定响应能否缓存
+ * status 为 1 表示成功;为 0 时 infocode 说明原因,见高德文档"错误码说明"
+ */
+public enum AmapResponseStatus {
+
+    /** 成功且有结果 */
+    OK,
+
+    /** 成功但没有结果 */
+    EMPTY,
+
+    /** 请求参数错误,相同请求重试结果不变 */
+    INVALID_REQUEST,
+
+    /** 配额或 QPS 超限 */
+    RATE_LIMITED,
+
+    /** Key 无效、服务繁忙等其他错误 */
+    ERROR;
+
+    // 日调用量、访问频率、IP、QPS(总/单 Key/单用户)、海外日调用量超限
+    private static final Set<String> RATE_LIMIT_CODES = Set.of(
+            "10003", "10004", "10010", "10014", "10019", "10020", "10021", "10029", "10044", "10045");
+
+    // 参数非法、缺少必填参数、请求协议非法、查询内容非法
+    private static final Set<String> INVALID_REQUEST_CODES = Set.of("20000", "20001", "20002", "20012");
+
+    public static AmapResponseStatus of(String response) {
+        try {
+            return of(Json.MAPPER.readTree(response));
+        } catch (Exception e) {
+            return ERROR;
+        }
+    }
+
+    public static AmapResponseStatus of(JsonNode root) {
+        if (root == null) {
+            return ERROR;
+        }
+        if ("1".equals(root.path("status").asText())) {
+            return "0".equals(root.path("count").asText()) ? EMPTY : OK;
+        }
+        String infocode = root.path("infocode").asText();
+        if (RATE_LIMIT_CODES.contains(infocode)) {
+            return RATE_LIMITED;
+        }
+        if (INVALID_REQUEST_CODES.contains(infocode)) {
+            return INVALID_REQUEST;
+        }
+        return ERROR;
+    }
+}
@@ -0,0 +1,205 @@
+package com.shingeki.travelplannerbackend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.shingeki.travelplannerbackend.dto.GeneratedPlanResponse;
+import com.shingeki.travelplannerbackend.support.Json;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 高德地图 Web 服务 API
+ * 地点搜索和地理编码先查本地 POI 索引,再经 AmapCacheService 缓存调用高德,高德的结果收录进 POI 索引;
+ * 地点名称转坐标(locate)也走同样的路径;
+ * 未命中缓存的调用经 AmapUpstreamScheduler 在 Key 的 QPS 配额内执行,使用带连接池的 amapRestTemplate;
+ * 响应体超过 max-response-size 时放弃读取,每个请求占用的内存有上限
+ */
+@Slf4j
+@Service
+public class AmapService {
+
+    private final RestTemplate restTemplate;
+    private final AmapCacheService cacheService;
+    private final PoiIndex poiIndex;
+    private final AmapUpstreamScheduler scheduler;
+    private final String baseUrl;
+    private final int maxResponseBytes;
+
+    public AmapService(@Qualifier("amapRestTemplate") RestTemplate restTemplate,
+                       AmapCacheService cacheService,
+                       PoiIndex poiIndex,
+                       AmapUpstreamScheduler scheduler,
+                       @Value("${amap.api.url:https://restapi.amap.com}") String baseUrl,
+                       @Value("${amap.http.max-response-size:512KB}") DataSize maxResponseSize) {
+        this.restTemplate = restTemplate;
+        this.cacheService = cacheService;
+        this.poiIndex = poiIndex;
+        this.scheduler = scheduler;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.maxResponseBytes = (int) maxResponseSize.toBytes();
+    }
+
+    public boolean isAvailable() {
+        return scheduler.hasKeys();
+    }
+
+    /**
+     * 地点搜索(POI 搜索),返回高德原始响应
+     */
+    public String searchPlace(String keywords, String city) {
+        String local = searchPlaceLocal(keywords, city);
+        return local != null ? local : searchPlaceUpstream(keywords, city);
+    }
+
+    /**
+     * 只查本地 POI 索引和内存缓存,不会阻塞;未命中返回 null
+     */
+    public String searchPlaceLocal(String keywords, String city) {
+        String indexed = poiIndex.searchResponse(keywords, city);
+        return indexed != null ? indexed
+                : cacheService.peek("search", AmapCacheService.keyOf("search", keywords, city));
+    }
+
+    /**
+     * 经缓存表或高德查询,可能等待配额和网络
+     */
+    public String searchPlaceUpstream(String keywords, String city) {
+        String response = cacheService.get("search", AmapCacheService.keyOf("search", keywords, city),
+                () -> fetchSearch(keywords, city));
+        poiIndex.addSearchResult(keywords, city, response);
+        return response;
+    }
+
+    /**
+     * 地理编码(地址转坐标),返回高德原始响应
+     */
+    public String geocode(String address) {
+        return geocode(address, null);
+    }
+
+    /**
+     * 地理编码,city 为空时不限定城市
+     */
+    public String geocode(String address, String city) {
+        String local = geocodeLocal(address, city);
+        return local != null ? local : geocodeUpstream(address, city);
+    }
+
+    /**
+     * 只查本地 POI 索引和内存缓存,不会阻塞;未命中返回 null
+     */
+    public String geocodeLocal(String address, String city) {
+        String indexed = poiIndex.geocodeResponse(address, city);
+        return indexed != null ? indexed
+                : cacheService.peek("geocode", AmapCacheService.keyOf("geocode", address, city));
+    }
+
+    /**
+     * 经缓存表或高德地理编码,可能等待配额和网络
+     */
+    public String geocodeUpstream(String address, String city) {
+        String response = cacheService.get("geocode", AmapCacheService.keyOf("geocode", address, city),
+                () -> fetchGeocode(address, city));
+        poiIndex.addGeocodeResult(address, city, response);
+        return response;
+    }
+
+    private String fetchSearch(String keywords, String city) {
+        return scheduler.execute(key -> {
+            URI uri = UriComponentsBuilder.fromUriString(baseUrl + "/v3/place/text")
+                    .queryParam("key", key)
+                    .queryParam("keywords", keywords)
+                    .queryParam("types", "")
+                    .queryParam("city", city != null ? city : "")
+                    .queryParam("offset", 1)
+                    .queryParam("page", 1)
+                    .queryParam("extensions", "base")
+                    .encode()
+                    .build()
+                    .toUri();
+            return restTemplate.execute(uri, HttpMethod.GET, null, this::readBody);
+        });
+    }
+
+    private String fetchGeocode(String address, String city) {
+        return scheduler.execute(key -> {
+            UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(baseUrl + "/v3/geocode/geo")
+                    .queryParam("key", key)
+                    .queryParam("address", address);
+            if (city != null && !city.isBlank()) {
+                builder.queryParam("city", city);
+            }
+            URI uri = builder.encode()
+                    .build()
+                    .toUri();
+            return restTemplate.execute(uri, HttpMethod.GET, null, this::readBody);
+        });
+    }
+
+    /**
+     * 读取响应体,超过 max-response-size 时放弃
+     */
+    private String readBody(ClientHttpResponse response) throws IOException {
+        try (InputStream in = response.getBody()) {
+            byte[] body = in.readNBytes(maxResponseBytes + 1);
+            if (body.length > maxResponseBytes) {
+                throw new RuntimeException("高德响应超过 " + maxResponseBytes + " 字节");
+            }
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * 地点名称转坐标:先按城市做 POI 搜索(与前端的定位方式一致),没有结果时再做地理编码
+     * 找不到时返回 null;调用失败时抛出异常
+     */
+    public GeneratedPlanResponse.LocationCoordinate locate(String place, String city) {
+        GeneratedPlanResponse.LocationCoordinate coordinate = firstLocation(searchPlace(place, city), "pois");
+        if (coordinate == null) {
+            String address = city != null && !place.contains(city) ? city + place : place;
+            coordinate = firstLocation(geocode(address), "geocodes");
+        }
+        return coordinate;
+    }
+
+    /**
+     * 取结果数组中第一条的 location("经度,纬度");status 不为 1 视为调用失败
+     */
+    private GeneratedPlanResponse.LocationCoordinate firstLocation(String response, String field) {
+        JsonNode root;
+        try {
+            root = Json.MAPPER.readTree(response);
+        } catch (Exception e) {
+            throw new RuntimeException("高德响应解析失败: " + e.getMessage(), e);
+        }
+        if (!"1".equals(root.path("status").asText())) {
+            throw new RuntimeException("高德 API 调用失败: " + root.path("info").asText());
+        }
+
+        // 没有坐标的结果 location 为空数组
+        String location = root.path(field).path(0).path("location").asText("");
+        int comma = location.indexOf(',');
+        if (comma <= 0) {
+            return null;
+        }
+        try {
+            double longitude = Double.parseDouble(location.substring(0, comma));
+            double latitude = Double.parseDouble(location.substring(comma + 1));
+            return new GeneratedPlanResponse.LocationCoordinate(latitude, longitude);
+        } catch (NumberFormatException e) {
+            log.warn("无法解析高德坐标: {}", location);
+            return null;
+        }
+    }
+}
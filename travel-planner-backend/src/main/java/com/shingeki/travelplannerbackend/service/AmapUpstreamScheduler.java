@@ -0,0 +1,351 @@
+package com.shingeki.travelplannerbackend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.shingeki.travelplannerbackend.security.CurrentUser;
+import com.shingeki.travelplannerbackend.support.Json;
+import com.shingeki.travelplannerbackend.support.LimitExceededException;
+import com.shingeki.travelplannerbackend.support.TokenBucket;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * 高德上游调用调度
+ * 每个 API Key 一个令牌桶(key-qps),多个 Key 轮询使用;调用先按调用方排队(已登录为用户,否则为客户端地址),
+ * 有令牌时按调用方轮流放行,同一调用方内先到先得,单个调用方的批量查询不会挡住其他人。
+ * 等待超过 max-wait 或队列已满时抛出 {@link LimitExceededException}
+ *
+ * 容量:每秒最多放行 Key 数 × key-qps 次调用,同时排队的调用数不超过 amapExecutor 的线程数,
+ * amapExecutor 本身也按调用方公平排队;max-wait 从任务提交到 amapExecutor 时开始计算(在线程池排队的时间也计入),
+ * 默认与批量查询的整体超时 amap.batch.timeout 相同,单 Key 时一次批量查询的 N 个地点约需 N / key-qps 秒
+ *
+ * Key 健康状态:
+ * - 高德返回 QPS 超限:该 Key 冷却 qps-cooldown,在截止时间内换 Key 或等待后重试
+ * - 日配额用尽、Key 无效:冷却 quota-cooldown
+ * - 连续 failure-threshold 次调用异常或服务错误:冷却 failure-cooldown
+ */
+@Slf4j
+@Service
+public class AmapUpstreamScheduler {
+
+    public static final String ANONYMOUS = "anonymous";
+
+    // 当前任务提交到 amapExecutor 的时间(System.nanoTime),由 propagateSubmitTime 设置
+    private static final ThreadLocal<Long> SUBMITTED_AT = new ThreadLocal<>();
+
+    // 日调用量超限(总 / 单用户 / 海外)
+    private static final Set<String> DAILY_QUOTA_CODES = Set.of("10003", "10044", "10045");
+    // Key 无效、服务未开通、平台不匹配、权限不足、Key 已删除
+    private static final Set<String> KEY_INVALID_CODES = Set.of("10001", "10002", "10009", "10012", "10013");
+
+    private final MeterRegistry meterRegistry;
+    private final List<KeyState> keys = new ArrayList<>();
+    private final long maxWaitNanos;
+    private final int maxQueueSize;
+    private final Duration qpsCooldown;
+    private final Duration quotaCooldown;
+    private final int failureThreshold;
+    private final Duration failureCooldown;
+    private final Timer queueWait;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition granted = lock.newCondition();
+    // 用户 -> 排队中的调用;rotation 为有排队调用的用户,按轮到的顺序
+    private final Map<String, Deque<Ticket>> queues = new HashMap<>();
+    private final Deque<String> rotation = new ArrayDeque<>();
+    private int waiting;
+    private int nextKey;
+
+    public AmapUpstreamScheduler(MeterRegistry meterRegistry,
+                                 @Value("${amap.api.keys:}") String apiKeys,
+                                 @Value("${amap.api.key:}") String apiKey,
+                                 @Value("${amap.upstream.key-qps:10}") double keyQps,
+                                 @Value("${amap.upstream.key-burst:1}") double keyBurst,
+                                 @Value("${amap.upstream.max-wait:${amap.batch.timeout:10s}}") Duration maxWait,
+                                 @Value("${amap.upstream.max-queue:500}") int maxQueueSize,
+                                 @Value("${amap.upstream.qps-cooldown:1s}") Duration qpsCooldown,
+                                 @Value("${amap.upstream.quota-cooldown:10m}") Duration quotaCooldown,
+                                 @Value("${amap.upstream.failure-threshold:3}") int failureThreshold,
+                                 @Value("${amap.upstream.failure-cooldown:30s}") Duration failureCooldown) {
+        this.meterRegistry = meterRegistry;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.maxQueueSize = maxQueueSize;
+        this.qpsCooldown = qpsCooldown;
+        this.quotaCooldown = quotaCooldown;
+        this.failureThreshold = failureThreshold;
+        this.failureCooldown = failureCooldown;
+        this.queueWait = Timer.builder("amap.upstream.queue.wait").register(meterRegistry);
+
+        // 配置了 amap.api.keys(逗号分隔)时使用多个 Key,否则使用 amap.api.key
+        String configured = apiKeys != null && !apiKeys.isBlank() ? apiKeys : apiKey;
+        if (configured != null) {
+            for (String key : configured.split(",")) {
+                if (!key.isBlank()) {
+                    KeyState state = new KeyState(key.trim(), "key" + (keys.size() + 1),
+                            new TokenBucket(Math.max(1, keyBurst), keyQps, Duration.ofSeconds(1)));
+                    keys.add(state);
+                    Gauge.builder("amap.upstream.key.available", state, s -> s.isCooling(System.nanoTime()) ? 0 : 1)
+                            .tag("key", state.label)
+                            .register(meterRegistry);
+                }
+            }
+        }
+        Gauge.builder("amap.upstream.queue.depth", this, AmapUpstreamScheduler::getQueueDepth).register(meterRegistry);
+    }
+
+    /**
+     * amapExecutor 的 TaskDecorator:记录提交时间,任务中的上游调用以提交时间计算截止时间
+     */
+    public static Runnable propagateSubmitTime(Runnable task) {
+        long submittedAt = System.nanoTime();
+        return () -> {
+            Long previous = SUBMITTED_AT.get();
+            SUBMITTED_AT.set(submittedAt);
+            try {
+                task.run();
+            } finally {
+                if (previous == null) {
+                    SUBMITTED_AT.remove();
+                } else {
+                    SUBMITTED_AT.set(previous);
+                }
+            }
+        };
+    }
+
+    public boolean hasKeys() {
+        return !keys.isEmpty();
+    }
+
+    /**
+     * 在 Key 的配额内执行一次高德调用,call 的参数为分配到的 Key
+     * 高德返回 QPS 超限或 Key 不可用时,在截止时间内换 Key 重试;最终仍失败时返回高德的响应
+     */
+    public String execute(Function<String, String> call) {
+        if (keys.isEmpty()) {
+            throw new RuntimeException("未配置高德 API Key");
+        }
+        String user = currentCaller();
+        Long submittedAt = SUBMITTED_AT.get();
+        long deadline = (submittedAt != null ? submittedAt : System.nanoTime()) + maxWaitNanos;
+        while (true) {
+            KeyState key = acquire(user, deadline);
+            String response;
+            try {
+                response = call.apply(key.key);
+            } catch (RuntimeException e) {
+                onFailure(key);
+                throw e;
+            }
+
+            JsonNode root = parse(response);
+            AmapResponseStatus status = AmapResponseStatus.of(root);
+            String infocode = root != null ? root.path("infocode").asText() : "";
+            if (status == AmapResponseStatus.RATE_LIMITED || KEY_INVALID_CODES.contains(infocode)) {
+                boolean qps = status == AmapResponseStatus.RATE_LIMITED && !DAILY_QUOTA_CODES.contains(infocode);
+                coolDown(key, qps ? qpsCooldown : quotaCooldown, qps ? "rate_limited" : "quota");
+                if (System.nanoTime() < deadline) {
+                    continue;
+                }
+                return response;
+            }
+            if (status == AmapResponseStatus.ERROR) {
+                onFailure(key);
+            } else {
+                key.failures.set(0);
+            }
+            return response;
+        }
+    }
+
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 排队等待分配 Key;每次被唤醒时按用户轮流把可用的令牌分给队首的调用
+     */
+    private KeyState acquire(String user, long deadline) {
+        long start = System.nanoTime();
+        lock.lock();
+        try {
+            if (start - deadline >= 0) {
+                // 在线程池里已经排队超过 max-wait
+                throttled("all", "deadline");
+                throw new LimitExceededException("高德地图请求过于频繁,请稍后重试", Duration.ofSeconds(1));
+            }
+            if (waiting >= maxQueueSize) {
+                throttled("all", "queue_full");
+                throw new LimitExceededException("高德地图请求排队已满,请稍后重试", Duration.ofSeconds(1));
+            }
+            Ticket ticket = new Ticket();
+            Deque<Ticket> queue = queues.computeIfAbsent(user, k -> new ArrayDeque<>());
+            if (queue.isEmpty()) {
+                rotation.addLast(user);
+            }
+            queue.addLast(ticket);
+            waiting++;
+            try {
+                dispatch();
+                if (ticket.key == null) {
+                    throttled("all", "wait");
+                }
+                while (ticket.key == null) {
+                    long now = System.nanoTime();
+                    if (now >= deadline) {
+                        remove(user, ticket);
+                        throttled("all", "deadline");
+                        throw new LimitExceededException("高德地图请求过于频繁,请稍后重试", Duration.ofSeconds(1));
+                    }
+                    granted.awaitNanos(Math.min(deadline - now, Math.max(nanosUntilAnyKey(now), 1_000_000L)));
+                    dispatch();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (ticket.key == null) {
+                    remove(user, ticket);
+                    throw new LimitExceededException("等待高德地图请求配额时被中断", Duration.ofSeconds(1));
+                }
+            } finally {
+                waiting--;
+            }
+            queueWait.record(Duration.ofNanos(System.nanoTime() - start));
+            return ticket.key;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 有可用 Key 时按用户轮流放行队首调用,调用方持有锁
+     */
+    private void dispatch() {
+        boolean any = false;
+        while (!rotation.isEmpty()) {
+            KeyState key = pickKey(System.nanoTime());
+            if (key == null) {
+                break;
+            }
+            String user = rotation.pollFirst();
+            Deque<Ticket> queue = queues.get(user);
+            queue.pollFirst().key = key;
+            if (queue.isEmpty()) {
+                queues.remove(user);
+            } else {
+                rotation.addLast(user);
+            }
+            any = true;
+        }
+        if (any) {
+            granted.signalAll();
+        }
+    }
+
+    /**
+     * 从上次之后的 Key 开始轮询,跳过冷却中的 Key,取第一个有令牌的
+     */
+    private KeyState pickKey(long now) {
+        for (int i = 0; i < keys.size(); i++) {
+            int index = (nextKey + i) % keys.size();
+            KeyState key = keys.get(index);
+            if (!key.isCooling(now) && key.bucket.tryAcquire()) {
+                nextKey = index + 1;
+                return key;
+            }
+        }
+        return null;
+    }
+
+    private long nanosUntilAnyKey(long now) {
+        long min = Long.MAX_VALUE;
+        for (KeyState key : keys) {
+            long cooling = key.coolDownUntil - now;
+            min = Math.min(min, cooling > 0 ? cooling : key.bucket.nanosUntilAvailable());
+        }
+        return min;
+    }
+
+    private void remove(String user, Ticket ticket) {
+        Deque<Ticket> queue = queues.get(user);
+        if (queue == null) {
+            return;
+        }
+        queue.remove(ticket);
+        if (queue.isEmpty()) {
+            queues.remove(user);
+            rotation.remove(user);
+        }
+    }
+
+    private void onFailure(KeyState key) {
+        if (key.failures.incrementAndGet() >= failureThreshold) {
+            key.failures.set(0);
+            coolDown(key, failureCooldown, "unhealthy");
+        }
+    }
+
+    private void coolDown(KeyState key, Duration duration, String reason) {
+        key.coolDownUntil = System.nanoTime() + duration.toNanos();
+        throttled(key.label, reason);
+        if (!"rate_limited".equals(reason)) {
+            log.warn("高德 Key {} 暂停使用 {} 秒: {}", key.label, duration.toSeconds(), reason);
+        }
+    }
+
+    private void throttled(String key, String reason) {
+        meterRegistry.counter("amap.upstream.throttled", "key", key, "reason", reason).increment();
+    }
+
+    private static JsonNode parse(String response) {
+        if (response == null) {
+            return null;
+        }
+        try {
+            return Json.MAPPER.readTree(response);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static String currentCaller() {
+        String caller = CurrentUser.caller();
+        return caller != null ? caller : ANONYMOUS;
+    }
+
+    private static final class KeyState {
+        private final String key;
+        private final String label; // 指标中使用,不暴露 Key 本身
+        private final TokenBucket bucket;
+        private volatile long coolDownUntil = System.nanoTime();
+        private final AtomicInteger failures = new AtomicInteger();
+
+        private KeyState(String key, String label, TokenBucket bucket) {
+            this.key = key;
+            this.label = label;
+            this.bucket = bucket;
+        }
+
+        private boolean isCooling(long now) {
+            return coolDownUntil - now > 0;
+        }
+    }
+
+    private static final class Ticket {
+        private KeyState key;
+    }
+}
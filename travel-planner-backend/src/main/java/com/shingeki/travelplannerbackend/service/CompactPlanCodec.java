@@ -0,0 +1,160 @@
+package com.shingeki.travelplannerbackend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.shingeki.travelplannerbackend.dto.GeneratedPlanResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 紧凑输出格式 - 模型使用短键和按位置排列的数组输出计划,服务端展开为 GeneratedPlanResponse
+ * 生成耗时主要取决于输出 token 数,省去每个活动重复的长键名可以明显缩短生成时间
+ *
+ * <pre>
+ * {"s":"行程概述",
+ *  "d":[[天数,[[时间,类型,标题,描述,地点,花费], ...]], ...],
+ *  "b":[住宿,餐饮,交通,门票,购物,其他],
+ *  "t":["建议1","建议2"]}
+ * </pre>
+ * 类型代码:t - transport,a - attraction,r - restaurant,h - accommodation,s - shopping
+ */
+final class CompactPlanCodec {
+
+    static final String SUMMARY_KEY = "s";
+    static final String DAILY_PLANS_KEY = "d";
+    static final String BUDGET_KEY = "b";
+    static final String TIPS_KEY = "t";
+
+    /**
+     * 固定的格式说明,放在提示词最前面,不随请求变化,便于服务商缓存提示词前缀
+     */
+    static final String PROMPT_PREFIX = """
+            你是一个专业的旅行规划师。请根据提示词末尾的用户需求，生成一份详细的旅行计划。
+
+            请只返回一行紧凑 JSON（不要换行缩进，不要 markdown 标记，不要其他文字说明），格式如下：
+            {"s":"行程概述","d":[[1,[["09:00-12:00","a","景点名称","详细描述","地点名称",100]]]],"b":[1000,800,500,600,100,0],"t":["旅行建议1","旅行建议2"]}
+
+            字段说明：
+            1. s：行程概述
+            2. d：每天的安排，每一天是 [天数, 活动列表]；每个活动是 [时间, 类型, 标题, 描述, 地点, 预估花费]，顺序固定
+            3. 类型代码：t=交通，a=景点，r=餐厅，h=住宿，s=购物
+            4. b：预算分配 [住宿, 餐饮, 交通, 门票, 购物, 其他]，总和不超过用户预算
+            5. t：旅行建议
+
+            重要注意事项：
+            1. 活动安排要符合实际时间和地理位置
+            2. **地点只写地点名称**，例如：'故宫'、'王府井'、'全聚德烤鸭店'，**不要写详细地址**
+            3. 地点名称要使用正式的、广为人知的名称，方便地图搜索
+
+            """;
+
+    private CompactPlanCodec() {
+    }
+
+    /**
+     * 展开计划骨架(概述、预算、建议),不包含每日安排
+     */
+    static GeneratedPlanResponse expandSkeleton(JsonNode root) {
+        GeneratedPlanResponse response = new GeneratedPlanResponse();
+        JsonNode summary = root.get(SUMMARY_KEY);
+        if (summary != null && summary.isTextual()) {
+            response.setSummary(summary.asText());
+        }
+
+        JsonNode budget = root.get(BUDGET_KEY);
+        if (budget != null && budget.isArray() && budget.size() > 0) {
+            GeneratedPlanResponse.BudgetBreakdown breakdown = new GeneratedPlanResponse.BudgetBreakdown();
+            breakdown.setAccommodation(doubleAt(budget, 0));
+            breakdown.setFood(doubleAt(budget, 1));
+            breakdown.setTransport(doubleAt(budget, 2));
+            breakdown.setAttraction(doubleAt(budget, 3));
+            breakdown.setShopping(doubleAt(budget, 4));
+            breakdown.setOther(doubleAt(budget, 5));
+            response.setBudgetBreakdown(breakdown);
+        }
+
+        JsonNode tips = root.get(TIPS_KEY);
+        if (tips != null && tips.isArray()) {
+            List<String> tipList = new ArrayList<>();
+            tips.forEach(tip -> tipList.add(tip.asText()));
+            response.setTips(tipList);
+        }
+        response.setDailyPlans(new ArrayList<>());
+        return response;
+    }
+
+    /**
+     * 展开一天的安排:[天数, 活动列表]
+     */
+    static GeneratedPlanResponse.DayPlan expandDay(JsonNode day) {
+        if (!day.isArray() || day.isEmpty()) {
+            throw new IllegalArgumentException("单日计划格式错误: " + day);
+        }
+        GeneratedPlanResponse.DayPlan dayPlan = new GeneratedPlanResponse.DayPlan();
+        if (day.get(0).canConvertToInt()) {
+            dayPlan.setDay(day.get(0).asInt());
+        }
+        List<GeneratedPlanResponse.Activity> activities = new ArrayList<>();
+        JsonNode activityNodes = day.get(1);
+        if (activityNodes != null && activityNodes.isArray()) {
+            activityNodes.forEach(activity -> activities.add(expandActivity(activity)));
+        }
+        dayPlan.setActivities(activities);
+        return dayPlan;
+    }
+
+    /**
+     * 展开一个活动:[时间, 类型, 标题, 描述, 地点, 预估花费]
+     */
+    static GeneratedPlanResponse.Activity expandActivity(JsonNode node) {
+        if (!node.isArray()) {
+            throw new IllegalArgumentException("活动格式错误: " + node);
+        }
+        GeneratedPlanResponse.Activity activity = new GeneratedPlanResponse.Activity();
+        activity.setTime(textAt(node, 0));
+        activity.setType(expandType(textAt(node, 1)));
+        activity.setTitle(textAt(node, 2));
+        activity.setDescription(textAt(node, 3));
+        activity.setLocation(textAt(node, 4));
+        activity.setEstimatedCost(doubleAt(node, 5));
+        return activity;
+    }
+
+    /**
+     * 类型代码转为完整类型;模型直接输出完整类型时原样返回
+     */
+    static String expandType(String code) {
+        if (code == null) {
+            return null;
+        }
+        return switch (code) {
+            case "t" -> "transport";
+            case "a" -> "attraction";
+            case "r" -> "restaurant";
+            case "h" -> "accommodation";
+            case "s" -> "shopping";
+            default -> code;
+        };
+    }
+
+    private static String textAt(JsonNode array, int index) {
+        JsonNode value = array.get(index);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    private static Double doubleAt(JsonNode array, int index) {
+        JsonNode value = array.get(index);
+        if (value == null || value.isNull()) {
+            return 0.0;
+        }
+        return value.isNumber() ? value.asDouble() : parseDouble(value.asText());
+    }
+
+    private static double parseDouble(String text) {
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            return 0.0;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.shingeki.travelplannerbackend.service;
+
+import com.shingeki.travelplannerbackend.dto.GeneratedPlanResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 行程坐标补全 - 在计划返回前为活动填入坐标
+ * 所有活动的地点去重后在 amapExecutor 上并行查询(线程数即并发上限),坐标由 AmapService 缓存;
+ * 超过等待时间仍未返回的地点不填坐标,由前端自行定位,后台查询完成后结果仍会进入缓存
+ */
+@Slf4j
+@Service
+public class ItineraryGeoEnricher {
+
+    private final AmapService amapService;
+    private final TaskExecutor executor;
+    private final boolean enabled;
+    private final Duration timeout;
+    private final Timer enrichTimer;
+    private final Counter resolved;
+    private final Counter unresolved;
+
+    public ItineraryGeoEnricher(AmapService amapService,
+                                @Qualifier("amapExecutor") TaskExecutor executor,
+                                MeterRegistry meterRegistry,
+                                @Value("${amap.enrich.enabled:true}") boolean enabled,
+                                @Value("${amap.enrich.timeout:8s}") Duration timeout) {
+        this.amapService = amapService;
+        this.executor = executor;
+        this.enabled = enabled;
+        this.timeout = timeout;
+        this.enrichTimer = Timer.builder("amap.enrich").register(meterRegistry);
+        this.resolved = Counter.builder("amap.enrich.locations").tag("result", "resolved").register(meterRegistry);
+        this.unresolved = Counter.builder("amap.enrich.locations").tag("result", "unresolved").register(meterRegistry);
+    }
+
+    /**
+     * 为整个计划补全坐标
+     */
+    public void enrich(GeneratedPlanResponse plan, String city) {
+        if (plan == null || plan.getDailyPlans() == null) {
+            return;
+        }
+        List<GeneratedPlanResponse.Activity> activities = new ArrayList<>();
+        for (GeneratedPlanResponse.DayPlan dayPlan : plan.getDailyPlans()) {
+            if (dayPlan.getActivities() != null) {
+                activities.addAll(dayPlan.getActivities());
+            }
+        }
+        enrichActivities(activities, city);
+    }
+
+    /**
+     * 为没有坐标的活动补全坐标,同一地点只查询一次
+     */
+    public void enrichActivities(List<GeneratedPlanResponse.Activity> activities, String city) {
+        if (!enabled || !amapService.isAvailable()) {
+            return;
+        }
+
+        Map<String, List<GeneratedPlanResponse.Activity>> byLocation = new LinkedHashMap<>();
+        for (GeneratedPlanResponse.Activity activity : activities) {
+            if (activity.getCoordinate() == null && activity.getLocation() != null
+                    && !activity.getLocation().isBlank()) {
+                byLocation.computeIfAbsent(activity.getLocation().trim(), k -> new ArrayList<>()).add(activity);
+            }
+        }
+        if (byLocation.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        Map<String, CompletableFuture<GeneratedPlanResponse.LocationCoordinate>> futures = new LinkedHashMap<>();
+        for (String location : byLocation.keySet()) {
+            try {
+                futures.put(location, CompletableFuture
+                        .supplyAsync(() -> amapService.locate(location, city), executor)
+                        .exceptionally(e -> {
+                            log.warn("地点定位失败: {} - {}", location, e.getMessage());
+                            return null;
+                        }));
+            } catch (TaskRejectedException e) {
+                // 线程池已满,剩下的地点交给前端定位
+                break;
+            }
+        }
+
+        try {
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0]))
+                    .get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("行程坐标补全超时,已完成 {}/{}", futures.values().stream().filter(CompletableFuture::isDone).count(),
+                    byLocation.size());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("行程坐标补全失败: {}", e.getMessage());
+        }
+
+        int found = 0;
+        for (Map.Entry<String, List<GeneratedPlanResponse.Activity>> entry : byLocation.entrySet()) {
+            CompletableFuture<GeneratedPlanResponse.LocationCoordinate> future = futures.get(entry.getKey());
+            GeneratedPlanResponse.LocationCoordinate coordinate = future != null ? future.getNow(null) : null;
+            if (coordinate != null) {
+                entry.getValue().forEach(activity -> activity.setCoordinate(coordinate));
+                found++;
+            }
+        }
+        resolved.increment(found);
+        unresolved.increment(byLocation.size() - found);
+        enrichTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,266 @@
+package com.shingeki.travelplannerbackend.service;
+
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 本地规则解析器 - 从用户输入中确定性地提取目的地、天数、预算、人数和偏好
+ * 只有在结果明确(置信度高)时才直接返回,否则交给 AI 解析
+ */
+@Component
+public class LocalInputParser {
+
+    private static final String CN_NUM = "[零一二两三四五六七八九十]+";
+    private static final String NUM = "(\\d+|" + CN_NUM + ")";
+
+    private static final Pattern DURATION = Pattern.compile(NUM + "\\s*(?:个)?(?:天|日)(?!游)|" + NUM + "\\s*日游");
+    private static final Pattern NIGHTS = Pattern.compile(NUM + "\\s*晚");
+    private static final Pattern WEEK = Pattern.compile("(一|1)\\s*(?:周|星期)(?!末)");
+    private static final Pattern WEEKEND = Pattern.compile("周末");
+
+    private static final Pattern BUDGET = Pattern.compile(
+            "预算\\s*(?:是|为|大概|大约|约|在|控制在|不超过)?\\s*(\\d+(?:\\.\\d+)?)\\s*(万|w|W|千|k|K)?\\s*(?:元|块|rmb|RMB)?"
+            + "|(\\d+(?:\\.\\d+)?)\\s*(万|千)?\\s*(?:元|块)");
+
+    private static final Pattern TRAVELERS = Pattern.compile(NUM + "\\s*(?:个|位)?(?:人|大人)");
+    private static final Pattern FAMILY = Pattern.compile("一家" + NUM + "口");
+    private static final Pattern COUPLE = Pattern.compile("情侣|夫妻|两口子|和(?:女朋友|男朋友|老婆|老公|对象)");
+    private static final Pattern SOLO = Pattern.compile("一个人|独自|自己一个");
+
+    private static final Pattern DESTINATION = Pattern.compile(
+            "(?:去|到|前往|飞)\\s*([\\p{IsHan}A-Za-z]{2,10}?)"
+            + "(?=玩|旅游|旅行|游|逛|看看|度假|过|待|呆|\\d|" + CN_NUM + "\\s*(?:天|日)|[,，。、;；!！\\s]|$)");
+    private static final Pattern TOUR_DESTINATION = Pattern.compile(
+            "([\\p{IsHan}]{2,4})\\s*(?:\\d+|" + CN_NUM + ")\\s*日游");
+
+    // 选择多个目的地、人均预算等情况规则无法可靠判断,交给 AI
+    private static final Pattern AMBIGUOUS = Pattern.compile("或者|还是|或|人均|每人|每天|不确定|随便|哪里");
+
+    private static final Pattern FILLER = Pattern.compile(
+            "我们|我|想要|想|要|打算|计划|准备|一起|带着|带|玩|旅游|旅行|游|预算|大概|大约|左右|以内|一共|总共"
+            + "|喜欢|希望|主要|还有|比较|一下|吧|呢|啊|的|和|跟|去|到|前往|元|块|人|个|天|日|晚|出发|行程|安排");
+    private static final Pattern PUNCTUATION = Pattern.compile("[\\s\\p{Punct}，。、！？；：“”‘’（）【】《》~～]+");
+
+    // 残余文本超过该长度说明存在规则无法理解的额外要求
+    private static final int MAX_RESIDUAL_LENGTH = 4;
+
+    private static final Map<String, List<String>> PREFERENCE_KEYWORDS = new LinkedHashMap<>();
+
+    static {
+        PREFERENCE_KEYWORDS.put("美食", List.of("美食", "小吃", "好吃", "吃货", "火锅", "餐厅", "吃"));
+        PREFERENCE_KEYWORDS.put("文化", List.of("文化", "博物馆", "艺术", "展览", "民俗", "人文"));
+        PREFERENCE_KEYWORDS.put("自然", List.of("自然", "风景", "山水", "爬山", "徒步", "海边", "湖", "森林"));
+        PREFERENCE_KEYWORDS.put("购物", List.of("购物", "逛街", "商场", "买买买", "免税"));
+        PREFERENCE_KEYWORDS.put("冒险", List.of("冒险", "刺激", "探险", "极限", "漂流", "蹦极"));
+        PREFERENCE_KEYWORDS.put("放松", List.of("放松", "休闲", "悠闲", "度假", "温泉", "慢节奏"));
+        PREFERENCE_KEYWORDS.put("摄影", List.of("摄影", "拍照", "打卡", "出片"));
+        PREFERENCE_KEYWORDS.put("历史", List.of("历史", "古迹", "古镇", "遗址", "古城"));
+    }
+
+    /**
+     * 解析结果
+     * @param fields 与 AI 解析结果格式相同的字段
+     * @param confident 是否足够明确,可直接返回
+     */
+    public record Result(Map<String, Object> fields, boolean confident) {
+    }
+
+    public Result parse(String userInput) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("destination", "");
+        fields.put("duration", null);
+        fields.put("budget", null);
+        fields.put("travelers", null);
+        fields.put("preferences", new ArrayList<String>());
+        fields.put("additionalRequirements", "");
+
+        if (userInput == null || userInput.isBlank()) {
+            return new Result(fields, false);
+        }
+
+        String text = Normalizer.normalize(userInput, Normalizer.Form.NFKC).trim();
+        StringBuilder residual = new StringBuilder(text);
+
+        String destination = extractDestination(text, residual);
+        Integer duration = extractDuration(text, residual);
+        Double budget = extractBudget(text, residual);
+        Integer travelers = extractTravelers(text, residual);
+        List<String> preferences = extractPreferences(text, destination, residual);
+
+        fields.put("destination", destination != null ? destination : "");
+        fields.put("duration", duration);
+        fields.put("budget", budget);
+        fields.put("travelers", travelers);
+        fields.put("preferences", preferences);
+
+        String rest = PUNCTUATION.matcher(FILLER.matcher(residual.toString()).replaceAll("")).replaceAll("");
+        boolean confident = destination != null
+                && duration != null
+                && !AMBIGUOUS.matcher(text).find()
+                && rest.length() <= MAX_RESIDUAL_LENGTH;
+
+        return new Result(fields, confident);
+    }
+
+    private String extractDestination(String text, StringBuilder residual) {
+        Matcher m = DESTINATION.matcher(text);
+        if (m.find()) {
+            mask(residual, m.start(1), m.end(1));
+            return m.group(1);
+        }
+        // "杭州三日游" 形式,目的地紧邻 "N日游"
+        m = TOUR_DESTINATION.matcher(text);
+        if (m.find()) {
+            String destination = m.group(1).replaceFirst("^.*[我想要玩]", "");
+            if (destination.length() >= 2) {
+                mask(residual, m.end(1) - destination.length(), m.end(1));
+                return destination;
+            }
+        }
+        return null;
+    }
+
+    private Integer extractDuration(String text, StringBuilder residual) {
+        Matcher m = DURATION.matcher(text);
+        if (m.find()) {
+            mask(residual, m.start(), m.end());
+            return toNumber(m.group(1) != null ? m.group(1) : m.group(2));
+        }
+        m = NIGHTS.matcher(text);
+        if (m.find()) {
+            mask(residual, m.start(), m.end());
+            Integer nights = toNumber(m.group(1));
+            return nights != null ? nights + 1 : null;
+        }
+        m = WEEK.matcher(text);
+        if (m.find()) {
+            mask(residual, m.start(), m.end());
+            return 7;
+        }
+        m = WEEKEND.matcher(text);
+        if (m.find()) {
+            mask(residual, m.start(), m.end());
+            return 2;
+        }
+        return null;
+    }
+
+    private Double extractBudget(String text, StringBuilder residual) {
+        Matcher m = BUDGET.matcher(text);
+        if (!m.find()) {
+            return null;
+        }
+        String amount = m.group(1) != null ? m.group(1) : m.group(3);
+        String unit = m.group(1) != null ? m.group(2) : m.group(4);
+        mask(residual, m.start(), m.end());
+
+        double value = Double.parseDouble(amount);
+        if (unit != null) {
+            switch (unit) {
+                case "万", "w", "W" -> value *= 10000;
+                case "千", "k", "K" -> value *= 1000;
+                default -> {
+                }
+            }
+        }
+        return value;
+    }
+
+    private Integer extractTravelers(String text, StringBuilder residual) {
+        Matcher m = FAMILY.matcher(text);
+        if (m.find()) {
+            mask(residual, m.start(), m.end());
+            return toNumber(m.group(1));
+        }
+        m = TRAVELERS.matcher(text);
+        if (m.find()) {
+            mask(residual, m.start(), m.end());
+            return toNumber(m.group(1));
+        }
+        m = COUPLE.matcher(text);
+        if (m.find()) {
+            mask(residual, m.start(), m.end());
+            return 2;
+        }
+        m = SOLO.matcher(text);
+        if (m.find()) {
+            mask(residual, m.start(), m.end());
+            return 1;
+        }
+        return null;
+    }
+
+    private List<String> extractPreferences(String text, String destination, StringBuilder residual) {
+        // 目的地本身不参与偏好匹配,避免 "黄山" 被识别为 "自然"
+        String searchable = destination != null ? text.replace(destination, " ".repeat(destination.length())) : text;
+
+        List<String> preferences = new ArrayList<>();
+        for (Map.Entry<String, List<String>> entry : PREFERENCE_KEYWORDS.entrySet()) {
+            for (String keyword : entry.getValue()) {
+                int index = searchable.indexOf(keyword);
+                if (index >= 0) {
+                    if (!preferences.contains(entry.getKey())) {
+                        preferences.add(entry.getKey());
+                    }
+                    while (index >= 0) {
+                        mask(residual, index, index + keyword.length());
+                        index = searchable.indexOf(keyword, index + keyword.length());
+                    }
+                }
+            }
+        }
+        return preferences;
+    }
+
+    private void mask(StringBuilder residual, int start, int end) {
+        for (int i = start; i < end && i < residual.length(); i++) {
+            residual.setCharAt(i, ' ');
+        }
+    }
+
+    /**
+     * 阿拉伯数字或简单中文数字(一 ~ 九十九)转整数
+     */
+    private Integer toNumber(String text) {
+        if (text == null || text.isEmpty()) {
+            return null;
+        }
+        if (Character.isDigit(text.charAt(0))) {
+            try {
+                return Integer.parseInt(text);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        int tenIndex = text.indexOf('十');
+        if (tenIndex < 0) {
+            return text.length() == 1 ? digit(text.charAt(0)) : null;
+        }
+        int tens = tenIndex == 0 ? 1 : digit(text.charAt(0));
+        int ones = tenIndex == text.length() - 1 ? 0 : digit(text.charAt(tenIndex + 1));
+        return tens * 10 + ones;
+    }
+
+    private int digit(char c) {
+        return switch (c) {
+            case '一' -> 1;
+            case '二', '两' -> 2;
+            case '三' -> 3;
+            case '四' -> 4;
+            case '五' -> 5;
+            case '六' -> 6;
+            case '七' -> 7;
+            case '八' -> 8;
+            case '九' -> 9;
+            default -> 0;
+        };
+    }
+}
@@ -0,0 +1,143 @@
+package com.shingeki.travelplannerbackend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.shingeki.travelplannerbackend.dto.MapBatchRequest;
+import com.shingeki.travelplannerbackend.dto.MapBatchResponse;
+import com.shingeki.travelplannerbackend.support.Json;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * 批量地点搜索 / 地理编码
+ * 相同(规范化后)的查询只调用一次,不同查询在 amapExecutor 上并发执行,受 AmapService 的 Key QPS 预算限制;
+ * 每一项单独返回结果或错误,超过整体超时仍未完成的项返回超时错误
+ */
+@Service
+public class MapBatchService {
+
+    private final AmapService amapService;
+    private final TaskExecutor executor;
+    private final MeterRegistry meterRegistry;
+    private final int maxQueries;
+    private final Duration timeout;
+
+    public MapBatchService(AmapService amapService,
+                           @Qualifier("amapExecutor") TaskExecutor executor,
+                           MeterRegistry meterRegistry,
+                           @Value("${amap.batch.max-queries:50}") int maxQueries,
+                           @Value("${amap.batch.timeout:10s}") Duration timeout) {
+        this.amapService = amapService;
+        this.executor = executor;
+        this.meterRegistry = meterRegistry;
+        this.maxQueries = maxQueries;
+        this.timeout = timeout;
+    }
+
+    public CompletableFuture<MapBatchResponse> search(List<MapBatchRequest.Query> queries) {
+        return execute("search", queries, amapService::searchPlace);
+    }
+
+    public CompletableFuture<MapBatchResponse> geocode(List<MapBatchRequest.Query> queries) {
+        return execute("geocode", queries, amapService::geocode);
+    }
+
+    private CompletableFuture<MapBatchResponse> execute(String api, List<MapBatchRequest.Query> queries,
+                                                        BiFunction<String, String, String> call) {
+        if (queries == null || queries.isEmpty()) {
+            throw new IllegalArgumentException("查询列表不能为空");
+        }
+        if (queries.size() > maxQueries) {
+            throw new IllegalArgumentException("单次最多查询 " + maxQueries + " 个地点");
+        }
+
+        // 整体超时从提交时开始计算
+        long deadline = System.nanoTime() + timeout.toNanos();
+
+        // 按规范化后的查询去重,每个不同的查询一个任务
+        Map<String, CompletableFuture<MapBatchResponse.Result>> distinct = new HashMap<>();
+        List<CompletableFuture<MapBatchResponse.Result>> ordered = new ArrayList<>();
+        for (MapBatchRequest.Query query : queries) {
+            if (query == null || query.getQuery() == null || query.getQuery().isBlank()) {
+                ordered.add(CompletableFuture.completedFuture(error(query, "查询内容不能为空")));
+                continue;
+            }
+            String key = AmapCacheService.keyOf(api, query.getQuery(), query.getCity());
+            ordered.add(distinct.computeIfAbsent(key, k -> submit(query, call, deadline)));
+        }
+        meterRegistry.counter("amap.batch.queries", "api", api, "type", "requested").increment(queries.size());
+        meterRegistry.counter("amap.batch.queries", "api", api, "type", "distinct").increment(distinct.size());
+
+        return CompletableFuture.allOf(ordered.toArray(new CompletableFuture[0]))
+                .thenApply(v -> {
+                    List<MapBatchResponse.Result> results = new ArrayList<>();
+                    for (int i = 0; i < queries.size(); i++) {
+                        // 去重的项共享结果,按各自的请求内容返回
+                        MapBatchResponse.Result shared = ordered.get(i).join();
+                        MapBatchRequest.Query query = queries.get(i);
+                        results.add(new MapBatchResponse.Result(
+                                query != null ? query.getQuery() : null, query != null ? query.getCity() : null,
+                                shared.getStatus(), shared.getData(), shared.getError()));
+                    }
+                    return new MapBatchResponse(results);
+                });
+    }
+
+    private CompletableFuture<MapBatchResponse.Result> submit(MapBatchRequest.Query query,
+                                                              BiFunction<String, String, String> call,
+                                                              long deadline) {
+        CompletableFuture<MapBatchResponse.Result> future;
+        try {
+            future = CompletableFuture.supplyAsync(() -> {
+                // 批量查询已整体超时,排队到现在的项结果不会再被使用,不再占用高德配额
+                if (System.nanoTime() - deadline >= 0) {
+                    return error(query, "查询超时");
+                }
+                return toResult(query, call.apply(query.getQuery(), query.getCity()));
+            }, executor);
+        } catch (TaskRejectedException e) {
+            return CompletableFuture.completedFuture(error(query, "地图服务繁忙,请稍后重试"));
+        }
+        return future
+                .exceptionally(e -> error(query, "查询失败: " + rootMessage(e)))
+                .completeOnTimeout(error(query, "查询超时"), timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 高德 status 不为 1 时作为该项的错误返回,同时附上原始响应
+     */
+    private MapBatchResponse.Result toResult(MapBatchRequest.Query query, String response) {
+        try {
+            JsonNode root = Json.MAPPER.readTree(response);
+            if (!"1".equals(root.path("status").asText())) {
+                return new MapBatchResponse.Result(query.getQuery(), query.getCity(), "error", response,
+                        root.path("info").asText("高德 API 调用失败"));
+            }
+        } catch (Exception e) {
+            return error(query, "高德响应解析失败");
+        }
+        return new MapBatchResponse.Result(query.getQuery(), query.getCity(), "ok", response, null);
+    }
+
+    private MapBatchResponse.Result error(MapBatchRequest.Query query, String message) {
+        return new MapBatchResponse.Result(query != null ? query.getQuery() : null,
+                query != null ? query.getCity() : null, "error", null, message);
+    }
+
+    private String rootMessage(Throwable e) {
+        Throwable cause = e;
+        while (cause.getCause() != null && cause != cause.getCause()) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage();
+    }
+}
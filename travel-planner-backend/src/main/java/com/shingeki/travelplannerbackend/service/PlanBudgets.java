@@ -0,0 +1,50 @@
+package com.shingeki.travelplannerbackend.service;
+
+import com.shingeki.travelplannerbackend.dto.GeneratedPlanResponse;
+
+import java.util.List;
+
+/**
+ * 预算工具 - 根据每日活动的预估花费重新计算预算分配
+ */
+final class PlanBudgets {
+
+    private PlanBudgets() {
+    }
+
+    /**
+     * 按活动类型汇总预估花费
+     */
+    static GeneratedPlanResponse.BudgetBreakdown recompute(List<GeneratedPlanResponse.DayPlan> dailyPlans) {
+        double accommodation = 0, food = 0, transport = 0, attraction = 0, shopping = 0, other = 0;
+
+        if (dailyPlans != null) {
+            for (GeneratedPlanResponse.DayPlan dayPlan : dailyPlans) {
+                if (dayPlan.getActivities() == null) {
+                    continue;
+                }
+                for (GeneratedPlanResponse.Activity activity : dayPlan.getActivities()) {
+                    double cost = activity.getEstimatedCost() != null ? activity.getEstimatedCost() : 0.0;
+                    String type = activity.getType() != null ? activity.getType() : "";
+                    switch (type) {
+                        case "accommodation" -> accommodation += cost;
+                        case "restaurant" -> food += cost;
+                        case "transport" -> transport += cost;
+                        case "attraction" -> attraction += cost;
+                        case "shopping" -> shopping += cost;
+                        default -> other += cost;
+                    }
+                }
+            }
+        }
+
+        GeneratedPlanResponse.BudgetBreakdown budget = new GeneratedPlanResponse.BudgetBreakdown();
+        budget.setAccommodation(accommodation);
+        budget.setFood(food);
+        budget.setTransport(transport);
+        budget.setAttraction(attraction);
+        budget.setShopping(shopping);
+        budget.setOther(other);
+        return budget;
+    }
+}
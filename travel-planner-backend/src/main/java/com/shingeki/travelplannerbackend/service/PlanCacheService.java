@@ -0,0 +1,243 @@
+package com.shingeki.travelplannerbackend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.shingeki.travelplannerbackend.dto.GeneratePlanRequest;
+import com.shingeki.travelplannerbackend.dto.GeneratedPlanResponse;
+import com.shingeki.travelplannerbackend.support.Json;
+import com.shingeki.travelplannerbackend.support.LruTtlCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * AI 旅行计划缓存服务
+ * 以规范化后的生成请求为键缓存 AI 生成结果:
+ * 目的地规范化、预算按比例分桶、偏好排序去重、天数和人数精确匹配;
+ * 用户原始输入(userInput)不参与缓存键
+ *
+ * 内存层为 LRU + TTL,可选磁盘层在重启后仍然有效
+ */
+@Slf4j
+@Service
+public class PlanCacheService {
+
+    private static final Pattern PREFERENCE_SEPARATOR = Pattern.compile("[,，、/;；\\s]+");
+    private static final Pattern NON_WORD = Pattern.compile("[\\s\\p{Punct}，。、！？；：“”‘’（）【】《》]+");
+
+    private final ObjectMapper objectMapper = Json.MAPPER;
+    private final boolean enabled;
+    private final double budgetBucketRatio;
+    private final Duration diskTtl;
+    private final Path diskDir;
+    private final LruTtlCache<String, String> memory;
+
+    private final Counter memoryHits;
+    private final Counter diskHits;
+    private final Counter misses;
+
+    public PlanCacheService(
+            MeterRegistry meterRegistry,
+            @Value("${ai.plan-cache.enabled:true}") boolean enabled,
+            @Value("${ai.plan-cache.max-entries:500}") int maxEntries,
+            @Value("${ai.plan-cache.ttl:6h}") Duration ttl,
+            @Value("${ai.plan-cache.budget-bucket-ratio:0.1}") double budgetBucketRatio,
+            @Value("${ai.plan-cache.disk-dir:}") String diskDir,
+            @Value("${ai.plan-cache.disk-ttl:7d}") Duration diskTtl) {
+        this.enabled = enabled;
+        this.budgetBucketRatio = budgetBucketRatio;
+        this.diskTtl = diskTtl;
+        this.diskDir = diskDir == null || diskDir.isBlank() ? null : Paths.get(diskDir);
+        this.memory = new LruTtlCache<>(maxEntries, ttl);
+
+        this.memoryHits = Counter.builder("ai.plan.cache.requests")
+                .tag("result", "hit").tag("tier", "memory").register(meterRegistry);
+        this.diskHits = Counter.builder("ai.plan.cache.requests")
+                .tag("result", "hit").tag("tier", "disk").register(meterRegistry);
+        this.misses = Counter.builder("ai.plan.cache.requests")
+                .tag("result", "miss").tag("tier", "none").register(meterRegistry);
+        Gauge.builder("ai.plan.cache.size", memory, LruTtlCache::size).register(meterRegistry);
+        FunctionCounter.builder("ai.plan.cache.evictions", memory, LruTtlCache::getEvictions).register(meterRegistry);
+    }
+
+    /**
+     * 查询缓存,命中时返回计划副本
+     */
+    public Optional<GeneratedPlanResponse> get(GeneratePlanRequest request) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        String key = keyOf(request);
+
+        String json = memory.get(key);
+        if (json != null) {
+            memoryHits.increment();
+            return Optional.ofNullable(deserialize(json, request));
+        }
+
+        json = readFromDisk(key);
+        if (json != null) {
+            diskHits.increment();
+            memory.put(key, json);
+            return Optional.ofNullable(deserialize(json, request));
+        }
+
+        misses.increment();
+        return Optional.empty();
+    }
+
+    /**
+     * 写入缓存,降级模板不缓存
+     */
+    public void put(GeneratePlanRequest request, GeneratedPlanResponse response) {
+        if (!enabled || response == null || response.isFallback()) {
+            return;
+        }
+        try {
+            String key = keyOf(request);
+            String json = Json.PLAN_WRITER.writeValueAsString(response);
+            memory.put(key, json);
+            writeToDisk(key, json);
+        } catch (Exception e) {
+            log.warn("写入计划缓存失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 生成规范化缓存键
+     */
+    public String keyOf(GeneratePlanRequest request) {
+        return String.join("|",
+                normalizeDestination(request.getDestination()),
+                String.valueOf(request.getDuration()),
+                String.valueOf(request.getTravelers()),
+                String.valueOf(budgetBucket(request)),
+                normalizePreferences(request.getPreferences()),
+                normalizeText(request.getAdditionalRequirements()));
+    }
+
+    private String normalizeDestination(String destination) {
+        String normalized = normalizeText(destination);
+        // "北京市" 与 "北京" 视为同一目的地
+        if (normalized.length() > 2 && normalized.endsWith("市")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        return normalized;
+    }
+
+    private String normalizePreferences(String preferences) {
+        if (preferences == null || preferences.isBlank()) {
+            return "";
+        }
+        return Arrays.stream(PREFERENCE_SEPARATOR.split(preferences))
+                .map(this::normalizeText)
+                .filter(p -> !p.isEmpty())
+                .collect(Collectors.toCollection(TreeSet::new))
+                .stream()
+                .collect(Collectors.joining(","));
+    }
+
+    private String normalizeText(String text) {
+        if (text == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        return NON_WORD.matcher(normalized).replaceAll("");
+    }
+
+    /**
+     * 预算按对数比例分桶,默认相差约 10% 以内的预算落在同一个桶
+     */
+    private long budgetBucket(GeneratePlanRequest request) {
+        if (request.getBudget() == null || request.getBudget().signum() <= 0) {
+            return 0;
+        }
+        double budget = request.getBudget().doubleValue();
+        return Math.round(Math.log(budget) / Math.log(1 + budgetBucketRatio));
+    }
+
+    private GeneratedPlanResponse deserialize(String json, GeneratePlanRequest request) {
+        try {
+            GeneratedPlanResponse response = Json.PLAN_READER.readValue(json);
+            response.setDestination(request.getDestination());
+            return response;
+        } catch (Exception e) {
+            log.warn("读取计划缓存失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private String readFromDisk(String key) {
+        if (diskDir == null) {
+            return null;
+        }
+        Path file = diskDir.resolve(fileName(key));
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            JsonNode root = objectMapper.readTree(file.toFile());
+            long createdAt = root.path("createdAt").asLong();
+            if (!key.equals(root.path("key").asText())
+                    || createdAt + diskTtl.toMillis() < System.currentTimeMillis()) {
+                Files.deleteIfExists(file);
+                return null;
+            }
+            return objectMapper.writeValueAsString(root.path("plan"));
+        } catch (Exception e) {
+            log.warn("读取磁盘计划缓存失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, String json) {
+        if (diskDir == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(diskDir);
+            ObjectNode root = objectMapper.createObjectNode();
+            root.put("key", key);
+            root.put("createdAt", System.currentTimeMillis());
+            root.set("plan", objectMapper.readTree(json));
+
+            // 先写临时文件再原子替换,避免并发读到半个文件
+            Path target = diskDir.resolve(fileName(key));
+            Path temp = Files.createTempFile(diskDir, "plan-", ".tmp");
+            objectMapper.writeValue(temp.toFile(), root);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            log.warn("写入磁盘计划缓存失败: {}", e.getMessage());
+        }
+    }
+
+    private String fileName(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(key.getBytes(StandardCharsets.UTF_8))) + ".json";
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
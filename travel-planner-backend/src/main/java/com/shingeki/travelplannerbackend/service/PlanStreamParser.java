@@ -0,0 +1,271 @@
+package com.shingeki.travelplannerbackend.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.shingeki.travelplannerbackend.dto.GeneratedPlanResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * 增量计划解析器 - 基于 Jackson 非阻塞解析器逐块解析 AI 输出
+ * 每个 Activity / DayPlan 在语法上完整时立即回调;输出被截断或夹杂说明文字时,保留截断点之前的有效内容
+ * 支持完整格式和紧凑格式(见 {@link CompactPlanCodec})
+ */
+@Slf4j
+class PlanStreamParser {
+
+    private static final String DAILY_PLANS_KEY = "dailyPlans";
+    private static final String ACTIVITIES_KEY = "activities";
+
+    private enum Role {
+        ROOT, DAILY_PLANS, DAY, ACTIVITIES, ACTIVITY, OTHER
+    }
+
+    private record Frame(JsonNode node, Role role) {
+    }
+
+    // 模型偶尔输出额外字段,忽略即可,不应丢掉整天
+    private final ObjectReader planReader;
+    private final ObjectReader dayReader;
+    private final ObjectReader activityReader;
+    private final Consumer<GeneratedPlanResponse.DayPlan> onDay;
+    private final BiConsumer<Integer, GeneratedPlanResponse.Activity> onActivity;
+    private final boolean compact;
+
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+    private final JsonNodeFactory nodes = JsonNodeFactory.instance;
+
+    private final Deque<Frame> stack = new ArrayDeque<>();
+    private final List<GeneratedPlanResponse.DayPlan> days = new ArrayList<>();
+    private ObjectNode root;
+    private String fieldName;
+
+    private boolean started;
+    private boolean complete;
+    private boolean failed;
+
+    PlanStreamParser(ObjectMapper objectMapper, Consumer<GeneratedPlanResponse.DayPlan> onDay,
+                     BiConsumer<Integer, GeneratedPlanResponse.Activity> onActivity) {
+        this(objectMapper, onDay, onActivity, false);
+    }
+
+    PlanStreamParser(ObjectMapper objectMapper, Consumer<GeneratedPlanResponse.DayPlan> onDay) {
+        this(objectMapper, onDay, (day, activity) -> {
+        });
+    }
+
+    PlanStreamParser(ObjectMapper objectMapper, Consumer<GeneratedPlanResponse.DayPlan> onDay,
+                     BiConsumer<Integer, GeneratedPlanResponse.Activity> onActivity, boolean compact) {
+        this.compact = compact;
+        this.planReader = objectMapper.readerFor(GeneratedPlanResponse.class)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.dayReader = planReader.forType(GeneratedPlanResponse.DayPlan.class);
+        this.activityReader = planReader.forType(GeneratedPlanResponse.Activity.class);
+        this.onDay = onDay;
+        this.onActivity = onActivity;
+        try {
+            this.parser = new JsonFactory().createNonBlockingByteArrayParser();
+        } catch (Exception e) {
+            throw new IllegalStateException("创建 JSON 解析器失败", e);
+        }
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    /**
+     * 输入一段 AI 输出文本
+     */
+    void feed(String chunk) {
+        if (complete || failed || chunk.isEmpty()) {
+            return;
+        }
+
+        // 跳过 JSON 之前的 markdown 标记或说明文字
+        if (!started) {
+            int start = chunk.indexOf('{');
+            if (start < 0) {
+                return;
+            }
+            started = true;
+            chunk = chunk.substring(start);
+        }
+
+        byte[] bytes = chunk.getBytes(StandardCharsets.UTF_8);
+        try {
+            feeder.feedInput(bytes, 0, bytes.length);
+            JsonToken token;
+            while (!complete && (token = parser.nextToken()) != JsonToken.NOT_AVAILABLE && token != null) {
+                handle(token);
+            }
+        } catch (IOException e) {
+            // 语法错误(如 JSON 中夹杂文字)之后的内容全部忽略,保留之前已完整的部分
+            log.warn("增量解析 AI 输出中断: {}", e.getMessage());
+            failed = true;
+        }
+    }
+
+    /**
+     * 已完整解析的天
+     */
+    List<GeneratedPlanResponse.DayPlan> getDays() {
+        return days;
+    }
+
+    /**
+     * 根对象是否完整结束
+     */
+    boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * 用已解析的内容组装计划(不完整时只包含截断点之前已完整的字段和天);未找到 JSON 时返回 null
+     */
+    GeneratedPlanResponse finish() {
+        if (root == null) {
+            return null;
+        }
+        GeneratedPlanResponse response;
+        try {
+            response = compact ? CompactPlanCodec.expandSkeleton(root) : planReader.readValue(root);
+        } catch (Exception e) {
+            log.warn("解析计划骨架失败: {}", e.getMessage());
+            response = new GeneratedPlanResponse();
+        }
+        response.setDailyPlans(new ArrayList<>(days));
+        return response;
+    }
+
+    private void handle(JsonToken token) throws IOException {
+        switch (token) {
+            case FIELD_NAME -> fieldName = parser.currentName();
+            case START_OBJECT -> push(nodes.objectNode());
+            case START_ARRAY -> push(nodes.arrayNode());
+            case END_OBJECT, END_ARRAY -> pop();
+            case VALUE_STRING -> attach(nodes.textNode(parser.getText()));
+            case VALUE_NUMBER_INT -> attach(parser.getNumberType() == JsonParser.NumberType.BIG_INTEGER
+                    ? nodes.numberNode(parser.getBigIntegerValue())
+                    : nodes.numberNode(parser.getLongValue()));
+            case VALUE_NUMBER_FLOAT -> attach(nodes.numberNode(parser.getDoubleValue()));
+            case VALUE_TRUE -> attach(nodes.booleanNode(true));
+            case VALUE_FALSE -> attach(nodes.booleanNode(false));
+            case VALUE_NULL -> attach(nodes.nullNode());
+            default -> {
+            }
+        }
+    }
+
+    private void push(JsonNode node) {
+        Role role = roleOf(node);
+        // 单日计划独立解析,不挂到骨架上,避免重复保存
+        if (role != Role.DAY) {
+            attach(node);
+        } else {
+            fieldName = null;
+        }
+        if (role == Role.ROOT) {
+            root = (ObjectNode) node;
+        }
+        stack.push(new Frame(node, role));
+    }
+
+    private void pop() {
+        Frame frame = stack.pop();
+        switch (frame.role()) {
+            case ROOT -> complete = true;
+            case DAY -> emitDay(frame.node());
+            case ACTIVITY -> emitActivity(frame.node());
+            default -> {
+            }
+        }
+    }
+
+    private Role roleOf(JsonNode node) {
+        if (stack.isEmpty()) {
+            return Role.ROOT;
+        }
+        Role parent = stack.peek().role();
+        String dailyPlansKey = compact ? CompactPlanCodec.DAILY_PLANS_KEY : DAILY_PLANS_KEY;
+        // 紧凑格式中天和活动都是数组,活动列表是天数组中的第二个元素
+        boolean entryNode = compact ? node.isArray() : node.isObject();
+        if (parent == Role.ROOT && node.isArray() && dailyPlansKey.equals(fieldName)) {
+            return Role.DAILY_PLANS;
+        }
+        if (parent == Role.DAILY_PLANS && entryNode) {
+            return Role.DAY;
+        }
+        if (parent == Role.DAY && node.isArray() && (compact || ACTIVITIES_KEY.equals(fieldName))) {
+            return Role.ACTIVITIES;
+        }
+        if (parent == Role.ACTIVITIES && entryNode) {
+            return Role.ACTIVITY;
+        }
+        return Role.OTHER;
+    }
+
+    private void attach(JsonNode value) {
+        if (stack.isEmpty()) {
+            return;
+        }
+        JsonNode parent = stack.peek().node();
+        if (parent instanceof ObjectNode object) {
+            object.set(fieldName, value);
+            fieldName = null;
+        } else if (parent instanceof ArrayNode array) {
+            array.add(value);
+        }
+    }
+
+    private void emitActivity(JsonNode node) {
+        GeneratedPlanResponse.Activity activity;
+        try {
+            activity = compact ? CompactPlanCodec.expandActivity(node) : activityReader.readValue(node);
+        } catch (Exception e) {
+            log.warn("解析活动失败: {}", e.getMessage());
+            return;
+        }
+        onActivity.accept(currentDayNumber(), activity);
+    }
+
+    private void emitDay(JsonNode node) {
+        GeneratedPlanResponse.DayPlan dayPlan;
+        try {
+            dayPlan = compact ? CompactPlanCodec.expandDay(node) : dayReader.readValue(node);
+        } catch (Exception e) {
+            log.warn("解析单日计划失败: {}", e.getMessage());
+            return;
+        }
+        days.add(dayPlan);
+        onDay.accept(dayPlan);
+    }
+
+    /**
+     * 正在解析的天的天数;模型尚未输出 day 字段时按顺序推算
+     */
+    private int currentDayNumber() {
+        for (Frame frame : stack) {
+            if (frame.role() == Role.DAY) {
+                JsonNode day = compact ? frame.node().get(0) : frame.node().get("day");
+                return day != null && day.canConvertToInt() ? day.asInt() : days.size() + 1;
+            }
+        }
+        return days.size() + 1;
+    }
+}
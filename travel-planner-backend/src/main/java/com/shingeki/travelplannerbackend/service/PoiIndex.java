@@ -0,0 +1,451 @@
+package com.shingeki.travelplannerbackend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.shingeki.travelplannerbackend.dto.PoiDTO;
+import com.shingeki.travelplannerbackend.support.Json;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * 本地 POI 索引
+ * 收录经高德解析过的地点(以及可选的主要城市地标种子数据),不调用高德即可回答:
+ * - 地点搜索 / 地理编码:先按查询键(与 AmapCacheService 相同的规范化)找之前的结果,再按地点名称 + 城市精确匹配
+ * - 附近地点:经纬度按 0.01° 划分网格,只计算覆盖半径的网格内的地点
+ * - 名称联想:规范化名称的有序索引上做前缀查询
+ *
+ * 全部在内存中,达到 max-entries 后不再收录新地点;重启后由种子数据和之后的查询重新填充
+ */
+@Slf4j
+@Service
+public class PoiIndex {
+
+    private static final double CELL_DEGREES = 0.01; // 约 1.1 公里
+    private static final double EARTH_RADIUS_METERS = 6_371_000;
+    private static final int MAX_LIMIT = 100;
+    private static final int AUTOCOMPLETE_SCAN_LIMIT = 2000;
+
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int maxEntries;
+    private final int maxRadius;
+
+    private final Map<String, Entry> byId = new ConcurrentHashMap<>();
+    // 查询键 -> 该查询在高德的第一条结果
+    private final Map<String, Entry> aliases = new ConcurrentHashMap<>();
+    // 规范化名称 -> 地点 id
+    private final ConcurrentSkipListMap<String, Set<String>> names = new ConcurrentSkipListMap<>();
+    // 网格 -> 地点 id
+    private final Map<Long, Set<String>> grid = new ConcurrentHashMap<>();
+
+    private record Entry(PoiDTO poi, String cityKey) {
+    }
+
+    public PoiIndex(MeterRegistry meterRegistry,
+                    @Value("${amap.poi-index.enabled:true}") boolean enabled,
+                    @Value("${amap.poi-index.max-entries:200000}") int maxEntries,
+                    @Value("${amap.poi-index.max-radius:5000}") int maxRadius,
+                    @Value("${amap.poi-index.seed:}") String seed) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.maxRadius = maxRadius;
+
+        Gauge.builder("amap.poi_index.size", byId, Map::size).register(meterRegistry);
+        Gauge.builder("amap.poi_index.aliases", aliases, Map::size).register(meterRegistry);
+
+        if (enabled && seed != null && !seed.isBlank()) {
+            loadSeed(seed);
+        }
+    }
+
+    /**
+     * 地点搜索:命中时返回与高德格式一致的响应(一条结果),未命中返回 null
+     */
+    public String searchResponse(String keywords, String city) {
+        if (!enabled) {
+            return null;
+        }
+        Entry entry = aliases.get(AmapCacheService.keyOf("search", keywords, city));
+        if (entry == null) {
+            entry = byName(keywords, city);
+        }
+        countLookup("search", entry != null);
+        return entry != null ? toSearchResponse(entry.poi()) : null;
+    }
+
+    /**
+     * 地理编码:命中时返回与高德格式一致的响应,未命中返回 null
+     */
+    public String geocodeResponse(String address, String city) {
+        if (!enabled) {
+            return null;
+        }
+        Entry entry = aliases.get(AmapCacheService.keyOf("geocode", address, city));
+        if (entry == null) {
+            entry = byName(address, city);
+        }
+        countLookup("geocode", entry != null);
+        return entry != null ? toGeocodeResponse(entry.poi()) : null;
+    }
+
+    /**
+     * 收录高德地点搜索的结果
+     */
+    public void addSearchResult(String keywords, String city, String response) {
+        JsonNode root = okResponse(response);
+        if (root == null) {
+            return;
+        }
+        Entry first = null;
+        for (JsonNode node : root.path("pois")) {
+            PoiDTO poi = fromAmapPoi(node, "amap");
+            Entry entry = poi != null ? add(poi) : null;
+            if (first == null) {
+                first = entry;
+            }
+        }
+        if (first != null) {
+            alias(AmapCacheService.keyOf("search", keywords, city), first);
+        }
+    }
+
+    /**
+     * 收录高德地理编码的结果
+     * 地理编码的结果是地址而不是地点,只记住查询,不进入名称和网格索引
+     */
+    public void addGeocodeResult(String address, String city, String response) {
+        JsonNode root = okResponse(response);
+        if (root == null) {
+            return;
+        }
+        JsonNode node = root.path("geocodes").path(0);
+        double[] location = parseLocation(text(node, "location"));
+        if (location == null) {
+            return;
+        }
+        PoiDTO poi = new PoiDTO();
+        poi.setId("geocode:" + text(node, "location"));
+        poi.setName(text(node, "formatted_address"));
+        poi.setAddress(text(node, "formatted_address"));
+        poi.setType(text(node, "level"));
+        poi.setProvince(text(node, "province"));
+        poi.setCity(text(node, "city"));
+        poi.setDistrict(text(node, "district"));
+        poi.setLongitude(location[0]);
+        poi.setLatitude(location[1]);
+        poi.setSource("amap");
+        alias(AmapCacheService.keyOf("geocode", address, city),
+                new Entry(poi, AmapCacheService.normalizeCity(poi.getCity())));
+    }
+
+    /**
+     * 附近地点,按距离由近到远
+     * @param radius 半径(米),不超过 max-radius
+     * @param type 类型关键词(可选),匹配高德 POI 类型中的任一部分,如"风景名胜"、"餐饮服务"
+     */
+    public List<PoiDTO> nearby(double latitude, double longitude, int radius, String type, int limit) {
+        if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+            throw new IllegalArgumentException("坐标超出范围");
+        }
+        if (radius <= 0 || radius > maxRadius) {
+            throw new IllegalArgumentException("搜索半径需在 1 到 " + maxRadius + " 米之间");
+        }
+
+        double latSpan = Math.toDegrees(radius / EARTH_RADIUS_METERS);
+        double lngSpan = latSpan / Math.max(Math.cos(Math.toRadians(latitude)), 0.01);
+        long minLat = cell(latitude - latSpan);
+        long maxLat = cell(latitude + latSpan);
+        long minLng = cell(longitude - lngSpan);
+        long maxLng = cell(longitude + lngSpan);
+        int max = clampLimit(limit);
+
+        List<PoiDTO> found = new ArrayList<>();
+        for (long i = minLat; i <= maxLat; i++) {
+            for (long j = minLng; j <= maxLng; j++) {
+                Set<String> ids = grid.get(cellKey(i, j));
+                if (ids == null) {
+                    continue;
+                }
+                for (String id : ids) {
+                    Entry entry = byId.get(id);
+                    if (entry == null || !matchesType(entry.poi(), type)) {
+                        continue;
+                    }
+                    double distance = distance(latitude, longitude, entry.poi().getLatitude(), entry.poi().getLongitude());
+                    if (distance <= radius) {
+                        found.add(entry.poi().withDistance(Math.round(distance)));
+                    }
+                }
+            }
+        }
+        found.sort(Comparator.comparingDouble(PoiDTO::getDistance));
+        countLookup("nearby", !found.isEmpty());
+        return found.size() > max ? new ArrayList<>(found.subList(0, max)) : found;
+    }
+
+    /**
+     * 名称联想:名称以 prefix 开头的地点,city 为空时不限定城市
+     * 返回索引中的对象,调用方不要修改
+     */
+    public List<PoiDTO> autocomplete(String prefix, String city, int limit) {
+        String normalizedPrefix = AmapCacheService.normalize(prefix);
+        if (normalizedPrefix.isEmpty()) {
+            throw new IllegalArgumentException("关键词不能为空");
+        }
+        String cityKey = AmapCacheService.normalizeCity(city);
+        int max = clampLimit(limit);
+
+        List<PoiDTO> found = new ArrayList<>();
+        int scanned = 0;
+        for (Set<String> ids : names.subMap(normalizedPrefix, true, normalizedPrefix + Character.MAX_VALUE, false).values()) {
+            for (String id : ids) {
+                Entry entry = byId.get(id);
+                if (entry != null && (cityKey.isEmpty() || cityKey.equals(entry.cityKey()))) {
+                    found.add(entry.poi());
+                    if (found.size() >= max) {
+                        countLookup("autocomplete", true);
+                        return found;
+                    }
+                }
+            }
+            if (++scanned >= AUTOCOMPLETE_SCAN_LIMIT) {
+                break;
+            }
+        }
+        countLookup("autocomplete", !found.isEmpty());
+        return found;
+    }
+
+    int size() {
+        return byId.size();
+    }
+
+    private Entry add(PoiDTO poi) {
+        Entry existing = byId.get(poi.getId());
+        if (existing != null) {
+            return existing;
+        }
+        if (byId.size() >= maxEntries) {
+            meterRegistry.counter("amap.poi_index.rejected").increment();
+            return null;
+        }
+        Entry entry = new Entry(poi, AmapCacheService.normalizeCity(poi.getCity()));
+        existing = byId.putIfAbsent(poi.getId(), entry);
+        if (existing != null) {
+            return existing;
+        }
+        names.computeIfAbsent(AmapCacheService.normalize(poi.getName()), k -> ConcurrentHashMap.newKeySet())
+                .add(poi.getId());
+        grid.computeIfAbsent(cellKey(cell(poi.getLatitude()), cell(poi.getLongitude())),
+                k -> ConcurrentHashMap.newKeySet()).add(poi.getId());
+        return entry;
+    }
+
+    private void alias(String key, Entry entry) {
+        if (aliases.size() >= maxEntries && !aliases.containsKey(key)) {
+            return;
+        }
+        aliases.put(key, entry);
+    }
+
+    /**
+     * 名称精确匹配;没有城市时只有名称唯一才算命中
+     */
+    private Entry byName(String name, String city) {
+        Set<String> ids = names.get(AmapCacheService.normalize(name));
+        if (ids == null || ids.isEmpty()) {
+            return null;
+        }
+        String cityKey = AmapCacheService.normalizeCity(city);
+        if (cityKey.isEmpty()) {
+            return ids.size() == 1 ? byId.get(ids.iterator().next()) : null;
+        }
+        for (String id : ids) {
+            Entry entry = byId.get(id);
+            if (entry != null && cityKey.equals(entry.cityKey())) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private void countLookup(String op, boolean hit) {
+        meterRegistry.counter("amap.poi_index.lookups", "op", op, "result", hit ? "hit" : "miss").increment();
+    }
+
+    /**
+     * 种子数据为高德 POI 格式的数组(name、type、address、location、pname、cityname、adname)
+     */
+    private void loadSeed(String location) {
+        Resource resource = new DefaultResourceLoader().getResource(location);
+        if (!resource.exists()) {
+            log.warn("POI 种子数据不存在: {}", location);
+            return;
+        }
+        int loaded = 0;
+        try (InputStream in = resource.getInputStream()) {
+            for (JsonNode node : Json.MAPPER.readTree(in)) {
+                PoiDTO poi = fromAmapPoi(node, "seed");
+                if (poi != null && add(poi) != null) {
+                    loaded++;
+                }
+            }
+        } catch (Exception e) {
+            log.warn("读取 POI 种子数据失败: {}", e.getMessage());
+        }
+        log.info("POI 索引载入种子数据 {} 条", loaded);
+    }
+
+    private static PoiDTO fromAmapPoi(JsonNode node, String source) {
+        String name = text(node, "name");
+        double[] location = parseLocation(text(node, "location"));
+        if (name == null || location == null) {
+            return null;
+        }
+        PoiDTO poi = new PoiDTO();
+        String id = text(node, "id");
+        poi.setId(id != null ? id : source + ":" + text(node, "cityname") + ":" + name);
+        poi.setName(name);
+        poi.setType(text(node, "type"));
+        poi.setAddress(text(node, "address"));
+        poi.setProvince(text(node, "pname"));
+        poi.setCity(text(node, "cityname"));
+        poi.setDistrict(text(node, "adname"));
+        poi.setLongitude(location[0]);
+        poi.setLatitude(location[1]);
+        poi.setSource(source);
+        return poi;
+    }
+
+    private static String toSearchResponse(PoiDTO poi) {
+        ObjectNode item = Json.MAPPER.createObjectNode();
+        item.put("id", poi.getId());
+        item.put("name", poi.getName());
+        item.put("type", poi.getType());
+        item.put("address", poi.getAddress());
+        item.put("location", location(poi));
+        item.put("pname", poi.getProvince());
+        item.put("cityname", poi.getCity());
+        item.put("adname", poi.getDistrict());
+        ObjectNode root = okRoot();
+        root.putArray("pois").add(item);
+        return root.toString();
+    }
+
+    private static String toGeocodeResponse(PoiDTO poi) {
+        ObjectNode item = Json.MAPPER.createObjectNode();
+        String formatted = poi.getAddress();
+        if (!poi.getId().startsWith("geocode:")) {
+            // 地点按高德地理编码的格式拼出完整地址,直辖市的省和市相同只写一次
+            StringBuilder sb = new StringBuilder();
+            append(sb, poi.getProvince());
+            if (poi.getCity() != null && !poi.getCity().equals(poi.getProvince())) {
+                append(sb, poi.getCity());
+            }
+            append(sb, poi.getDistrict());
+            append(sb, poi.getName());
+            formatted = sb.toString();
+        }
+        item.put("formatted_address", formatted);
+        item.put("province", poi.getProvince());
+        item.put("city", poi.getCity());
+        item.put("district", poi.getDistrict());
+        item.put("location", location(poi));
+        item.put("level", poi.getId().startsWith("geocode:") ? poi.getType() : "兴趣点");
+        ObjectNode root = okRoot();
+        ArrayNode geocodes = root.putArray("geocodes");
+        geocodes.add(item);
+        return root.toString();
+    }
+
+    private static ObjectNode okRoot() {
+        ObjectNode root = Json.MAPPER.createObjectNode();
+        root.put("status", "1");
+        root.put("count", "1");
+        root.put("info", "OK");
+        root.put("infocode", "10000");
+        return root;
+    }
+
+    private static void append(StringBuilder sb, String part) {
+        if (part != null) {
+            sb.append(part);
+        }
+    }
+
+    private static String location(PoiDTO poi) {
+        return poi.getLongitude() + "," + poi.getLatitude();
+    }
+
+    private static JsonNode okResponse(String response) {
+        if (response == null) {
+            return null;
+        }
+        try {
+            JsonNode root = Json.MAPPER.readTree(response);
+            return root != null && "1".equals(root.path("status").asText()) ? root : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * 高德字段为空时返回空数组而不是字符串
+     */
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.path(field);
+        return value.isTextual() && !value.asText().isEmpty() ? value.asText() : null;
+    }
+
+    private static double[] parseLocation(String location) {
+        if (location == null) {
+            return null;
+        }
+        int comma = location.indexOf(',');
+        if (comma <= 0) {
+            return null;
+        }
+        try {
+            return new double[]{Double.parseDouble(location.substring(0, comma)),
+                    Double.parseDouble(location.substring(comma + 1))};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean matchesType(PoiDTO poi, String type) {
+        return type == null || type.isBlank() || (poi.getType() != null && poi.getType().contains(type));
+    }
+
+    private static int clampLimit(int limit) {
+        return Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+
+    private static long cell(double degrees) {
+        return (long) Math.floor(degrees / CELL_DEGREES);
+    }
+
+    private static long cellKey(long latCell, long lngCell) {
+        return (latCell << 32) | (lngCell & 0xffffffffL);
+    }
+
+    private static double distance(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.sqrt(a));
+    }
+}
@@ -0,0 +1,202 @@
+package com.shingeki.travelplannerbackend.service;
+
+import com.shingeki.travelplannerbackend.dto.GeneratePlanRequest;
+import com.shingeki.travelplannerbackend.support.TokenBucket;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 预测性生成 - 解析出完整需求后在后台提前生成计划
+ * 用户确认表单期间计划已经在生成;随后的生成请求与预测一致时,通过计划缓存/请求合并直接复用结果,
+ * 不一致时取消预测。每个用户只保留最近一次预测,并限制同时进行的数量和每分钟启动次数
+ */
+@Slf4j
+@Service
+public class SpeculativePlanService {
+
+    private final AIService aiService;
+    private final PlanCacheService planCacheService;
+    private final AsyncTaskExecutor speculationExecutor;
+    private final MeterRegistry meterRegistry;
+    private final TokenBucket startBudget;
+
+    private final Map<UUID, Speculation> speculations = new ConcurrentHashMap<>();
+
+    @Value("${ai.speculation.enabled:false}")
+    private boolean enabled;
+
+    // 预测结果等待用户确认的最长时间
+    @Value("${ai.speculation.ttl:2m}")
+    private Duration ttl;
+
+    // started 由开始执行和取消中先到的一方置为 true,另一方随之放弃
+    private record Speculation(String key, Future<?> future, AtomicBoolean started, long expiresAt) {
+    }
+
+    public SpeculativePlanService(AIService aiService, PlanCacheService planCacheService,
+                                  @Qualifier("aiSpeculationExecutor") AsyncTaskExecutor speculationExecutor,
+                                  @Value("${ai.speculation.max-per-minute:10}") int maxPerMinute,
+                                  MeterRegistry meterRegistry) {
+        this.aiService = aiService;
+        this.planCacheService = planCacheService;
+        this.speculationExecutor = speculationExecutor;
+        this.meterRegistry = meterRegistry;
+        this.startBudget = new TokenBucket(maxPerMinute, maxPerMinute, Duration.ofMinutes(1));
+        Gauge.builder("ai.speculation.active", speculations, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * 解析结果包含目的地、天数和预算时,在后台开始生成
+     */
+    public void speculate(UUID userId, String userInput, Map<String, Object> parsed) {
+        if (!enabled) {
+            return;
+        }
+        GeneratePlanRequest request = toRequest(userInput, parsed);
+        if (request == null) {
+            return;
+        }
+
+        String key = planCacheService.keyOf(request);
+        Speculation previous = speculations.get(userId);
+        if (previous != null && previous.key().equals(key) && !isExpired(previous)) {
+            return;
+        }
+        cancel(userId, previous, "replaced");
+
+        if (planCacheService.get(request).isPresent()) {
+            return;
+        }
+        if (!startBudget.tryAcquire()) {
+            count("skipped");
+            return;
+        }
+
+        AtomicBoolean started = new AtomicBoolean();
+        try {
+            Future<?> future = speculationExecutor.submit(() -> {
+                if (!started.compareAndSet(false, true)) {
+                    return;
+                }
+                try {
+                    aiService.generateTravelPlan(request);
+                } catch (Exception e) {
+                    log.warn("预测生成计划失败: {}", e.getMessage());
+                }
+            });
+            speculations.put(userId, new Speculation(key, future, started, System.currentTimeMillis() + ttl.toMillis()));
+            count("started");
+        } catch (TaskRejectedException e) {
+            // 同时进行的预测生成已达上限
+            count("skipped");
+        }
+    }
+
+    /**
+     * 正式生成请求到达时调用
+     * 与预测一致时返回预测任务(生成结果通过计划缓存和请求合并复用);不一致时取消预测并返回 null
+     */
+    public Future<?> claim(UUID userId, GeneratePlanRequest request) {
+        if (!enabled) {
+            return null;
+        }
+        Speculation speculation = speculations.remove(userId);
+        if (speculation == null) {
+            return null;
+        }
+        if (isExpired(speculation)) {
+            count("expired");
+            return null;
+        }
+        if (!speculation.key().equals(planCacheService.keyOf(request))) {
+            cancel(userId, speculation, "miss");
+            return null;
+        }
+        count("hit");
+        return speculation.future();
+    }
+
+    /**
+     * 清理过期的预测
+     */
+    @Scheduled(fixedDelayString = "${ai.speculation.cleanup-interval:30s}")
+    public void evictExpired() {
+        speculations.forEach((userId, speculation) -> {
+            if (isExpired(speculation) && speculations.remove(userId, speculation)) {
+                count("expired");
+            }
+        });
+    }
+
+    /**
+     * 取消预测:只取消尚未开始执行的任务;已经开始的生成不中断,结果写入计划缓存。
+     * 计划缓存键与用户无关,执行中的线程可能是其他用户相同请求正在等待的合并调用,中断会让它们一起失败
+     */
+    private void cancel(UUID userId, Speculation speculation, String reason) {
+        if (speculation == null) {
+            return;
+        }
+        speculations.remove(userId, speculation);
+        if (speculation.started().compareAndSet(false, true)) {
+            speculation.future().cancel(false);
+            count("cancelled");
+        }
+        if ("miss".equals(reason)) {
+            count("miss");
+        }
+    }
+
+    private boolean isExpired(Speculation speculation) {
+        return System.currentTimeMillis() > speculation.expiresAt();
+    }
+
+    private void count(String result) {
+        meterRegistry.counter("ai.speculation", "result", result).increment();
+    }
+
+    /**
+     * 按前端填充表单的方式把解析结果转换为生成请求;缺少目的地、天数或预算时返回 null
+     */
+    private GeneratePlanRequest toRequest(String userInput, Map<String, Object> parsed) {
+        Object destination = parsed.get("destination");
+        Object duration = parsed.get("duration");
+        Object budget = parsed.get("budget");
+        if (!(destination instanceof String d) || d.isBlank()
+                || !(duration instanceof Number) || !(budget instanceof Number)) {
+            return null;
+        }
+
+        GeneratePlanRequest request = new GeneratePlanRequest();
+        request.setUserInput(userInput);
+        request.setDestination(d);
+        request.setDuration(((Number) duration).intValue());
+        request.setBudget(BigDecimal.valueOf(((Number) budget).doubleValue()));
+        request.setTravelers(parsed.get("travelers") instanceof Number travelers ? travelers.intValue() : 1);
+        if (parsed.get("preferences") instanceof List<?> preferences) {
+            request.setPreferences(String.join(",", preferences.stream().map(String::valueOf).toList()));
+        }
+        if (parsed.get("additionalRequirements") instanceof String requirements) {
+            request.setAdditionalRequirements(requirements);
+        }
+        if (request.getDuration() < 1 || request.getTravelers() < 1) {
+            return null;
+        }
+        return request;
+    }
+}
@@ -1,43 +1,97 @@
 package com.shingeki.travelplannerbackend.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.shingeki.travelplannerbackend.dto.CreateTravelPlanRequest;
+import com.shingeki.travelplannerbackend.dto.GeneratePlanRequest;
+import com.shingeki.travelplannerbackend.dto.GeneratedPlanResponse;
+import com.shingeki.travelplannerbackend.dto.RegeneratedDayResponse;
 import com.shingeki.travelplannerbackend.dto.TravelPlanDTO;
 import com.shingeki.travelplannerbackend.dto.TravelPlanDetailDTO;
+import com.shingeki.travelplannerbackend.dto.TravelPlanPageDTO;
 import com.shingeki.travelplannerbackend.entity.TravelPlan;
 import com.shingeki.travelplannerbackend.repository.TravelPlanRepository;
+import com.shingeki.travelplannerbackend.repository.TravelPlanSummary;
+import com.shingeki.travelplannerbackend.support.Json;
+import com.shingeki.travelplannerbackend.support.PlanConflictException;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
 /**
  * 旅行计划服务类
  */
+@Slf4j
 @Service
 public class TravelPlanService {
 
     @Autowired
     private TravelPlanRepository travelPlanRepository;
 
+    @Autowired
+    private AIService aiService;
+
+    private final ObjectMapper objectMapper = Json.MAPPER;
+
+    private static final Set<String> STATUSES = Set.of("planning", "ongoing", "completed");
+    private static final int MAX_PAGE_SIZE = 100;
+
     /**
      * 获取用户的所有旅行计划
      */
     public List<TravelPlanDTO> getUserTravelPlans(UUID userId) {
-        List<TravelPlan> plans = travelPlanRepository.findByUserIdOrderByCreatedAtDesc(userId);
-        
         // 自动更新状态
-        plans.forEach(this::updatePlanStatus);
-        
-        return plans.stream()
+        travelPlanRepository.refreshStatuses(userId, LocalDate.now());
+
+        return travelPlanRepository.findSummariesByUserIdAndStatus(userId, null, Pageable.unpaged()).stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * 分页获取用户的旅行计划(按创建时间倒序)
+     * cursor 为上一页返回的 nextCursor,为空时取第一页;status 为空时不按状态过滤
+     */
+    public TravelPlanPageDTO getUserTravelPlanPage(UUID userId, String status, String cursor, int size) {
+        if (status != null && !status.isBlank() && !STATUSES.contains(status)) {
+            throw new RuntimeException("不支持的计划状态: " + status);
+        }
+        String statusFilter = status == null || status.isBlank() ? null : status;
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        // 多取一条判断是否还有下一页
+        Pageable limit = PageRequest.of(0, pageSize + 1);
+
+        List<TravelPlanSummary> summaries;
+        if (cursor == null || cursor.isBlank()) {
+            // 第一页时自动更新状态,保证按状态过滤的结果正确
+            travelPlanRepository.refreshStatuses(userId, LocalDate.now());
+            summaries = travelPlanRepository.findSummariesByUserIdAndStatus(userId, statusFilter, limit);
+        } else {
+            PageCursor after = decodeCursor(cursor);
+            summaries = travelPlanRepository.findSummariesByUserIdAndStatusAfter(
+                    userId, statusFilter, after.createdAt(), after.id(), limit);
+        }
+
+        boolean hasMore = summaries.size() > pageSize;
+        List<TravelPlanSummary> page = hasMore ? summaries.subList(0, pageSize) : summaries;
+        String nextCursor = hasMore ? encodeCursor(page.get(page.size() - 1)) : null;
+        return new TravelPlanPageDTO(page.stream().map(this::convertToDTO).collect(Collectors.toList()), nextCursor);
+    }
+
     /**
      * 根据ID获取旅行计划
      */
@@ -153,6 +207,48 @@ public class TravelPlanService {
         return convertToDTO(savedPlan);
     }
 
+    /**
+     * 重新生成某一天的安排,只写回这一天和重新计算的预算分配
+     * 不在事务中调用 AI,写回时检查每日安排未被并发修改(预算按全部天数重新计算)
+     */
+    public RegeneratedDayResponse regenerateDay(UUID planId, int day, String instructions, UUID userId) {
+        TravelPlan plan = findOwnedPlan(planId, userId);
+        JsonNode dailyPlanNodes = readDailyPlans(plan);
+        int index = indexOfDay(dailyPlanNodes, day);
+        List<GeneratedPlanResponse.DayPlan> dailyPlans = toDayPlans(dailyPlanNodes);
+
+        GeneratedPlanResponse.DayPlan dayPlan = aiService.regenerateDay(toGenerateRequest(plan), dailyPlans, day, instructions);
+        dailyPlans.set(index, dayPlan);
+
+        GeneratedPlanResponse.BudgetBreakdown budget = PlanBudgets.recompute(dailyPlans);
+        replaceFragment(plan, "{dailyPlans," + index + "}", dailyPlanNodes, dayPlan, budget);
+        return new RegeneratedDayResponse(dayPlan, budget);
+    }
+
+    /**
+     * 重新生成某一天中的单个活动,只写回这个活动和重新计算的预算分配
+     */
+    public RegeneratedDayResponse regenerateActivity(UUID planId, int day, int activityIndex,
+                                                     String instructions, UUID userId) {
+        TravelPlan plan = findOwnedPlan(planId, userId);
+        JsonNode dailyPlanNodes = readDailyPlans(plan);
+        int index = indexOfDay(dailyPlanNodes, day);
+        List<GeneratedPlanResponse.DayPlan> dailyPlans = toDayPlans(dailyPlanNodes);
+
+        GeneratedPlanResponse.DayPlan dayPlan = dailyPlans.get(index);
+        if (dayPlan.getActivities() == null || activityIndex < 0 || activityIndex >= dayPlan.getActivities().size()) {
+            throw new RuntimeException("活动不存在");
+        }
+        GeneratedPlanResponse.Activity activity = aiService.regenerateActivity(
+                toGenerateRequest(plan), dayPlan, activityIndex, instructions);
+        dayPlan.getActivities().set(activityIndex, activity);
+
+        GeneratedPlanResponse.BudgetBreakdown budget = PlanBudgets.recompute(dailyPlans);
+        replaceFragment(plan, "{dailyPlans," + index + ",activities," + activityIndex + "}",
+                dailyPlanNodes, activity, budget);
+        return new RegeneratedDayResponse(dayPlan, budget);
+    }
+
     /**
      * 自动更新计划状态
      */
@@ -206,10 +302,91 @@ public class TravelPlanService {
         return convertToDetailDTO(plan);
     }
 
+    private TravelPlan findOwnedPlan(UUID planId, UUID userId) {
+        TravelPlan plan = travelPlanRepository.findById(planId)
+                .orElseThrow(() -> new RuntimeException("计划不存在"));
+
+        if (!plan.getUserId().equals(userId)) {
+            throw new RuntimeException("无权修改此计划");
+        }
+        return plan;
+    }
+
+    private JsonNode readDailyPlans(TravelPlan plan) {
+        JsonNode dailyPlans = null;
+        if (plan.getAiGeneratedPlan() != null) {
+            try {
+                dailyPlans = objectMapper.readTree(plan.getAiGeneratedPlan()).get("dailyPlans");
+            } catch (Exception e) {
+                log.warn("解析已保存的 AI 计划失败: {}", e.getMessage());
+            }
+        }
+        if (dailyPlans == null || !dailyPlans.isArray()) {
+            throw new RuntimeException("计划中没有每日安排");
+        }
+        return dailyPlans;
+    }
+
+    private int indexOfDay(JsonNode dailyPlans, int day) {
+        for (int i = 0; i < dailyPlans.size(); i++) {
+            if (dailyPlans.get(i).path("day").asInt() == day) {
+                return i;
+            }
+        }
+        throw new RuntimeException("第 " + day + " 天不存在");
+    }
+
+    private List<GeneratedPlanResponse.DayPlan> toDayPlans(JsonNode dailyPlans) {
+        List<GeneratedPlanResponse.DayPlan> result = new ArrayList<>();
+        try {
+            for (JsonNode node : dailyPlans) {
+                result.add(Json.DAY_PLAN_READER.readValue(node));
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("解析每日安排失败: " + e.getMessage(), e);
+        }
+        return result;
+    }
+
+    /**
+     * 按 jsonb 路径写回片段;任意一天在生成期间被修改时放弃写入,避免预算分配与每日安排不一致
+     */
+    private void replaceFragment(TravelPlan plan, String path, JsonNode expectedDays, Object fragment,
+                                 GeneratedPlanResponse.BudgetBreakdown budget) {
+        int updated;
+        try {
+            updated = travelPlanRepository.replacePlanFragment(plan.getId(), plan.getUserId(), path,
+                    objectMapper.writeValueAsString(expectedDays),
+                    objectMapper.writeValueAsString(fragment),
+                    objectMapper.writeValueAsString(budget));
+        } catch (Exception e) {
+            throw new RuntimeException("保存计划失败: " + e.getMessage(), e);
+        }
+        if (updated == 0) {
+            throw new PlanConflictException("计划已被修改，请刷新后重试");
+        }
+    }
+
+    /**
+     * 用已保存的计划信息构建生成请求
+     */
+    private GeneratePlanRequest toGenerateRequest(TravelPlan plan) {
+        GeneratePlanRequest request = new GeneratePlanRequest();
+        request.setUserInput(plan.getUserInput() != null ? plan.getUserInput() : "");
+        request.setDestination(plan.getDestination());
+        request.setDuration(plan.getDuration());
+        request.setBudget(plan.getBudget());
+        request.setTravelers(plan.getTravelers());
+        if (plan.getPreferences() != null) {
+            request.setPreferences(String.join(",", plan.getPreferences()));
+        }
+        return request;
+    }
+
     /**
      * 转换为 DTO
      */
-    private TravelPlanDTO convertToDTO(TravelPlan plan) {
+    TravelPlanDTO convertToDTO(TravelPlan plan) {
         TravelPlanDTO dto = new TravelPlanDTO();
         dto.setId(plan.getId());
         dto.setDestination(plan.getDestination());
@@ -230,10 +407,56 @@ public class TravelPlanService {
         return dto;
     }
 
+    /**
+     * 列表投影转换为 DTO
+     */
+    TravelPlanDTO convertToDTO(TravelPlanSummary plan) {
+        TravelPlanDTO dto = new TravelPlanDTO();
+        dto.setId(plan.getId());
+        dto.setDestination(plan.getDestination());
+        dto.setStartDate(plan.getStartDate());
+        dto.setEndDate(plan.getEndDate());
+        dto.setDuration(plan.getDuration());
+        dto.setBudget(plan.getBudget());
+        dto.setTravelers(plan.getTravelers());
+
+        if (plan.getPreferences() != null) {
+            dto.setPreferences(Arrays.asList(plan.getPreferences()));
+        }
+
+        dto.setStatus(plan.getStatus());
+        dto.setCreatedAt(plan.getCreatedAt());
+        dto.setUpdatedAt(plan.getUpdatedAt());
+
+        return dto;
+    }
+
+    /**
+     * 游标为最后一条的 "createdAt|id" 的 Base64URL 编码,对前端不透明
+     */
+    static String encodeCursor(TravelPlanSummary last) {
+        String raw = last.getCreatedAt() + "|" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static PageCursor decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            return new PageCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                    UUID.fromString(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new RuntimeException("无效的分页游标");
+        }
+    }
+
+    record PageCursor(LocalDateTime createdAt, UUID id) {
+    }
+
     /**
      * 转换为详细 DTO
      */
-    private TravelPlanDetailDTO convertToDetailDTO(TravelPlan plan) {
+    TravelPlanDetailDTO convertToDetailDTO(TravelPlan plan) {
         TravelPlanDetailDTO dto = new TravelPlanDetailDTO();
         dto.setId(plan.getId());
         dto.setDestination(plan.getDestination());
@@ -0,0 +1,34 @@
+package com.shingeki.travelplannerbackend.service.llm;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * AI 用量监控端点:/actuator/aiusage 返回总用量和费用最高的用户,/actuator/aiusage/{userId} 返回单个用户
+ * 只在管理端口(management.server.port,默认只监听本机)上提供
+ */
+@Component
+@Endpoint(id = "aiusage")
+public class AiUsageEndpoint {
+
+    private final AiUsageTracker usageTracker;
+
+    public AiUsageEndpoint(AiUsageTracker usageTracker) {
+        this.usageTracker = usageTracker;
+    }
+
+    @ReadOperation
+    public Map<String, Object> usage(@Nullable Integer limit) {
+        return usageTracker.snapshot(limit != null ? limit : 20);
+    }
+
+    @ReadOperation
+    public Map<String, Object> user(@Selector String userId) {
+        return usageTracker.userSnapshot(userId);
+    }
+}
@@ -0,0 +1,148 @@
+package com.shingeki.travelplannerbackend.service.llm;
+
+import com.shingeki.travelplannerbackend.security.CurrentUser;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * AI 用量和费用统计
+ * 按模型单价(元/千 token)估算每次调用的费用:总费用按任务/服务商/模型记入 ai.llm.cost 指标,
+ * 按用户的调用次数、token 和费用保存在内存中,通过 /actuator/aiusage 查看(用户 ID 不作为指标标签,避免标签过多)
+ */
+@Component
+public class AiUsageTracker {
+
+    static final String ANONYMOUS = "anonymous";
+    static final String OTHER = "other";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, double[]> prices = new HashMap<>();
+    private final int maxUsers;
+    private final ConcurrentMap<String, Usage> users = new ConcurrentHashMap<>();
+    private final Usage total = new Usage();
+
+    public AiUsageTracker(MeterRegistry meterRegistry,
+                          @Value("${ai.pricing.models:qwen-plus-2025-09-11=0.0008/0.002,qwen-flash=0.00015/0.0015}") String pricing,
+                          @Value("${ai.usage.max-users:10000}") int maxUsers) {
+        this.meterRegistry = meterRegistry;
+        this.maxUsers = maxUsers;
+        for (String entry : pricing.split(",")) {
+            String trimmed = entry.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int eq = trimmed.lastIndexOf('=');
+            String[] price = eq > 0 ? trimmed.substring(eq + 1).split("/") : new String[0];
+            if (price.length != 2) {
+                throw new IllegalArgumentException("模型单价配置格式应为 模型=输入单价/输出单价: " + trimmed);
+            }
+            prices.put(trimmed.substring(0, eq).trim(),
+                    new double[]{Double.parseDouble(price[0].trim()), Double.parseDouble(price[1].trim())});
+        }
+    }
+
+    /**
+     * 记录一次调用的用量,计入当前用户(CurrentUser)
+     */
+    public void record(LlmTask task, String provider, String model, LlmUsage usage) {
+        double cost = costOf(model, usage);
+        Counter.builder("ai.llm.cost")
+                .baseUnit("yuan")
+                .tag("task", task.name().toLowerCase(Locale.ROOT))
+                .tag("provider", provider)
+                .tag("model", model)
+                .register(meterRegistry)
+                .increment(cost);
+
+        UUID userId = CurrentUser.get();
+        userUsage(userId != null ? userId.toString() : ANONYMOUS).add(usage, cost);
+        total.add(usage, cost);
+    }
+
+    /**
+     * 一次调用的估算费用(元),未配置单价的模型为 0
+     */
+    double costOf(String model, LlmUsage usage) {
+        double[] price = prices.get(model);
+        if (price == null) {
+            return 0;
+        }
+        return (usage.inputTokens() * price[0] + usage.outputTokens() * price[1]) / 1000;
+    }
+
+    /**
+     * 总用量和费用最高的 limit 个用户
+     */
+    public Map<String, Object> snapshot(int limit) {
+        List<Map<String, Object>> top = users.entrySet().stream()
+                .sorted(Comparator.comparingDouble((Map.Entry<String, Usage> e) -> e.getValue().cost.sum()).reversed())
+                .limit(limit)
+                .map(e -> {
+                    Map<String, Object> item = new LinkedHashMap<>();
+                    item.put("userId", e.getKey());
+                    item.putAll(e.getValue().toMap());
+                    return item;
+                })
+                .toList();
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("total", total.toMap());
+        result.put("users", users.size());
+        result.put("topUsers", top);
+        return result;
+    }
+
+    /**
+     * 单个用户的用量,没有记录时返回 null
+     */
+    public Map<String, Object> userSnapshot(String userId) {
+        Usage usage = users.get(userId);
+        return usage != null ? usage.toMap() : null;
+    }
+
+    /**
+     * 用户数达到上限后,新用户的用量计入 other
+     */
+    private Usage userUsage(String key) {
+        Usage usage = users.get(key);
+        if (usage != null) {
+            return usage;
+        }
+        if (users.size() >= maxUsers) {
+            key = OTHER;
+        }
+        return users.computeIfAbsent(key, k -> new Usage());
+    }
+
+    private static class Usage {
+
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder inputTokens = new LongAdder();
+        private final LongAdder outputTokens = new LongAdder();
+        private final DoubleAdder cost = new DoubleAdder();
+
+        private void add(LlmUsage usage, double callCost) {
+            calls.increment();
+            inputTokens.add(usage.inputTokens());
+            outputTokens.add(usage.outputTokens());
+            cost.add(callCost);
+        }
+
+        private Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("calls", calls.sum());
+            map.put("inputTokens", inputTokens.sum());
+            map.put("outputTokens", outputTokens.sum());
+            map.put("cost", cost.sum());
+            return map;
+        }
+    }
+}
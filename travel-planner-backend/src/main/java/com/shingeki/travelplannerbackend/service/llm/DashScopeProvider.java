@@ -0,0 +1,225 @@
+package com.shingeki.travelplannerbackend.service.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shingeki.travelplannerbackend.support.AdaptiveConcurrencyLimiter;
+import com.shingeki.travelplannerbackend.support.CircuitBreaker;
+import com.shingeki.travelplannerbackend.support.CircuitOpenException;
+import com.shingeki.travelplannerbackend.support.Json;
+import com.shingeki.travelplannerbackend.support.LimitExceededException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.*;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * 阿里云 DashScope(通义千问)服务商
+ * 调用前经过熔断器和自适应并发限制,见 QwenHttpClientConfig
+ */
+@Slf4j
+@Component
+public class DashScopeProvider implements LlmProvider {
+
+    private final RestTemplate restTemplate;
+    private final AdaptiveConcurrencyLimiter qwenLimiter;
+    private final CircuitBreaker qwenCircuitBreaker;
+    private final String apiKey;
+    private final String apiUrl;
+    private final ObjectMapper objectMapper = Json.MAPPER;
+
+    public DashScopeProvider(@Qualifier("qwenRestTemplate") RestTemplate restTemplate,
+                             @Qualifier("qwenConcurrencyLimiter") AdaptiveConcurrencyLimiter qwenLimiter,
+                             @Qualifier("qwenCircuitBreaker") CircuitBreaker qwenCircuitBreaker,
+                             @Value("${qwen.api.key}") String apiKey,
+                             @Value("${qwen.api.url}") String apiUrl) {
+        this.restTemplate = restTemplate;
+        this.qwenLimiter = qwenLimiter;
+        this.qwenCircuitBreaker = qwenCircuitBreaker;
+        this.apiKey = apiKey;
+        this.apiUrl = apiUrl;
+    }
+
+    @Override
+    public String name() {
+        return "dashscope";
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return apiKey != null && !apiKey.isBlank() && apiUrl != null && !apiUrl.isBlank();
+    }
+
+    @Override
+    public LlmResponse complete(String model, String prompt) {
+        AdaptiveConcurrencyLimiter.Permit permit = acquireUpstream();
+        try {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            headers.set("Authorization", "Bearer " + apiKey);
+
+            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(buildRequestBody(model, prompt, false), headers);
+
+            ResponseEntity<String> response = restTemplate.exchange(
+                apiUrl,
+                HttpMethod.POST,
+                entity,
+                String.class
+            );
+
+            if (response.getStatusCode() == HttpStatus.OK) {
+                // 响应解析成功后才记为成功,响应体异常只按失败记录一次
+                JsonNode root = objectMapper.readTree(response.getBody());
+                JsonNode message = root.path("output").path("choices").path(0).path("message");
+                if (message.isMissingNode()) {
+                    throw new RuntimeException("API 响应缺少 choices");
+                }
+                String content = message.path("content").asText();
+                permit.onSuccess();
+                qwenCircuitBreaker.onSuccess();
+                return new LlmResponse(content, name(), model, usageOf(root));
+            } else {
+                throw new RuntimeException("API 调用失败: " + response.getStatusCode());
+            }
+        } catch (Exception e) {
+            recordFailure(permit, e);
+            log.warn("调用通义千问 API 失败: {}", e.getMessage());
+            throw new RuntimeException("调用 AI API 失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 以 SSE 增量输出方式调用,每收到一段内容即交给 onChunk 处理
+     */
+    @Override
+    public LlmUsage stream(String model, String prompt, Consumer<String> onChunk) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(buildRequestBody(model, prompt, true));
+        } catch (Exception e) {
+            throw new RuntimeException("构建 AI 请求失败: " + e.getMessage(), e);
+        }
+
+        // 流式调用的总耗时取决于输出长度,只按结果(是否过载)调整并发上限
+        AdaptiveConcurrencyLimiter.Permit permit = acquireUpstream();
+        try {
+            LlmUsage usage = doStream(body, onChunk);
+            permit.onIgnore();
+            qwenCircuitBreaker.onSuccess();
+            return usage;
+        } catch (RuntimeException e) {
+            recordFailure(permit, e);
+            throw e;
+        }
+    }
+
+    private LlmUsage doStream(byte[] body, Consumer<String> onChunk) {
+        return restTemplate.execute(apiUrl, HttpMethod.POST, request -> {
+            request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+            request.getHeaders().set("Authorization", "Bearer " + apiKey);
+            request.getHeaders().set("Accept", MediaType.TEXT_EVENT_STREAM_VALUE);
+            request.getHeaders().set("X-DashScope-SSE", "enable");
+            request.getBody().write(body);
+        }, response -> {
+            if (response.getStatusCode() != HttpStatus.OK) {
+                throw new RuntimeException("API 调用失败: " + response.getStatusCode());
+            }
+            LlmUsage usage = LlmUsage.EMPTY;
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(response.getBody(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.startsWith("data:")) {
+                        continue;
+                    }
+                    JsonNode event = objectMapper.readTree(line.substring(5).trim());
+                    if (event.has("code") && !event.path("code").asText().isEmpty()) {
+                        throw new RuntimeException("API 调用失败: " + event.path("message").asText());
+                    }
+                    // 每个事件中的用量是累计值,以最后一个为准
+                    if (event.has("usage")) {
+                        usage = usageOf(event);
+                    }
+                    String content = event.path("output").path("choices").path(0)
+                            .path("message").path("content").asText("");
+                    if (!content.isEmpty()) {
+                        onChunk.accept(content);
+                    }
+                }
+            }
+            return usage;
+        });
+    }
+
+    /**
+     * 调用上游前检查熔断器并获取并发许可
+     */
+    private AdaptiveConcurrencyLimiter.Permit acquireUpstream() {
+        if (!qwenCircuitBreaker.tryAcquire()) {
+            throw new CircuitOpenException("AI 服务暂时不可用");
+        }
+        try {
+            return qwenLimiter.acquire();
+        } catch (LimitExceededException e) {
+            qwenCircuitBreaker.onIgnore();
+            throw e;
+        }
+    }
+
+    /**
+     * 记录失败调用:超时、5xx 和 429 视为上游故障,降低并发上限并计入熔断失败率
+     */
+    private void recordFailure(AdaptiveConcurrencyLimiter.Permit permit, Exception e) {
+        if (e instanceof ResourceAccessException
+                || e instanceof HttpServerErrorException
+                || e instanceof HttpClientErrorException.TooManyRequests) {
+            permit.onDropped();
+            qwenCircuitBreaker.onFailure();
+        } else {
+            permit.onIgnore();
+            qwenCircuitBreaker.onSuccess();
+        }
+    }
+
+    /**
+     * 构建 DashScope 请求体
+     */
+    private Map<String, Object> buildRequestBody(String model, String prompt, boolean incremental) {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("model", model);
+
+        Map<String, Object> input = new HashMap<>();
+        List<Map<String, String>> messages = new ArrayList<>();
+
+        Map<String, String> message = new HashMap<>();
+        message.put("role", "user");
+        message.put("content", prompt);
+        messages.add(message);
+
+        input.put("messages", messages);
+        requestBody.put("input", input);
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("result_format", "message");
+        if (incremental) {
+            parameters.put("incremental_output", true);
+        }
+        requestBody.put("parameters", parameters);
+        return requestBody;
+    }
+
+    private LlmUsage usageOf(JsonNode root) {
+        JsonNode usage = root.path("usage");
+        return new LlmUsage(usage.path("input_tokens").asInt(0), usage.path("output_tokens").asInt(0));
+    }
+}
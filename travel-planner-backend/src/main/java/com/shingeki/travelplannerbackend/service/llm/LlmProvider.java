@@ -0,0 +1,29 @@
+package com.shingeki.travelplannerbackend.service.llm;
+
+import java.util.function.Consumer;
+
+/**
+ * 大模型服务商 - 屏蔽不同服务商的请求格式,由 {@link LlmRouter} 按任务选择
+ */
+public interface LlmProvider {
+
+    /**
+     * 服务商名称,与路由配置中的前缀对应,如 dashscope、openai
+     */
+    String name();
+
+    /**
+     * 是否已配置可用(如已设置地址和密钥)
+     */
+    boolean isAvailable();
+
+    /**
+     * 单次调用,返回完整输出
+     */
+    LlmResponse complete(String model, String prompt);
+
+    /**
+     * 流式调用,每收到一段增量输出即交给 onChunk 处理,结束后返回用量
+     */
+    LlmUsage stream(String model, String prompt, Consumer<String> onChunk);
+}
@@ -0,0 +1,11 @@
+package com.shingeki.travelplannerbackend.service.llm;
+
+/**
+ * 大模型调用结果
+ * @param content 模型输出文本
+ * @param provider 实际处理请求的服务商
+ * @param model 实际使用的模型
+ * @param usage token 用量
+ */
+public record LlmResponse(String content, String provider, String model, LlmUsage usage) {
+}
@@ -0,0 +1,263 @@
+package com.shingeki.travelplannerbackend.service.llm;
+
+import com.shingeki.travelplannerbackend.support.CircuitBreaker;
+import com.shingeki.travelplannerbackend.support.CircuitOpenException;
+import com.shingeki.travelplannerbackend.support.LatencyTracker;
+import com.shingeki.travelplannerbackend.support.LimitExceededException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 大模型路由 - 按任务选择服务商和模型
+ * 每个任务配置一组按优先级排列的候选(服务商/模型);候选的近期 p95 延迟超过任务的延迟预算,
+ * 或错误率超过阈值时,在冷却时间内跳过该候选,改用下一个;调用失败时也会依次尝试后面的候选。
+ * 服务商本地的限流或熔断拒绝对该服务商的所有模型都一样,只换其他服务商的候选;
+ * 非暂时性的 4xx(请求本身有问题)直接抛出,不再尝试
+ * 每次调用记录总耗时(ai.llm.requests)、流式调用的首个 token 耗时(ai.llm.first_token)和 token 用量
+ */
+@Slf4j
+@Service
+public class LlmRouter {
+
+    private final Map<String, LlmProvider> providers = new HashMap<>();
+    private final Map<LlmTask, List<Route>> routes = new EnumMap<>(LlmTask.class);
+    private final Map<LlmTask, Duration> latencyBudgets = new EnumMap<>(LlmTask.class);
+    private final MeterRegistry meterRegistry;
+    private final AiUsageTracker usageTracker;
+
+    private final int minSamples;
+    private final Duration cooldown;
+
+    @Autowired
+    public LlmRouter(List<LlmProvider> providers, MeterRegistry meterRegistry, AiUsageTracker usageTracker,
+                     @Value("${llm.routing.parse.models:dashscope/qwen-flash,dashscope/qwen-plus-2025-09-11}") String parseModels,
+                     @Value("${llm.routing.parse.latency-budget:5s}") Duration parseBudget,
+                     @Value("${llm.routing.generate.models:dashscope/qwen-plus-2025-09-11,dashscope/qwen-flash}") String generateModels,
+                     @Value("${llm.routing.generate.latency-budget:90s}") Duration generateBudget,
+                     @Value("${llm.routing.error-rate-threshold:0.5}") double errorRateThreshold,
+                     @Value("${llm.routing.min-samples:10}") int minSamples,
+                     @Value("${llm.routing.cooldown:60s}") Duration cooldown) {
+        this.meterRegistry = meterRegistry;
+        this.usageTracker = usageTracker;
+        this.minSamples = minSamples;
+        this.cooldown = cooldown;
+        providers.forEach(provider -> this.providers.put(provider.name(), provider));
+
+        routes.put(LlmTask.PARSE, parseRoutes(parseModels, errorRateThreshold));
+        routes.put(LlmTask.GENERATE, parseRoutes(generateModels, errorRateThreshold));
+        latencyBudgets.put(LlmTask.PARSE, parseBudget);
+        latencyBudgets.put(LlmTask.GENERATE, generateBudget);
+    }
+
+    /**
+     * 单次调用
+     */
+    public LlmResponse complete(LlmTask task, String prompt) {
+        RuntimeException lastError = null;
+        Set<LlmProvider> rejected = new HashSet<>();
+        List<Route> candidates = routes.get(task);
+        for (int i = 0; i < candidates.size(); i++) {
+            Route route = candidates.get(i);
+            if (rejected.contains(route.provider) || !route.tryAcquire(i == candidates.size() - 1)) {
+                continue;
+            }
+
+            long start = System.nanoTime();
+            try {
+                LlmResponse response = route.provider.complete(route.model, prompt);
+                route.onSuccess(task, System.nanoTime() - start);
+                recordUsage(task, route, response.usage());
+                return response;
+            } catch (RuntimeException e) {
+                route.onError(task, e, System.nanoTime() - start);
+                if (!isRetryable(e)) {
+                    throw e;
+                }
+                if (isLocalRejection(e)) {
+                    rejected.add(route.provider);
+                }
+                lastError = e;
+            }
+        }
+        throw lastError != null ? lastError : new RuntimeException("没有可用的 AI 模型");
+    }
+
+    /**
+     * 流式调用;已经输出内容后失败不再切换候选,避免输出重复
+     */
+    public LlmUsage stream(LlmTask task, String prompt, Consumer<String> onChunk) {
+        RuntimeException lastError = null;
+        Set<LlmProvider> rejected = new HashSet<>();
+        List<Route> candidates = routes.get(task);
+        for (int i = 0; i < candidates.size(); i++) {
+            Route route = candidates.get(i);
+            if (rejected.contains(route.provider) || !route.tryAcquire(i == candidates.size() - 1)) {
+                continue;
+            }
+
+            boolean[] emitted = {false};
+            long start = System.nanoTime();
+            try {
+                LlmUsage usage = route.provider.stream(route.model, prompt, chunk -> {
+                    if (!emitted[0]) {
+                        route.recordFirstToken(task, System.nanoTime() - start);
+                    }
+                    emitted[0] = true;
+                    onChunk.accept(chunk);
+                });
+                route.onSuccess(task, System.nanoTime() - start);
+                recordUsage(task, route, usage);
+                return usage;
+            } catch (RuntimeException e) {
+                route.onError(task, e, System.nanoTime() - start);
+                if (emitted[0] || !isRetryable(e)) {
+                    throw e;
+                }
+                if (isLocalRejection(e)) {
+                    rejected.add(route.provider);
+                }
+                lastError = e;
+            }
+        }
+        throw lastError != null ? lastError : new RuntimeException("没有可用的 AI 模型");
+    }
+
+    /**
+     * 服务商本地的限流或熔断拒绝,请求没有发往上游
+     */
+    private static boolean isLocalRejection(RuntimeException e) {
+        return e instanceof LimitExceededException || e instanceof CircuitOpenException;
+    }
+
+    /**
+     * 是否值得换候选重试:除 408 和 429 外的 4xx 换模型也会同样失败
+     */
+    private static boolean isRetryable(RuntimeException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HttpClientErrorException clientError) {
+                int status = clientError.getStatusCode().value();
+                return status == 408 || status == 429;
+            }
+        }
+        return true;
+    }
+
+    private List<Route> parseRoutes(String spec, double errorRateThreshold) {
+        List<Route> result = new ArrayList<>();
+        for (String entry : spec.split(",")) {
+            String trimmed = entry.trim();
+            int slash = trimmed.indexOf('/');
+            if (slash <= 0 || slash == trimmed.length() - 1) {
+                throw new IllegalArgumentException("模型路由配置格式应为 服务商/模型: " + trimmed);
+            }
+            LlmProvider provider = providers.get(trimmed.substring(0, slash));
+            if (provider == null) {
+                throw new IllegalArgumentException("未知的 AI 服务商: " + trimmed);
+            }
+            result.add(new Route(provider, trimmed.substring(slash + 1), errorRateThreshold));
+        }
+        return result;
+    }
+
+    private void recordUsage(LlmTask task, Route route, LlmUsage usage) {
+        if (usage == null) {
+            return;
+        }
+        meterRegistry.counter("ai.llm.tokens", "task", taskTag(task), "provider", route.provider.name(),
+                "model", route.model, "type", "input").increment(usage.inputTokens());
+        meterRegistry.counter("ai.llm.tokens", "task", taskTag(task), "provider", route.provider.name(),
+                "model", route.model, "type", "output").increment(usage.outputTokens());
+        usageTracker.record(task, route.provider.name(), route.model, usage);
+    }
+
+    private String taskTag(LlmTask task) {
+        return task.name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 路由候选及其近期表现
+     */
+    private class Route {
+
+        private final LlmProvider provider;
+        private final String model;
+        private final LatencyTracker latency = new LatencyTracker(100);
+        private final CircuitBreaker errors;
+        private volatile long slowUntil;
+
+        private Route(LlmProvider provider, String model, double errorRateThreshold) {
+            this.provider = provider;
+            this.model = model;
+            this.errors = new CircuitBreaker(20, minSamples, errorRateThreshold, cooldown, 1);
+        }
+
+        /**
+         * 候选是否可用;最后一个候选只要已配置就尝试
+         */
+        private boolean tryAcquire(boolean lastCandidate) {
+            if (!provider.isAvailable()) {
+                return false;
+            }
+            if (lastCandidate) {
+                return true;
+            }
+            if (System.nanoTime() < slowUntil) {
+                return false;
+            }
+            return errors.tryAcquire();
+        }
+
+        private void onSuccess(LlmTask task, long elapsedNanos) {
+            errors.onSuccess();
+            record(task, "success", elapsedNanos);
+
+            latency.record(TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+            if (latency.count() >= minSamples
+                    && latency.percentile(0.95) > latencyBudgets.get(task).toMillis()) {
+                log.warn("模型 {}/{} p95 延迟超过预算,暂时切换到备用模型", provider.name(), model);
+                slowUntil = System.nanoTime() + cooldown.toNanos();
+                latency.reset();
+            }
+        }
+
+        private void onError(LlmTask task, RuntimeException e, long elapsedNanos) {
+            // 本地限流或熔断拒绝、请求本身有问题(4xx)不代表模型本身出错
+            if (isLocalRejection(e) || !isRetryable(e)) {
+                errors.onIgnore();
+            } else {
+                errors.onFailure();
+            }
+            record(task, "error", elapsedNanos);
+            log.warn("模型 {}/{} 调用失败: {}", provider.name(), model, e.getMessage());
+        }
+
+        private void recordFirstToken(LlmTask task, long elapsedNanos) {
+            Timer.builder("ai.llm.first_token")
+                    .tag("task", taskTag(task))
+                    .tag("provider", provider.name())
+                    .tag("model", model)
+                    .register(meterRegistry)
+                    .record(elapsedNanos, TimeUnit.NANOSECONDS);
+        }
+
+        private void record(LlmTask task, String outcome, long elapsedNanos) {
+            Timer.builder("ai.llm.requests")
+                    .tag("task", taskTag(task))
+                    .tag("provider", provider.name())
+                    .tag("model", model)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .record(elapsedNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.shingeki.travelplannerbackend.service.llm;
+
+/**
+ * 调用大模型的任务类型,不同任务可路由到不同的模型
+ */
+public enum LlmTask {
+
+    /** 解析用户输入:输出短,对延迟敏感 */
+    PARSE,
+
+    /** 生成旅行计划:输出长,对质量敏感 */
+    GENERATE
+}
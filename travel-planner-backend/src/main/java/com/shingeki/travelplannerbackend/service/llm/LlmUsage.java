@@ -0,0 +1,9 @@
+package com.shingeki.travelplannerbackend.service.llm;
+
+/**
+ * 一次调用的 token 用量,服务商未返回时为 0
+ */
+public record LlmUsage(int inputTokens, int outputTokens) {
+
+    public static final LlmUsage EMPTY = new LlmUsage(0, 0);
+}
@@ -0,0 +1,145 @@
+package com.shingeki.travelplannerbackend.service.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shingeki.travelplannerbackend.support.Json;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.*;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * OpenAI 兼容接口服务商(/chat/completions)
+ * 可接入 DashScope 兼容模式、本地 vLLM / Ollama,以及测试用的桩服务
+ */
+@Slf4j
+@Component
+public class OpenAiCompatibleProvider implements LlmProvider {
+
+    private final RestTemplate restTemplate;
+    private final String baseUrl;
+    private final String apiKey;
+    private final ObjectMapper objectMapper = Json.MAPPER;
+
+    public OpenAiCompatibleProvider(@Qualifier("qwenRestTemplate") RestTemplate restTemplate,
+                                    @Value("${llm.openai.base-url:}") String baseUrl,
+                                    @Value("${llm.openai.api-key:}") String apiKey) {
+        this.restTemplate = restTemplate;
+        this.baseUrl = baseUrl != null && baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.apiKey = apiKey;
+    }
+
+    @Override
+    public String name() {
+        return "openai";
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return baseUrl != null && !baseUrl.isBlank();
+    }
+
+    @Override
+    public LlmResponse complete(String model, String prompt) {
+        try {
+            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(buildRequestBody(model, prompt, false), headers());
+            ResponseEntity<String> response = restTemplate.exchange(
+                baseUrl + "/chat/completions",
+                HttpMethod.POST,
+                entity,
+                String.class
+            );
+
+            if (response.getStatusCode() != HttpStatus.OK) {
+                throw new RuntimeException("API 调用失败: " + response.getStatusCode());
+            }
+            JsonNode root = objectMapper.readTree(response.getBody());
+            String content = root.path("choices").path(0).path("message").path("content").asText();
+            return new LlmResponse(content, name(), model, usageOf(root));
+        } catch (Exception e) {
+            log.warn("调用 OpenAI 兼容接口失败: {}", e.getMessage());
+            throw new RuntimeException("调用 AI API 失败: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public LlmUsage stream(String model, String prompt, Consumer<String> onChunk) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(buildRequestBody(model, prompt, true));
+        } catch (Exception e) {
+            throw new RuntimeException("构建 AI 请求失败: " + e.getMessage(), e);
+        }
+
+        return restTemplate.execute(baseUrl + "/chat/completions", HttpMethod.POST, request -> {
+            request.getHeaders().putAll(headers());
+            request.getHeaders().set("Accept", MediaType.TEXT_EVENT_STREAM_VALUE);
+            request.getBody().write(body);
+        }, response -> {
+            if (response.getStatusCode() != HttpStatus.OK) {
+                throw new RuntimeException("API 调用失败: " + response.getStatusCode());
+            }
+            LlmUsage usage = LlmUsage.EMPTY;
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(response.getBody(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.startsWith("data:")) {
+                        continue;
+                    }
+                    String data = line.substring(5).trim();
+                    if ("[DONE]".equals(data)) {
+                        break;
+                    }
+                    JsonNode event = objectMapper.readTree(data);
+                    if (event.hasNonNull("usage")) {
+                        usage = usageOf(event);
+                    }
+                    String content = event.path("choices").path(0).path("delta").path("content").asText("");
+                    if (!content.isEmpty()) {
+                        onChunk.accept(content);
+                    }
+                }
+            }
+            return usage;
+        });
+    }
+
+    private HttpHeaders headers() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        if (apiKey != null && !apiKey.isBlank()) {
+            headers.set("Authorization", "Bearer " + apiKey);
+        }
+        return headers;
+    }
+
+    private Map<String, Object> buildRequestBody(String model, String prompt, boolean stream) {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("model", model);
+
+        Map<String, String> message = new HashMap<>();
+        message.put("role", "user");
+        message.put("content", prompt);
+        requestBody.put("messages", List.of(message));
+
+        if (stream) {
+            requestBody.put("stream", true);
+            requestBody.put("stream_options", Map.of("include_usage", true));
+        }
+        return requestBody;
+    }
+
+    private LlmUsage usageOf(JsonNode root) {
+        JsonNode usage = root.path("usage");
+        return new LlmUsage(usage.path("prompt_tokens").asInt(0), usage.path("completion_tokens").asInt(0));
+    }
+}
@@ -0,0 +1,181 @@
+package com.shingeki.travelplannerbackend.support;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 自适应并发限制(AIMD)
+ * 调用成功且延迟低于阈值时并发上限加性增长;超时、上游过载或延迟超过阈值时按比例下降。
+ * 超出上限的调用进入有界等待队列,队列已满或等待超时立即抛出 {@link LimitExceededException}
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long latencyThresholdNanos;
+    private final int maxQueueSize;
+    private final long maxWaitNanos;
+    private final Duration retryAfter;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+
+    private double limit;
+    private int inFlight;
+    private int waiting;
+    private final AtomicLong rejected = new AtomicLong();
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double backoffRatio,
+                                      Duration latencyThreshold, int maxQueueSize, Duration maxWait,
+                                      Duration retryAfter) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.backoffRatio = backoffRatio;
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.maxQueueSize = maxQueueSize;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * 获取执行许可,必要时在队列中等待
+     */
+    public Permit acquire() {
+        lock.lock();
+        try {
+            if (inFlight < currentLimit()) {
+                inFlight++;
+                return new Permit(System.nanoTime());
+            }
+            if (waiting >= maxQueueSize) {
+                rejected.incrementAndGet();
+                throw new LimitExceededException("AI 服务繁忙，请稍后重试", retryAfter);
+            }
+
+            waiting++;
+            try {
+                long remaining = maxWaitNanos;
+                while (inFlight >= currentLimit()) {
+                    if (remaining <= 0) {
+                        rejected.incrementAndGet();
+                        throw new LimitExceededException("AI 服务繁忙，请稍后重试", retryAfter);
+                    }
+                    remaining = available.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                rejected.incrementAndGet();
+                throw new LimitExceededException("等待 AI 调用许可时被中断", retryAfter);
+            } finally {
+                waiting--;
+            }
+            inFlight++;
+            return new Permit(System.nanoTime());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return currentLimit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    private int currentLimit() {
+        return (int) limit;
+    }
+
+    private void release(long latencyNanos, Outcome outcome) {
+        lock.lock();
+        try {
+            inFlight--;
+            boolean overloaded = outcome == Outcome.DROPPED
+                    || (outcome == Outcome.SUCCESS && latencyNanos > latencyThresholdNanos);
+            if (overloaded) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            } else if (outcome == Outcome.SUCCESS && inFlight * 2 >= currentLimit()) {
+                // 只在并发实际用到一半以上时增长,避免空闲时上限无限抬高
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private enum Outcome {
+        SUCCESS, DROPPED, IGNORED
+    }
+
+    /**
+     * 执行许可,每个许可必须且只能调用一次 onSuccess / onDropped / onIgnore
+     */
+    public class Permit {
+
+        private final long startNanos;
+        private boolean released;
+
+        private Permit(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * 调用成功,按延迟调整并发上限
+         */
+        public void onSuccess() {
+            release(Outcome.SUCCESS);
+        }
+
+        /**
+         * 超时或上游过载,降低并发上限
+         */
+        public void onDropped() {
+            release(Outcome.DROPPED);
+        }
+
+        /**
+         * 与上游负载无关的结果(如请求参数错误),不调整并发上限
+         */
+        public void onIgnore() {
+            release(Outcome.IGNORED);
+        }
+
+        private void release(Outcome outcome) {
+            if (released) {
+                return;
+            }
+            released = true;
+            AdaptiveConcurrencyLimiter.this.release(System.nanoTime() - startNanos, outcome);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.shingeki.travelplannerbackend.support;
+
+/**
+ * 熔断器打开时拒绝调用
+ */
+public class CircuitOpenException extends RuntimeException {
+
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,123 @@
+package com.shingeki.travelplannerbackend.support;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 按调用方公平排队的线程池 - 每个调用方一个队列,有空闲线程时按调用方轮流取队首任务,同一调用方内先到先得,
+ * 一个调用方提交的大量任务不会排在其他调用方前面
+ * 调用方和 TaskDecorator 在提交时(提交线程上)确定;排队总数达到 queueCapacity 时抛出 {@link TaskRejectedException}
+ */
+@Slf4j
+public class FairTaskExecutor implements TaskExecutor, DisposableBean {
+
+    private final ThreadPoolTaskExecutor workers;
+    private final int poolSize;
+    private final int queueCapacity;
+    private final Supplier<String> caller;
+    private final TaskDecorator decorator;
+
+    // 调用方 -> 排队中的任务;rotation 为有排队任务的调用方,按轮到的顺序
+    private final Map<String, Deque<Runnable>> queues = new HashMap<>();
+    private final Deque<String> rotation = new ArrayDeque<>();
+    private int running;
+    private int queued;
+
+    public FairTaskExecutor(String threadNamePrefix, int poolSize, int queueCapacity,
+                            Supplier<String> caller, TaskDecorator decorator) {
+        this.poolSize = poolSize;
+        this.queueCapacity = queueCapacity;
+        this.caller = caller;
+        this.decorator = decorator;
+        // 同时运行的任务不超过 poolSize,工作线程池的队列只用于线程交接的间隙
+        this.workers = new ThreadPoolTaskExecutor();
+        workers.setCorePoolSize(poolSize);
+        workers.setMaxPoolSize(poolSize);
+        workers.setThreadNamePrefix(threadNamePrefix);
+        workers.initialize();
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        String key = caller.get();
+        Runnable decorated = decorator.decorate(task);
+        synchronized (this) {
+            if (running >= poolSize) {
+                if (queued >= queueCapacity) {
+                    throw new TaskRejectedException("线程池排队已满");
+                }
+                Deque<Runnable> queue = queues.computeIfAbsent(key, k -> new ArrayDeque<>());
+                if (queue.isEmpty()) {
+                    rotation.addLast(key);
+                }
+                queue.addLast(decorated);
+                queued++;
+                return;
+            }
+            running++;
+        }
+        try {
+            workers.execute(() -> drain(decorated));
+        } catch (TaskRejectedException e) {
+            synchronized (this) {
+                running--;
+            }
+            throw e;
+        }
+    }
+
+    public synchronized int getQueueSize() {
+        return queued;
+    }
+
+    public synchronized int getActiveCount() {
+        return running;
+    }
+
+    @Override
+    public void destroy() {
+        workers.shutdown();
+    }
+
+    /**
+     * 执行任务,之后在同一线程上按调用方轮流取下一个排队的任务,没有时归还线程
+     */
+    private void drain(Runnable task) {
+        while (task != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                // 单个任务的异常不影响同一线程上的后续任务
+                log.warn("任务执行失败: {}", e.getMessage(), e);
+            }
+            task = next();
+        }
+    }
+
+    private synchronized Runnable next() {
+        String key = rotation.pollFirst();
+        if (key == null) {
+            running--;
+            return null;
+        }
+        Deque<Runnable> queue = queues.get(key);
+        Runnable task = queue.pollFirst();
+        if (queue.isEmpty()) {
+            queues.remove(key);
+        } else {
+            rotation.addLast(key);
+        }
+        queued--;
+        return task;
+    }
+}
@@ -0,0 +1,45 @@
+package com.shingeki.travelplannerbackend.support;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import com.shingeki.travelplannerbackend.dto.GeneratePlanRequest;
+import com.shingeki.travelplannerbackend.dto.GeneratedPlanResponse;
+
+import java.util.Map;
+
+/**
+ * 共享的 JSON 序列化工具
+ * ObjectMapper 创建和首次序列化某个类型的开销很大,全局只创建一个;
+ * Blackbird 用生成的访问器代替反射读写字段;常用类型预先创建 ObjectReader/ObjectWriter,省去每次调用的查找
+ */
+public final class Json {
+
+    /**
+     * 共享实例,忽略未知字段(模型输出和前端保存的计划可能带有额外字段);日期格式与 Spring MVC 一致
+     */
+    public static final ObjectMapper MAPPER = JsonMapper.builder()
+            .addModule(new BlackbirdModule())
+            .addModule(new JavaTimeModule())
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    public static final ObjectReader MAP_READER = MAPPER.readerFor(new TypeReference<Map<String, Object>>() {
+    });
+    public static final ObjectReader PLAN_READER = MAPPER.readerFor(GeneratedPlanResponse.class);
+    public static final ObjectReader DAY_PLAN_READER = MAPPER.readerFor(GeneratedPlanResponse.DayPlan.class);
+    public static final ObjectReader ACTIVITY_READER = MAPPER.readerFor(GeneratedPlanResponse.Activity.class);
+    public static final ObjectReader PLAN_REQUEST_READER = MAPPER.readerFor(GeneratePlanRequest.class);
+
+    public static final ObjectWriter PLAN_WRITER = MAPPER.writerFor(GeneratedPlanResponse.class);
+
+    private Json() {
+    }
+}
@@ -0,0 +1,54 @@
+package com.shingeki.travelplannerbackend.support;
+
+import java.util.Arrays;
+
+/**
+ * 延迟统计 - 保留最近 N 次调用的耗时,计算分位数
+ */
+public class LatencyTracker {
+
+    private final long[] samples;
+    private int index;
+    private int count;
+
+    public LatencyTracker(int windowSize) {
+        this.samples = new long[Math.max(1, windowSize)];
+    }
+
+    public synchronized void record(long millis) {
+        samples[index] = millis;
+        index = (index + 1) % samples.length;
+        if (count < samples.length) {
+            count++;
+        }
+    }
+
+    public synchronized int count() {
+        return count;
+    }
+
+    /**
+     * 清空样本
+     */
+    public synchronized void reset() {
+        index = 0;
+        count = 0;
+    }
+
+    /**
+     * 分位数(毫秒),无样本时返回 0
+     * @param quantile 0 ~ 1,如 0.95
+     */
+    public long percentile(double quantile) {
+        long[] sorted;
+        synchronized (this) {
+            if (count == 0) {
+                return 0;
+            }
+            sorted = Arrays.copyOf(samples, count);
+        }
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.min(sorted.length - 1, Math.max(0, rank))];
+    }
+}
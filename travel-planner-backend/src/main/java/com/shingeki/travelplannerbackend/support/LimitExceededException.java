@@ -0,0 +1,23 @@
+package com.shingeki.travelplannerbackend.support;
+
+import java.time.Duration;
+
+/**
+ * 并发限制已满且等待队列已满(或等待超时)时抛出,调用方应快速返回 429/503
+ */
+public class LimitExceededException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public LimitExceededException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * 建议客户端重试前等待的时间
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,11 @@
+package com.shingeki.travelplannerbackend.support;
+
+/**
+ * 条件更新未命中:计划在读取之后已被其他请求修改
+ */
+public class PlanConflictException extends RuntimeException {
+
+    public PlanConflictException(String message) {
+        super(message);
+    }
+}
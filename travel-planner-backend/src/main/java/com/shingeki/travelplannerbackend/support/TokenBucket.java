@@ -0,0 +1,53 @@
+package com.shingeki.travelplannerbackend.support;
+
+import java.time.Duration;
+
+/**
+ * 令牌桶限速 - 以固定速率补充令牌,桶容量决定允许的突发量
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * @param capacity 桶容量(最大突发数)
+     * @param permits 每个周期补充的令牌数
+     * @param period 补充周期
+     */
+    public TokenBucket(double capacity, double permits, Duration period) {
+        this.capacity = capacity;
+        this.tokensPerNano = permits / period.toNanos();
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * 尝试取一个令牌,不等待
+     */
+    public synchronized boolean tryAcquire() {
+        refill();
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 距离下一个令牌可用还需等待的纳秒数,当前有令牌时返回 0
+     */
+    public synchronized long nanosUntilAvailable() {
+        refill();
+        return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+}
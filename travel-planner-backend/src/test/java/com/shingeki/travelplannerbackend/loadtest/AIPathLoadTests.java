@@ -0,0 +1,295 @@
+package com.shingeki.travelplannerbackend.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shingeki.travelplannerbackend.repository.AIGenerationJobRepository;
+import com.shingeki.travelplannerbackend.repository.AmapCacheRepository;
+import com.shingeki.travelplannerbackend.repository.TravelPlanRepository;
+import com.shingeki.travelplannerbackend.security.SupabaseJwtValidator;
+import com.shingeki.travelplannerbackend.support.AdaptiveConcurrencyLimiter;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * AI 调用路径压测:启动完整的 Web 服务,通义千问指向本地 DashScopeStubServer,并发请求真实的 AI 接口
+ * 不需要数据库和网络(仓库用 mock 代替,JWT 校验固定返回同一用户),默认跳过,通过 loadtest 配置运行:
+ *
+ * <pre>
+ * mvn test -Ploadtest -Dloadtest.concurrency=500 -Dloadtest.requests=2000 -Dloadtest.endpoint=generate
+ * </pre>
+ *
+ * 可选参数:
+ * loadtest.endpoint - generate / stream / parse;
+ * loadtest.stub.median-ms、loadtest.stub.sigma - 桩服务延迟分布;
+ * loadtest.stub.tokens-per-second - 设置后 median-ms 为首 token 延迟,总耗时随输出长度增加;
+ * loadtest.stub.error-rate、loadtest.stub.throttle-rate、loadtest.stub.truncate-rate、loadtest.stub.chunk-size;
+ * loadtest.max-p95-ms、loadtest.min-success-rate - 设置后作为回归门槛
+ * 服务端配置(如 qwen.limiter.max-limit)同样可以用 -D 覆盖
+ */
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"spring.autoconfigure.exclude="
+				+ "org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration,"
+				+ "org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration,"
+				+ "org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration",
+		"ai.jobs.worker.enabled=false",
+		"ai.plan-cache.disk-dir=",
+		"qwen.api.key=stub-key"
+})
+class AIPathLoadTests {
+
+	private static DashScopeStubServer stub;
+
+	@MockitoBean
+	private TravelPlanRepository travelPlanRepository;
+
+	@MockitoBean
+	private AIGenerationJobRepository jobRepository;
+
+	@MockitoBean
+	private AmapCacheRepository amapCacheRepository;
+
+	@MockitoBean
+	private PlatformTransactionManager transactionManager;
+
+	@MockitoBean
+	private SupabaseJwtValidator jwtValidator;
+
+	@Autowired
+	@Qualifier("aiTaskExecutor")
+	private ThreadPoolTaskExecutor aiTaskExecutor;
+
+	@Autowired
+	@Qualifier("qwenConcurrencyLimiter")
+	private AdaptiveConcurrencyLimiter qwenLimiter;
+
+	@LocalServerPort
+	private int port;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@DynamicPropertySource
+	static void stubProperties(DynamicPropertyRegistry registry) throws Exception {
+		stub = new DashScopeStubServer()
+				.latency(Long.getLong("loadtest.stub.median-ms", 2000), doubleProperty("loadtest.stub.sigma", 0.5))
+				.generationSpeed(doubleProperty("loadtest.stub.tokens-per-second", 0))
+				.errorRate(doubleProperty("loadtest.stub.error-rate", 0))
+				.throttleRate(doubleProperty("loadtest.stub.throttle-rate", 0))
+				.truncateRate(doubleProperty("loadtest.stub.truncate-rate", 0))
+				.chunkSize(Integer.getInteger("loadtest.stub.chunk-size", 24));
+		registry.add("qwen.api.url", stub::url);
+	}
+
+	@AfterAll
+	static void stopStub() {
+		if (stub != null) {
+			stub.close();
+		}
+	}
+
+	@BeforeEach
+	void authenticate() {
+		when(jwtValidator.validateTokenAndGetUserId(anyString())).thenReturn(UUID.randomUUID());
+	}
+
+	@Test
+	void aiEndpointsUnderLoad() throws Exception {
+		String endpoint = System.getProperty("loadtest.endpoint", "generate");
+		int concurrency = Integer.getInteger("loadtest.concurrency", 500);
+		int total = Integer.getInteger("loadtest.requests", concurrency * 2);
+
+		AtomicLongArray latencies = new AtomicLongArray(total);
+		AtomicLongArray firstByte = new AtomicLongArray(total);
+		Map<String, LongAdder> statuses = new ConcurrentHashMap<>();
+		Saturation saturation = new Saturation();
+
+		HttpClient client = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_1_1)
+				.connectTimeout(Duration.ofSeconds(10))
+				.build();
+		ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+		ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+		sampler.scheduleAtFixedRate(saturation::sample, 0, 100, TimeUnit.MILLISECONDS);
+
+		AtomicInteger next = new AtomicInteger();
+		long start = System.nanoTime();
+		for (int c = 0; c < concurrency; c++) {
+			clients.execute(() -> {
+				int i;
+				while ((i = next.getAndIncrement()) < total) {
+					long requestStart = System.nanoTime();
+					String status;
+					try {
+						HttpResponse<InputStream> response = client.send(request(endpoint, i),
+								HttpResponse.BodyHandlers.ofInputStream());
+						try (InputStream body = response.body()) {
+							int first = body.read();
+							firstByte.set(i, System.nanoTime() - requestStart);
+							if (first >= 0) {
+								body.transferTo(OutputStream.nullOutputStream());
+							}
+						}
+						status = String.valueOf(response.statusCode());
+					} catch (Exception e) {
+						status = e.getClass().getSimpleName();
+					}
+					latencies.set(i, System.nanoTime() - requestStart);
+					statuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+				}
+			});
+		}
+		clients.shutdown();
+		assertTrue(clients.awaitTermination(30, TimeUnit.MINUTES), "压测未在 30 分钟内完成");
+		long elapsed = System.nanoTime() - start;
+		sampler.shutdownNow();
+		saturation.sample();
+
+		long[] sorted = toSortedMillis(latencies);
+		long[] sortedFirstByte = toSortedMillis(firstByte);
+		Map<String, Long> statusCounts = new TreeMap<>();
+		statuses.forEach((status, count) -> statusCounts.put(status, count.sum()));
+		long success = statusCounts.getOrDefault("200", 0L);
+
+		System.out.println("===== AI 调用路径压测: " + endpoint + " =====");
+		System.out.printf("请求 %d, 并发 %d, 耗时 %.1fs, 吞吐 %.1f req/s%n",
+				total, concurrency, elapsed / 1e9, total / (elapsed / 1e9));
+		System.out.println("状态: " + statusCounts);
+		System.out.printf("延迟(ms) p50=%d p95=%d p99=%d max=%d%n",
+				percentile(sorted, 0.5), percentile(sorted, 0.95), percentile(sorted, 0.99), sorted[sorted.length - 1]);
+		System.out.printf("首字节(ms) p50=%d p95=%d p99=%d%n",
+				percentile(sortedFirstByte, 0.5), percentile(sortedFirstByte, 0.95), percentile(sortedFirstByte, 0.99));
+		System.out.printf("aiTaskExecutor 活跃线程峰值 %d/%d, 队列峰值 %d%n",
+				saturation.maxActive, aiTaskExecutor.getMaxPoolSize(), saturation.maxQueued);
+		System.out.printf("通义千问并发上限 %d (最低 %d), 在途峰值 %d, 排队峰值 %d, 限流拒绝 %d%n",
+				qwenLimiter.getLimit(), saturation.minLimit, saturation.maxInFlight, saturation.maxLimiterQueue,
+				qwenLimiter.getRejected());
+		System.out.printf("JVM 线程峰值 %d%n", saturation.maxThreads);
+		System.out.printf("桩服务: 请求 %d, 500 错误 %d, 429 限流 %d, 截断 %d%n",
+				stub.getRequests(), stub.getErrors(), stub.getThrottled(), stub.getTruncated());
+
+		Long maxP95 = Long.getLong("loadtest.max-p95-ms");
+		if (maxP95 != null) {
+			assertTrue(percentile(sorted, 0.95) <= maxP95, "p95 延迟超过门槛 " + maxP95 + "ms");
+		}
+		double minSuccessRate = doubleProperty("loadtest.min-success-rate", 0);
+		assertTrue((double) success / total >= minSuccessRate, "成功率低于门槛 " + minSuccessRate);
+	}
+
+	/**
+	 * 每个请求使用不同的额外要求,避免命中计划缓存和请求合并
+	 */
+	private HttpRequest request(String endpoint, int i) throws Exception {
+		String path;
+		Object body;
+		switch (endpoint) {
+			case "parse" -> {
+				path = "/api/ai/parse-input";
+				body = Map.of("userInput", "下个月和朋友去成都玩几天，想吃火锅 #" + i);
+			}
+			case "stream" -> {
+				path = "/api/ai/generate-plan/stream";
+				body = planRequest(i);
+			}
+			default -> {
+				path = "/api/ai/generate-plan";
+				body = planRequest(i);
+			}
+		}
+		return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + path))
+				.timeout(Duration.ofSeconds(200))
+				.header("Content-Type", "application/json")
+				.header("Authorization", "Bearer load-test")
+				.POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+				.build();
+	}
+
+	private Map<String, Object> planRequest(int i) {
+		return Map.of(
+				"userInput", "成都三日游，美食和文化",
+				"destination", "成都",
+				"duration", 3,
+				"budget", 3000,
+				"travelers", 2,
+				"preferences", "美食,文化",
+				"additionalRequirements", "压测请求 #" + i,
+				"generationMode", "single");
+	}
+
+	private static long[] toSortedMillis(AtomicLongArray nanos) {
+		long[] values = new long[nanos.length()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = TimeUnit.NANOSECONDS.toMillis(nanos.get(i));
+		}
+		Arrays.sort(values);
+		return values;
+	}
+
+	private static long percentile(long[] sorted, double q) {
+		int index = (int) Math.ceil(q * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+	}
+
+	private static double doubleProperty(String name, double defaultValue) {
+		String value = System.getProperty(name);
+		return value == null ? defaultValue : Double.parseDouble(value);
+	}
+
+	/**
+	 * 线程池、并发限制和 JVM 线程数的峰值
+	 */
+	private class Saturation {
+
+		private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		private volatile int maxActive;
+		private volatile int maxQueued;
+		private volatile int maxInFlight;
+		private volatile int maxLimiterQueue;
+		private volatile int minLimit = Integer.MAX_VALUE;
+		private volatile int maxThreads;
+
+		private synchronized void sample() {
+			maxActive = Math.max(maxActive, aiTaskExecutor.getActiveCount());
+			maxQueued = Math.max(maxQueued, aiTaskExecutor.getThreadPoolExecutor().getQueue().size());
+			maxInFlight = Math.max(maxInFlight, qwenLimiter.getInFlight());
+			maxLimiterQueue = Math.max(maxLimiterQueue, qwenLimiter.getQueueDepth());
+			minLimit = Math.min(minLimit, qwenLimiter.getLimit());
+			maxThreads = Math.max(maxThreads, threads.getThreadCount());
+		}
+	}
+}
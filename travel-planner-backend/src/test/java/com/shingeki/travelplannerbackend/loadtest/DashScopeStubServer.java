@@ -0,0 +1,294 @@
+package com.shingeki.travelplannerbackend.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * DashScope 兼容的本地桩服务,离线测试 AI 调用路径
+ * 可配置延迟分布(对数正态)、生成速度、错误率、限流率、截断输出和流式分块;
+ * 按提示词返回录制的紧凑/完整格式计划或用户输入解析结果
+ */
+public class DashScopeStubServer implements AutoCloseable {
+
+	private static final String PATH = "/api/v1/services/aigc/text-generation/generation";
+
+	private final HttpServer server;
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private final String compactPlan;
+	private final String verbosePlan;
+	private final String parseResult;
+
+	private volatile long medianLatencyMs = 2000;
+	private volatile double latencySigma = 0.5;
+	private volatile double tokensPerSecond;
+	private volatile double errorRate;
+	private volatile double throttleRate;
+	private volatile double truncateRate;
+	private volatile int chunkSize = 24;
+
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong errors = new AtomicLong();
+	private final AtomicLong throttled = new AtomicLong();
+	private final AtomicLong truncated = new AtomicLong();
+	private final AtomicLong outputTokens = new AtomicLong();
+
+	public DashScopeStubServer() throws IOException {
+		compactPlan = resource("/ai/recorded-plan-compact.txt");
+		verbosePlan = resource("/ai/recorded-plan-verbose.txt");
+		parseResult = objectMapper.writeValueAsString(Map.of(
+				"destination", "成都",
+				"duration", 3,
+				"budget", 3000,
+				"travelers", 2,
+				"preferences", List.of("美食", "文化")));
+
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+		server.createContext(PATH, this::handle);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	/**
+	 * qwen.api.url 使用的地址
+	 */
+	public String url() {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + PATH;
+	}
+
+	/**
+	 * 单次调用总耗时的中位数和对数正态分布的 sigma(越大长尾越明显)
+	 */
+	public DashScopeStubServer latency(long medianMs, double sigma) {
+		this.medianLatencyMs = medianMs;
+		this.latencySigma = sigma;
+		return this;
+	}
+
+	/**
+	 * 按输出长度计算耗时:大于 0 时 latency 为首 token 延迟,之后按每秒 tokensPerSecond 个 token 输出,
+	 * 输出越长总耗时越长;0 表示 latency 为总耗时,与输出长度无关
+	 */
+	public DashScopeStubServer generationSpeed(double tokensPerSecond) {
+		this.tokensPerSecond = tokensPerSecond;
+		return this;
+	}
+
+	/**
+	 * 返回 500 的比例
+	 */
+	public DashScopeStubServer errorRate(double errorRate) {
+		this.errorRate = errorRate;
+		return this;
+	}
+
+	/**
+	 * 返回 429 的比例
+	 */
+	public DashScopeStubServer throttleRate(double throttleRate) {
+		this.throttleRate = throttleRate;
+		return this;
+	}
+
+	/**
+	 * 输出在中途截断的比例
+	 */
+	public DashScopeStubServer truncateRate(double truncateRate) {
+		this.truncateRate = truncateRate;
+		return this;
+	}
+
+	/**
+	 * 流式输出每段的字符数
+	 */
+	public DashScopeStubServer chunkSize(int chunkSize) {
+		this.chunkSize = Math.max(1, chunkSize);
+		return this;
+	}
+
+	public long getRequests() {
+		return requests.get();
+	}
+
+	public long getErrors() {
+		return errors.get();
+	}
+
+	public long getThrottled() {
+		return throttled.get();
+	}
+
+	public long getTruncated() {
+		return truncated.get();
+	}
+
+	/**
+	 * 成功返回的输出 token 数(按字符数估算,与 usage 一致)
+	 */
+	public long getOutputTokens() {
+		return outputTokens.get();
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			requests.incrementAndGet();
+			JsonNode body = objectMapper.readTree(exchange.getRequestBody().readAllBytes());
+			String prompt = body.path("input").path("messages").path(0).path("content").asText();
+			boolean stream = "enable".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("X-DashScope-SSE"));
+
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			long latency = sampleLatency(random);
+			double roll = random.nextDouble();
+			if (roll < errorRate) {
+				errors.incrementAndGet();
+				sleep(latency);
+				sendError(exchange, 500, "InternalError", "stub internal error");
+				return;
+			}
+			if (roll < errorRate + throttleRate) {
+				throttled.incrementAndGet();
+				sendError(exchange, 429, "Throttling.RateQuota", "stub rate limited");
+				return;
+			}
+
+			String content = contentFor(prompt);
+			if (random.nextDouble() < truncateRate) {
+				truncated.incrementAndGet();
+				content = content.substring(0, (int) (content.length() * random.nextDouble(0.3, 0.9)));
+			}
+
+			outputTokens.addAndGet(estimateTokens(content));
+
+			long firstTokenDelay;
+			long generationTime;
+			if (tokensPerSecond > 0) {
+				firstTokenDelay = latency;
+				generationTime = Math.round(estimateTokens(content) * 1000 / tokensPerSecond);
+			} else {
+				firstTokenDelay = latency / 10;
+				generationTime = latency - firstTokenDelay;
+			}
+			if (stream) {
+				sendStream(exchange, prompt, content, firstTokenDelay, generationTime);
+			} else {
+				sleep(firstTokenDelay + generationTime);
+				sendJson(exchange, 200, responseBody(content, usage(prompt, content)));
+			}
+		}
+	}
+
+	/**
+	 * 流式输出:首段在首 token 延迟后返回,其余分段均匀分布在生成时间内
+	 */
+	private void sendStream(HttpExchange exchange, String prompt, String content,
+							long firstTokenDelay, long generationTime) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", "text/event-stream;charset=UTF-8");
+		exchange.sendResponseHeaders(200, 0);
+
+		int chunks = Math.max(1, (content.length() + chunkSize - 1) / chunkSize);
+		long chunkDelay = generationTime / chunks;
+		sleep(firstTokenDelay);
+
+		OutputStream out = exchange.getResponseBody();
+		for (int i = 0; i < chunks; i++) {
+			String chunk = content.substring(i * chunkSize, Math.min(content.length(), (i + 1) * chunkSize));
+			Map<String, Object> usage = usage(prompt, content.substring(0, Math.min(content.length(), (i + 1) * chunkSize)));
+			String event = "id:" + (i + 1) + "\nevent:result\n:HTTP_STATUS/200\ndata:"
+					+ objectMapper.writeValueAsString(responseBody(chunk, usage)) + "\n\n";
+			out.write(event.getBytes(StandardCharsets.UTF_8));
+			out.flush();
+			if (i < chunks - 1) {
+				sleep(chunkDelay);
+			}
+		}
+	}
+
+	private String contentFor(String prompt) {
+		if (prompt.contains("\"s\":\"行程概述\"")) {
+			return compactPlan;
+		}
+		if (prompt.contains("\"dailyPlans\"")) {
+			return verbosePlan;
+		}
+		return parseResult;
+	}
+
+	private long sampleLatency(ThreadLocalRandom random) {
+		return Math.round(medianLatencyMs * Math.exp(latencySigma * random.nextGaussian()));
+	}
+
+	private Map<String, Object> responseBody(String content, Map<String, Object> usage) {
+		Map<String, Object> message = new LinkedHashMap<>();
+		message.put("role", "assistant");
+		message.put("content", content);
+		Map<String, Object> body = new LinkedHashMap<>();
+		body.put("output", Map.of("choices", List.of(Map.of("message", message, "finish_reason", "stop"))));
+		body.put("usage", usage);
+		body.put("request_id", "stub-" + requests.get());
+		return body;
+	}
+
+	/**
+	 * 按字符数粗略估算 token 用量
+	 */
+	private Map<String, Object> usage(String prompt, String content) {
+		return Map.of("input_tokens", prompt.length() / 2, "output_tokens", estimateTokens(content));
+	}
+
+	private static int estimateTokens(String content) {
+		return content.length() / 2;
+	}
+
+	private void sendError(HttpExchange exchange, int status, String code, String message) throws IOException {
+		sendJson(exchange, status, Map.of("code", code, "message", message, "request_id", "stub-" + requests.get()));
+	}
+
+	private void sendJson(HttpExchange exchange, int status, Object body) throws IOException {
+		byte[] bytes = objectMapper.writeValueAsBytes(body);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, bytes.length);
+		exchange.getResponseBody().write(bytes);
+	}
+
+	private void sleep(long millis) {
+		if (millis <= 0) {
+			return;
+		}
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static String resource(String name) throws IOException {
+		try (InputStream in = DashScopeStubServer.class.getResourceAsStream(name)) {
+			if (in == null) {
+				throw new IOException("找不到测试资源: " + name);
+			}
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8).trim();
+		}
+	}
+}
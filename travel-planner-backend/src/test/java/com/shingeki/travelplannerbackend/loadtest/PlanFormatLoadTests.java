@@ -0,0 +1,171 @@
+package com.shingeki.travelplannerbackend.loadtest;
+
+import com.shingeki.travelplannerbackend.dto.GeneratePlanRequest;
+import com.shingeki.travelplannerbackend.dto.GeneratedPlanResponse;
+import com.shingeki.travelplannerbackend.repository.AIGenerationJobRepository;
+import com.shingeki.travelplannerbackend.repository.AmapCacheRepository;
+import com.shingeki.travelplannerbackend.repository.TravelPlanRepository;
+import com.shingeki.travelplannerbackend.security.SupabaseJwtValidator;
+import com.shingeki.travelplannerbackend.service.AIService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 计划输出格式的端到端耗时对比:完整格式和紧凑格式分别调用 generateTravelPlan,
+ * 桩服务返回录制的计划,耗时 = 首 token 延迟 + 输出 token 数 / 生成速度,与真实模型一样随输出长度增加
+ * 与 AIPathLoadTests 一起通过 loadtest 配置运行:
+ *
+ * <pre>
+ * mvn test -Ploadtest -Dloadtest.format.rounds=5 -Dloadtest.stub.tokens-per-second=60
+ * </pre>
+ *
+ * 可选参数:
+ * loadtest.format.rounds - 每种格式的生成次数(并发执行);
+ * loadtest.stub.first-token-ms、loadtest.stub.sigma - 首 token 延迟分布;
+ * loadtest.stub.tokens-per-second - 生成速度
+ */
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+@SpringBootTest(properties = {
+		"spring.autoconfigure.exclude="
+				+ "org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration,"
+				+ "org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration,"
+				+ "org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration",
+		"ai.jobs.worker.enabled=false",
+		"ai.plan-cache.disk-dir=",
+		"qwen.api.key=stub-key"
+})
+class PlanFormatLoadTests {
+
+	private static DashScopeStubServer stub;
+
+	@MockitoBean
+	private TravelPlanRepository travelPlanRepository;
+
+	@MockitoBean
+	private AIGenerationJobRepository jobRepository;
+
+	@MockitoBean
+	private AmapCacheRepository amapCacheRepository;
+
+	@MockitoBean
+	private PlatformTransactionManager transactionManager;
+
+	@MockitoBean
+	private SupabaseJwtValidator jwtValidator;
+
+	@Autowired
+	private AIService aiService;
+
+	@DynamicPropertySource
+	static void stubProperties(DynamicPropertyRegistry registry) throws Exception {
+		stub = new DashScopeStubServer()
+				.latency(Long.getLong("loadtest.stub.first-token-ms", 800), doubleProperty("loadtest.stub.sigma", 0.2))
+				.generationSpeed(doubleProperty("loadtest.stub.tokens-per-second", 100));
+		registry.add("qwen.api.url", stub::url);
+	}
+
+	@AfterAll
+	static void stopStub() {
+		if (stub != null) {
+			stub.close();
+		}
+	}
+
+	@Test
+	void compactFormatFinishesFaster() throws Exception {
+		int rounds = Integer.getInteger("loadtest.format.rounds", 3);
+
+		Result verbose = run("verbose", rounds);
+		Result compact = run("compact", rounds);
+
+		System.out.println("===== 计划输出格式端到端耗时 =====");
+		System.out.printf("每种格式 %d 次, 生成速度 %.0f token/s%n",
+				rounds, doubleProperty("loadtest.stub.tokens-per-second", 100));
+		for (Result result : List.of(verbose, compact)) {
+			System.out.printf("%-8s 输出 token/次 %5d, 耗时(ms) p50=%d max=%d%n",
+					result.format, result.outputTokens / rounds, result.p50(), result.max());
+		}
+
+		assertTrue(compact.outputTokens < verbose.outputTokens, "紧凑格式的输出 token 应少于完整格式");
+		assertTrue(compact.p50() < verbose.p50(), "紧凑格式的端到端耗时应短于完整格式");
+	}
+
+	/**
+	 * 使用指定输出格式并发生成 rounds 次,每次的额外要求不同,避免命中计划缓存和请求合并
+	 */
+	private Result run(String format, int rounds) throws Exception {
+		ReflectionTestUtils.setField(aiService, "planOutputFormat", format);
+		long tokensBefore = stub.getOutputTokens();
+
+		ExecutorService callers = Executors.newFixedThreadPool(rounds);
+		try {
+			List<Future<Long>> futures = new ArrayList<>();
+			for (int i = 0; i < rounds; i++) {
+				GeneratePlanRequest request = planRequest(format + " #" + i);
+				futures.add(callers.submit(() -> {
+					long start = System.nanoTime();
+					GeneratedPlanResponse response = aiService.generateTravelPlan(request);
+					assertFalse(response.isFallback(), "不应返回降级计划");
+					assertEquals(3, response.getDailyPlans().size());
+					return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+				}));
+			}
+			long[] millis = new long[rounds];
+			for (int i = 0; i < rounds; i++) {
+				millis[i] = futures.get(i).get(5, TimeUnit.MINUTES);
+			}
+			Arrays.sort(millis);
+			return new Result(format, millis, stub.getOutputTokens() - tokensBefore);
+		} finally {
+			callers.shutdownNow();
+		}
+	}
+
+	private GeneratePlanRequest planRequest(String tag) {
+		GeneratePlanRequest request = new GeneratePlanRequest();
+		request.setUserInput("成都三日游，美食和文化");
+		request.setDestination("成都");
+		request.setDuration(3);
+		request.setBudget(new BigDecimal("3000"));
+		request.setTravelers(2);
+		request.setPreferences("美食,文化");
+		request.setAdditionalRequirements("格式对比 " + tag);
+		request.setGenerationMode("single");
+		return request;
+	}
+
+	private static double doubleProperty(String name, double defaultValue) {
+		String value = System.getProperty(name);
+		return value == null ? defaultValue : Double.parseDouble(value);
+	}
+
+	private record Result(String format, long[] sortedMillis, long outputTokens) {
+
+		long p50() {
+			return sortedMillis[(sortedMillis.length - 1) / 2];
+		}
+
+		long max() {
+			return sortedMillis[sortedMillis.length - 1];
+		}
+	}
+}
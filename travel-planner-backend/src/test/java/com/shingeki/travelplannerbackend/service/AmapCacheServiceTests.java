@@ -0,0 +1,90 @@
+package com.shingeki.travelplannerbackend.service;
+
+import com.shingeki.travelplannerbackend.entity.AmapCacheEntry;
+import com.shingeki.travelplannerbackend.repository.AmapCacheRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AmapCacheServiceTests {
+
+	private static final String FOUND = "{\"status\":\"1\",\"count\":\"1\",\"pois\":[{\"location\":\"116.397,39.917\"}]}";
+	private static final String NOT_FOUND = "{\"status\":\"1\",\"count\":\"0\",\"pois\":[]}";
+	private static final String OVER_QPS = "{\"status\":\"0\",\"info\":\"CUQPS_HAS_EXCEEDED_THE_LIMIT\",\"infocode\":\"10021\"}";
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	@Test
+	void normalizesKeys() {
+		assertEquals(AmapCacheService.keyOf("search", "故宫", "北京市"),
+				AmapCacheService.keyOf("search", " 故宫 ", "北京"));
+		assertNotEquals(AmapCacheService.keyOf("search", "故宫", "北京"),
+				AmapCacheService.keyOf("geocode", "故宫", "北京"));
+	}
+
+	@Test
+	void cachesResultsAndEmptyResultsButNotRateLimitErrors() {
+		AmapCacheRepository repository = mock(AmapCacheRepository.class);
+		when(repository.findById(anyString())).thenReturn(Optional.empty());
+		AmapCacheService cache = cache(repository);
+		AtomicInteger calls = new AtomicInteger();
+
+		for (int i = 0; i < 3; i++) {
+			assertEquals(FOUND, cache.get("search", "found", () -> respond(calls, FOUND)));
+			assertEquals(NOT_FOUND, cache.get("search", "missing", () -> respond(calls, NOT_FOUND)));
+			assertEquals(OVER_QPS, cache.get("search", "limited", () -> respond(calls, OVER_QPS)));
+		}
+
+		// 有结果和没有结果的各调用一次,超限的每次都调用
+		assertEquals(5, calls.get());
+		verify(repository).upsert(eq("found"), eq("search"), eq(FOUND), any());
+		verify(repository).upsert(eq("missing"), eq("search"), eq(NOT_FOUND), any());
+		verify(repository, never()).upsert(eq("limited"), any(), any(), any());
+		assertEquals(4.0 / 9, cache.hitRatio(), 1e-9);
+	}
+
+	@Test
+	void servesPersistentTierAndStaleEntryOnRateLimit() {
+		AmapCacheRepository repository = mock(AmapCacheRepository.class);
+		when(repository.findById("fresh")).thenReturn(Optional.of(entry("fresh", LocalDateTime.now().plusHours(1))));
+		when(repository.findById("expired")).thenReturn(Optional.of(entry("expired", LocalDateTime.now().minusHours(1))));
+		AmapCacheService cache = cache(repository);
+		AtomicInteger calls = new AtomicInteger();
+
+		assertEquals(FOUND, cache.get("search", "fresh", () -> respond(calls, OVER_QPS)));
+		assertEquals(FOUND, cache.get("search", "expired", () -> respond(calls, OVER_QPS)));
+		assertEquals(FOUND, cache.get("search", "expired", () -> {
+			throw new RuntimeException("连接超时");
+		}));
+
+		assertEquals(1, calls.get());
+		assertEquals(2, registry.get("amap.cache.requests").tag("result", "stale").counter().count());
+	}
+
+	private AmapCacheService cache(AmapCacheRepository repository) {
+		return new AmapCacheService(repository, registry, true, 100, Duration.ofDays(7), Duration.ofHours(1),
+				true, Duration.ofDays(7));
+	}
+
+	private static AmapCacheEntry entry(String key, LocalDateTime expiresAt) {
+		AmapCacheEntry entry = new AmapCacheEntry();
+		entry.setCacheKey(key);
+		entry.setApi("search");
+		entry.setResponse(FOUND);
+		entry.setExpiresAt(expiresAt);
+		return entry;
+	}
+
+	private static String respond(AtomicInteger calls, String response) {
+		calls.incrementAndGet();
+		return response;
+	}
+}
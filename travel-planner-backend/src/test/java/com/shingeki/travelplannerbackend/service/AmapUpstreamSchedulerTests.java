@@ -0,0 +1,129 @@
+package com.shingeki.travelplannerbackend.service;
+
+import com.shingeki.travelplannerbackend.security.CurrentUser;
+import com.shingeki.travelplannerbackend.support.LimitExceededException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AmapUpstreamSchedulerTests {
+
+	private static final String OK = "{\"status\":\"1\",\"count\":\"1\",\"pois\":[{\"location\":\"104.053,30.669\"}]}";
+	private static final String OVER_QPS = "{\"status\":\"0\",\"info\":\"CUQPS_HAS_EXCEEDED_THE_LIMIT\",\"infocode\":\"10021\"}";
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	@Test
+	void retriesOnAnotherKeyWhenRateLimited() {
+		AmapUpstreamScheduler scheduler = scheduler("k1,k2", 100, Duration.ofSeconds(1));
+		List<String> used = new ArrayList<>();
+
+		String response = scheduler.execute(key -> {
+			used.add(key);
+			return key.equals("k1") ? OVER_QPS : OK;
+		});
+		assertEquals(OK, response);
+		assertEquals(List.of("k1", "k2"), used);
+
+		// k1 冷却中,只用 k2
+		scheduler.execute(key -> {
+			used.add(key);
+			return OK;
+		});
+		assertEquals(List.of("k1", "k2", "k2"), used);
+		assertEquals(1, registry.counter("amap.upstream.throttled", "key", "key1", "reason", "rate_limited").count());
+	}
+
+	@Test
+	void servesUsersInTurn() throws Exception {
+		// 每 200ms 一个令牌:用户 A 先排 5 个调用,用户 B 后到的调用不必等 A 全部完成
+		UUID userA = UUID.randomUUID();
+		UUID userB = UUID.randomUUID();
+		assertServedInTurn(task -> start(userA, null, task), task -> start(userB, null, task));
+	}
+
+	@Test
+	void servesAnonymousClientsInTurnByAddress() throws Exception {
+		// 未登录的请求按客户端地址排队,不会都挤在同一个匿名队列里
+		assertServedInTurn(task -> start(null, "10.0.0.1", task), task -> start(null, "10.0.0.2", task));
+	}
+
+	@Test
+	void rejectsAfterDeadline() {
+		AmapUpstreamScheduler scheduler = scheduler("k1", 1, Duration.ofMillis(100));
+		assertEquals(OK, scheduler.execute(key -> OK));
+
+		assertThrows(LimitExceededException.class, () -> scheduler.execute(key -> OK));
+		assertEquals(1, registry.counter("amap.upstream.throttled", "key", "all", "reason", "deadline").count());
+	}
+
+	@Test
+	void deadlineStartsAtSubmission() throws Exception {
+		AmapUpstreamScheduler scheduler = scheduler("k1", 100, Duration.ofMillis(100));
+		AtomicBoolean called = new AtomicBoolean();
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+
+		// 提交后在线程池里排队超过 max-wait,执行时不再调用高德
+		Runnable task = AmapUpstreamScheduler.propagateSubmitTime(() -> {
+			try {
+				scheduler.execute(key -> {
+					called.set(true);
+					return OK;
+				});
+			} catch (RuntimeException e) {
+				failure.set(e);
+			}
+		});
+		Thread.sleep(150);
+		task.run();
+
+		assertInstanceOf(LimitExceededException.class, failure.get());
+		assertFalse(called.get());
+	}
+
+	private AmapUpstreamScheduler scheduler(String keys, double qps, Duration maxWait) {
+		return new AmapUpstreamScheduler(registry, keys, "", qps, 1, maxWait, 100,
+				Duration.ofSeconds(10), Duration.ofMinutes(10), 3, Duration.ofSeconds(30));
+	}
+
+	private void assertServedInTurn(Function<Runnable, Thread> callerA, Function<Runnable, Thread> callerB)
+			throws Exception {
+		AmapUpstreamScheduler scheduler = scheduler("k1", 5, Duration.ofSeconds(5));
+		List<String> order = new CopyOnWriteArrayList<>();
+
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			threads.add(callerA.apply(() -> scheduler.execute(key -> {
+				order.add("A");
+				return OK;
+			})));
+		}
+		Thread.sleep(100);
+		threads.add(callerB.apply(() -> scheduler.execute(key -> {
+			order.add("B");
+			return OK;
+		})));
+		for (Thread thread : threads) {
+			thread.join(5000);
+		}
+
+		assertEquals(6, order.size());
+		assertTrue(order.indexOf("B") <= 2, order.toString());
+	}
+
+	private static Thread start(UUID userId, String clientAddress, Runnable task) {
+		Thread thread = new Thread(CurrentUser.wrap(userId, clientAddress, task));
+		thread.start();
+		return thread;
+	}
+}
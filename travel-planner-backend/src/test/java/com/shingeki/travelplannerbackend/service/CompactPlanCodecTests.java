@@ -0,0 +1,94 @@
+package com.shingeki.travelplannerbackend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shingeki.travelplannerbackend.dto.GeneratedPlanResponse;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 紧凑输出格式测试:与完整格式解析出相同的计划,且输出 token 数更少
+ * 使用录制的同一份计划的两种输出(src/test/resources/ai);解析耗时对比见 travel-planner-benchmarks 的 PlanStreamBenchmark
+ */
+class CompactPlanCodecTests {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Test
+	void compactOutputExpandsToSamePlan() throws Exception {
+		GeneratedPlanResponse verbose = parse(load("recorded-plan-verbose.txt"), false);
+		GeneratedPlanResponse compact = parse(load("recorded-plan-compact.txt"), true);
+
+		assertEquals(3, compact.getDailyPlans().size());
+		assertEquals("restaurant", compact.getDailyPlans().get(0).getActivities().get(1).getType());
+		assertEquals(objectMapper.valueToTree(verbose), objectMapper.valueToTree(compact));
+	}
+
+	@Test
+	void compactOutputParsesSameWhenStreamedInChunks() throws Exception {
+		String compact = load("recorded-plan-compact.txt");
+		GeneratedPlanResponse whole = parse(compact, true);
+
+		PlanStreamParser parser = new PlanStreamParser(objectMapper, dayPlan -> {
+		}, (day, activity) -> {
+		}, true);
+		for (String chunk : split(compact, 7)) {
+			parser.feed(chunk);
+		}
+		assertTrue(parser.isComplete());
+		assertEquals(objectMapper.valueToTree(whole), objectMapper.valueToTree(parser.finish()));
+	}
+
+	@Test
+	void compactOutputNeedsFewerTokens() throws Exception {
+		int verboseTokens = estimateTokens(load("recorded-plan-verbose.txt"));
+		int compactTokens = estimateTokens(load("recorded-plan-compact.txt"));
+
+		assertTrue(compactTokens < verboseTokens * 0.75,
+				"紧凑格式应至少减少 25% 的输出 token: " + compactTokens + " / " + verboseTokens);
+	}
+
+	/**
+	 * 粗略估算 token 数:汉字约 1 个 token,其余字符约 4 个一个 token
+	 */
+	private int estimateTokens(String text) {
+		int cjk = 0;
+		int other = 0;
+		for (int i = 0; i < text.length(); i++) {
+			if (Character.UnicodeScript.of(text.charAt(i)) == Character.UnicodeScript.HAN) {
+				cjk++;
+			} else {
+				other++;
+			}
+		}
+		return cjk + (other + 3) / 4;
+	}
+
+	private String[] split(String text, int size) {
+		int count = (text.length() + size - 1) / size;
+		String[] chunks = new String[count];
+		for (int i = 0; i < count; i++) {
+			chunks[i] = text.substring(i * size, Math.min(text.length(), (i + 1) * size));
+		}
+		return chunks;
+	}
+
+	private GeneratedPlanResponse parse(String output, boolean compact) {
+		PlanStreamParser parser = new PlanStreamParser(objectMapper, dayPlan -> {
+		}, (day, activity) -> {
+		}, compact);
+		parser.feed(output);
+		assertTrue(parser.isComplete());
+		return parser.finish();
+	}
+
+	private String load(String name) throws Exception {
+		try (InputStream in = getClass().getResourceAsStream("/ai/" + name)) {
+			assertNotNull(in, name);
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package com.shingeki.travelplannerbackend.service;
+
+import com.shingeki.travelplannerbackend.dto.GeneratedPlanResponse;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 坐标补全测试,高德接口由本地桩服务模拟
+ */
+class ItineraryGeoEnricherTests {
+
+	private HttpServer stub;
+	private final Map<String, AtomicInteger> searches = new ConcurrentHashMap<>();
+	private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	@BeforeEach
+	void start() throws Exception {
+		stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		stub.createContext("/v3/place/text", exchange -> {
+			String keywords = param(exchange.getRequestURI().getRawQuery(), "keywords");
+			searches.computeIfAbsent(keywords, k -> new AtomicInteger()).incrementAndGet();
+			String body = switch (keywords) {
+				case "宽窄巷子" -> "{\"status\":\"1\",\"pois\":[{\"location\":\"104.053,30.669\"}]}";
+				case "熊猫基地" -> "{\"status\":\"1\",\"pois\":[{\"location\":\"104.146,30.733\"}]}";
+				default -> "{\"status\":\"1\",\"pois\":[]}";
+			};
+			respond(exchange, body);
+		});
+		stub.createContext("/v3/geocode/geo", exchange -> respond(exchange, "{\"status\":\"1\",\"geocodes\":[]}"));
+		stub.start();
+
+		executor.setCorePoolSize(4);
+		executor.initialize();
+	}
+
+	@AfterEach
+	void stop() {
+		stub.stop(0);
+		executor.shutdown();
+	}
+
+	@Test
+	void fillsCoordinatesOncePerDistinctLocation() {
+		GeneratedPlanResponse plan = plan(
+				activity("宽窄巷子"), activity("熊猫基地"), activity("宽窄巷子"), activity("不存在的地方"), activity(null));
+
+		ItineraryGeoEnricher enricher = enricher();
+		enricher.enrich(plan, "成都");
+		enricher.enrich(plan(activity("宽窄巷子")), "成都");
+
+		List<GeneratedPlanResponse.Activity> activities = plan.getDailyPlans().get(0).getActivities();
+		assertEquals(30.669, activities.get(0).getCoordinate().getLatitude());
+		assertEquals(104.053, activities.get(0).getCoordinate().getLongitude());
+		assertEquals(30.733, activities.get(1).getCoordinate().getLatitude());
+		assertNotNull(activities.get(2).getCoordinate());
+		assertNull(activities.get(3).getCoordinate());
+		assertNull(activities.get(4).getCoordinate());
+		// 相同地点只查询一次,第二个计划命中缓存
+		assertEquals(1, searches.get("宽窄巷子").get());
+		assertEquals(1, searches.get("不存在的地方").get());
+	}
+
+	private ItineraryGeoEnricher enricher() {
+		AmapCacheService cacheService = new AmapCacheService(null, registry, true, 100, Duration.ofHours(1),
+				Duration.ofMinutes(1), false, Duration.ofDays(1));
+		PoiIndex poiIndex = new PoiIndex(registry, true, 100, 5000, "");
+		AmapUpstreamScheduler scheduler = new AmapUpstreamScheduler(registry, "", "test-key", 100, 100,
+				Duration.ofSeconds(1), 100, Duration.ofSeconds(1), Duration.ofMinutes(10), 3, Duration.ofSeconds(30));
+		AmapService amapService = new AmapService(new RestTemplate(), cacheService, poiIndex, scheduler,
+				"http://127.0.0.1:" + stub.getAddress().getPort(), DataSize.ofKilobytes(64));
+		return new ItineraryGeoEnricher(amapService, executor, registry, true, Duration.ofSeconds(5));
+	}
+
+	private static GeneratedPlanResponse plan(GeneratedPlanResponse.Activity... activities) {
+		GeneratedPlanResponse.DayPlan dayPlan = new GeneratedPlanResponse.DayPlan();
+		dayPlan.setDay(1);
+		dayPlan.setActivities(List.of(activities));
+		GeneratedPlanResponse plan = new GeneratedPlanResponse();
+		plan.setDailyPlans(List.of(dayPlan));
+		return plan;
+	}
+
+	private static GeneratedPlanResponse.Activity activity(String location) {
+		GeneratedPlanResponse.Activity activity = new GeneratedPlanResponse.Activity();
+		activity.setTitle(location);
+		activity.setLocation(location);
+		return activity;
+	}
+
+	private static String param(String query, String name) {
+		for (String pair : query.split("&")) {
+			if (pair.startsWith(name + "=")) {
+				return URLDecoder.decode(pair.substring(name.length() + 1), StandardCharsets.UTF_8);
+			}
+		}
+		return "";
+	}
+
+	private static void respond(HttpExchange exchange, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(200, bytes.length);
+		exchange.getResponseBody().write(bytes);
+		exchange.close();
+	}
+}
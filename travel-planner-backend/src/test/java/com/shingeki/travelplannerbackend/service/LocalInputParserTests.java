@@ -0,0 +1,42 @@
+package com.shingeki.travelplannerbackend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalInputParserTests {
+
+	private final LocalInputParser parser = new LocalInputParser();
+
+	@Test
+	void parsesCommonInputLocally() {
+		LocalInputParser.Result result = parser.parse("去成都玩5天，预算4000，2个人");
+
+		assertTrue(result.confident());
+		assertEquals("成都", result.fields().get("destination"));
+		assertEquals(5, result.fields().get("duration"));
+		assertEquals(4000.0, result.fields().get("budget"));
+		assertEquals(2, result.fields().get("travelers"));
+	}
+
+	@Test
+	void parsesChineseNumeralsAndPreferences() {
+		LocalInputParser.Result result = parser.parse("一家三口想去杭州三日游，预算1.5万，喜欢美食和拍照");
+
+		assertTrue(result.confident());
+		assertEquals("杭州", result.fields().get("destination"));
+		assertEquals(3, result.fields().get("duration"));
+		assertEquals(15000.0, result.fields().get("budget"));
+		assertEquals(3, result.fields().get("travelers"));
+		assertEquals(List.of("美食", "摄影"), result.fields().get("preferences"));
+	}
+
+	@Test
+	void fallsBackWhenAmbiguous() {
+		assertFalse(parser.parse("去成都或者重庆玩5天").confident());
+		assertFalse(parser.parse("想出去玩几天").confident());
+		assertFalse(parser.parse("去西安玩4天，住的酒店要离地铁近，第二天晚上要看演出").confident());
+	}
+}
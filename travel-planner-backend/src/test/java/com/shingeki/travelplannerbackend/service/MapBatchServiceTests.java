@@ -0,0 +1,64 @@
+package com.shingeki.travelplannerbackend.service;
+
+import com.shingeki.travelplannerbackend.dto.MapBatchRequest;
+import com.shingeki.travelplannerbackend.dto.MapBatchResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MapBatchServiceTests {
+
+	private static final String FOUND = "{\"status\":\"1\",\"count\":\"1\",\"pois\":[{\"location\":\"104.053,30.669\"}]}";
+
+	@Test
+	void deduplicatesQueriesAndKeepsRequestOrder() {
+		AmapService amapService = mock(AmapService.class);
+		when(amapService.searchPlace(eq("宽窄巷子"), any())).thenReturn(FOUND);
+		when(amapService.searchPlace(eq("熊猫基地"), any())).thenThrow(new RuntimeException("高德 API 调用失败"));
+		MapBatchService service = new MapBatchService(amapService, new SimpleAsyncTaskExecutor(),
+				new SimpleMeterRegistry(), 10, Duration.ofSeconds(5));
+
+		List<MapBatchResponse.Result> results = service.search(List.of(
+				query("宽窄巷子", "成都"), query("熊猫基地", "成都"), query(" 宽窄巷子 ", "成都市"), query("", null)))
+				.join().getResults();
+
+		assertEquals(4, results.size());
+		assertEquals("ok", results.get(0).getStatus());
+		assertEquals(FOUND, results.get(0).getData());
+		assertEquals("error", results.get(1).getStatus());
+		assertEquals("ok", results.get(2).getStatus());
+		assertEquals(" 宽窄巷子 ", results.get(2).getQuery());
+		assertEquals("error", results.get(3).getStatus());
+		verify(amapService, times(1)).searchPlace(eq("宽窄巷子"), any());
+		verify(amapService, never()).searchPlace(eq(" 宽窄巷子 "), any());
+		verify(amapService, times(1)).searchPlace(eq("熊猫基地"), any());
+	}
+
+	@Test
+	void rejectsOversizedBatches() {
+		MapBatchService service = new MapBatchService(mock(AmapService.class), new SimpleAsyncTaskExecutor(),
+				new SimpleMeterRegistry(), 2, Duration.ofSeconds(5));
+		List<MapBatchRequest.Query> queries = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			queries.add(query("地点" + i, null));
+		}
+
+		assertThrows(IllegalArgumentException.class, () -> service.search(queries));
+		assertThrows(IllegalArgumentException.class, () -> service.geocode(List.of()));
+	}
+
+	private static MapBatchRequest.Query query(String text, String city) {
+		MapBatchRequest.Query query = new MapBatchRequest.Query();
+		query.setQuery(text);
+		query.setCity(city);
+		return query;
+	}
+}
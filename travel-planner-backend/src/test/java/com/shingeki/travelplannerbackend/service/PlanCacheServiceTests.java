@@ -0,0 +1,65 @@
+package com.shingeki.travelplannerbackend.service;
+
+import com.shingeki.travelplannerbackend.dto.GeneratePlanRequest;
+import com.shingeki.travelplannerbackend.dto.GeneratedPlanResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlanCacheServiceTests {
+
+	@TempDir
+	Path cacheDir;
+
+	@Test
+	void equivalentRequestsShareKey() {
+		PlanCacheService cache = newCache("");
+
+		GeneratePlanRequest a = request("北京市", 3000, "美食, 历史");
+		GeneratePlanRequest b = request(" 北京 ", 3100, "历史、美食");
+		GeneratePlanRequest c = request("北京", 5000, "历史,美食");
+
+		assertEquals(cache.keyOf(a), cache.keyOf(b));
+		assertNotEquals(cache.keyOf(a), cache.keyOf(c));
+	}
+
+	@Test
+	void diskTierSurvivesRestartAndFallbackIsNotCached() {
+		GeneratePlanRequest request = request("成都", 4000, "美食");
+
+		GeneratedPlanResponse fallback = new GeneratedPlanResponse();
+		fallback.setFallback(true);
+		PlanCacheService first = newCache(cacheDir.toString());
+		first.put(request, fallback);
+		assertTrue(first.get(request).isEmpty());
+
+		GeneratedPlanResponse plan = new GeneratedPlanResponse();
+		plan.setSummary("成都美食之旅");
+		first.put(request, plan);
+
+		PlanCacheService restarted = newCache(cacheDir.toString());
+		assertEquals("成都美食之旅", restarted.get(request).orElseThrow().getSummary());
+	}
+
+	private PlanCacheService newCache(String diskDir) {
+		return new PlanCacheService(new SimpleMeterRegistry(), true, 100,
+				Duration.ofHours(1), 0.1, diskDir, Duration.ofDays(1));
+	}
+
+	private GeneratePlanRequest request(String destination, int budget, String preferences) {
+		GeneratePlanRequest request = new GeneratePlanRequest();
+		request.setUserInput("测试");
+		request.setDestination(destination);
+		request.setDuration(3);
+		request.setBudget(BigDecimal.valueOf(budget));
+		request.setTravelers(2);
+		request.setPreferences(preferences);
+		return request;
+	}
+}
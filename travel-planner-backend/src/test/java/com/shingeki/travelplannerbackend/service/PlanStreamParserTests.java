@@ -0,0 +1,86 @@
+package com.shingeki.travelplannerbackend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shingeki.travelplannerbackend.dto.GeneratedPlanResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlanStreamParserTests {
+
+	private static final String PLAN = """
+			```json
+			{
+			  "summary": "成都美食之旅",
+			  "dailyPlans": [
+			    {"day": 1, "title": "宽窄巷子", "activities": [
+			      {"time": "09:00-11:00", "type": "attraction", "title": "宽窄巷子", "estimatedCost": 0},
+			      {"time": "12:00-13:00", "type": "restaurant", "title": "午餐", "estimatedCost": 80.5}
+			    ]},
+			    {"day": 2, "title": "熊猫基地", "activities": [
+			      {"time": "08:00-11:00", "type": "attraction", "title": "熊猫基地", "estimatedCost": 55}
+			    ]}
+			  ],
+			  "budgetBreakdown": {"accommodation": 600, "food": 400, "transport": 100, "attraction": 55, "shopping": 0, "other": 0},
+			  "tips": ["早点出发"]
+			}
+			```
+			""";
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Test
+	void emitsActivitiesAndDaysWhileFeedingSmallChunks() {
+		List<Integer> days = new ArrayList<>();
+		List<String> activities = new ArrayList<>();
+		PlanStreamParser parser = new PlanStreamParser(objectMapper,
+				dayPlan -> days.add(dayPlan.getDay()),
+				(day, activity) -> activities.add(day + ":" + activity.getTitle()));
+
+		for (int i = 0; i < PLAN.length(); i += 7) {
+			parser.feed(PLAN.substring(i, Math.min(PLAN.length(), i + 7)));
+		}
+
+		assertTrue(parser.isComplete());
+		assertEquals(List.of(1, 2), days);
+		assertEquals(List.of("1:宽窄巷子", "1:午餐", "2:熊猫基地"), activities);
+
+		GeneratedPlanResponse response = parser.finish();
+		assertEquals("成都美食之旅", response.getSummary());
+		assertEquals(2, response.getDailyPlans().size());
+		assertEquals(80.5, response.getDailyPlans().get(0).getActivities().get(1).getEstimatedCost());
+		assertEquals(400.0, response.getBudgetBreakdown().getFood());
+		assertEquals(List.of("早点出发"), response.getTips());
+	}
+
+	@Test
+	void salvagesCompletedDaysBeforeTruncation() {
+		PlanStreamParser parser = new PlanStreamParser(objectMapper, dayPlan -> {
+		});
+
+		parser.feed(PLAN.substring(0, PLAN.indexOf("熊猫基地\", \"activities")));
+
+		assertFalse(parser.isComplete());
+		GeneratedPlanResponse response = parser.finish();
+		assertEquals("成都美食之旅", response.getSummary());
+		assertEquals(1, response.getDailyPlans().size());
+		assertEquals(2, response.getDailyPlans().get(0).getActivities().size());
+	}
+
+	@Test
+	void stopsAtStrayTextButKeepsEarlierDays() {
+		PlanStreamParser parser = new PlanStreamParser(objectMapper, dayPlan -> {
+		});
+
+		String broken = PLAN.replace("{\"day\": 2", "（第二天略）{\"day\": 2");
+		parser.feed(broken);
+
+		assertFalse(parser.isComplete());
+		assertEquals(1, parser.getDays().size());
+		assertNull(new PlanStreamParser(objectMapper, dayPlan -> {
+		}).finish());
+	}
+}
@@ -0,0 +1,61 @@
+package com.shingeki.travelplannerbackend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.shingeki.travelplannerbackend.dto.PoiDTO;
+import com.shingeki.travelplannerbackend.support.Json;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PoiIndexTests {
+
+	private static final String PANDA_BASE = "{\"status\":\"1\",\"count\":\"1\",\"pois\":[{\"id\":\"B001C7X9LU\","
+			+ "\"name\":\"成都大熊猫繁育研究基地\",\"type\":\"风景名胜;风景名胜相关;旅游景点\",\"address\":\"熊猫大道1375号\","
+			+ "\"location\":\"104.146,30.733\",\"pname\":\"四川省\",\"cityname\":\"成都市\",\"adname\":\"成华区\"}]}";
+
+	private final PoiIndex index = new PoiIndex(new SimpleMeterRegistry(), true, 1000, 5000,
+			"classpath:poi/seed-landmarks.json");
+
+	@Test
+	void answersRepeatedAndSameNameQueriesFromIndex() throws Exception {
+		assertNull(index.searchResponse("熊猫基地", "成都"));
+		index.addSearchResult("熊猫基地", "成都", PANDA_BASE);
+
+		// 相同查询(规范化后)以及地点名称本身都命中
+		JsonNode byQuery = Json.MAPPER.readTree(index.searchResponse(" 熊猫基地 ", "成都市"));
+		assertEquals("1", byQuery.path("status").asText());
+		assertEquals("104.146,30.733", byQuery.path("pois").path(0).path("location").asText());
+		assertNotNull(index.searchResponse("成都大熊猫繁育研究基地", "成都"));
+		assertNull(index.searchResponse("成都大熊猫繁育研究基地", "北京"));
+
+		JsonNode geocode = Json.MAPPER.readTree(index.geocodeResponse("故宫博物院", "北京"));
+		assertEquals("北京市东城区故宫博物院", geocode.path("geocodes").path(0).path("formatted_address").asText());
+	}
+
+	@Test
+	void findsNearbyPoisOrderedByDistance() {
+		// 武侯祠与锦里相邻,宽窄巷子约 2.7 公里
+		List<PoiDTO> near = index.nearby(30.646, 104.048, 1000, null, 10);
+		assertEquals(List.of("武侯祠", "锦里古街"), near.stream().map(PoiDTO::getName).sorted().toList());
+		assertTrue(near.get(0).getDistance() <= near.get(1).getDistance());
+
+		List<PoiDTO> wider = index.nearby(30.646, 104.048, 5000, null, 10);
+		assertTrue(wider.stream().anyMatch(poi -> poi.getName().equals("宽窄巷子")));
+		assertTrue(index.nearby(30.646, 104.048, 5000, "博物馆", 10).stream()
+				.allMatch(poi -> poi.getType().contains("博物馆")));
+		assertThrows(IllegalArgumentException.class, () -> index.nearby(30.646, 104.048, 50000, null, 10));
+	}
+
+	@Test
+	void completesNamesByPrefixWithinCity() {
+		index.addSearchResult("熊猫基地", "成都", PANDA_BASE);
+
+		assertEquals("成都大熊猫繁育研究基地", index.autocomplete("成都大", "成都", 10).get(0).getName());
+		assertEquals(1, index.autocomplete("故宫", null, 10).size());
+		assertTrue(index.autocomplete("故宫", "上海", 10).isEmpty());
+		assertThrows(IllegalArgumentException.class, () -> index.autocomplete(" ", null, 10));
+	}
+}
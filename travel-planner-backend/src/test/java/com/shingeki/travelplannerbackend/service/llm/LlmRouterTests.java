@@ -0,0 +1,232 @@
+package com.shingeki.travelplannerbackend.service.llm;
+
+import com.shingeki.travelplannerbackend.security.CurrentUser;
+import com.shingeki.travelplannerbackend.support.LimitExceededException;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 路由测试,OpenAI 兼容服务商连接本地桩服务
+ */
+class LlmRouterTests {
+
+	private HttpServer stub;
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private final List<String> requestedModels = new ArrayList<>();
+
+	@BeforeEach
+	void startStub() throws Exception {
+		stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		stub.createContext("/v1/chat/completions", exchange -> {
+			String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+			requestedModels.add(body.replaceAll(".*\"model\":\"([^\"]+)\".*", "$1"));
+			boolean stream = body.contains("\"stream\":true");
+			String response = stream
+					? "data: {\"choices\":[{\"delta\":{\"content\":\"{\\\"ok\\\"\"}}]}\n\n"
+					+ "data: {\"choices\":[{\"delta\":{\"content\":\":true}\"}}]}\n\n"
+					+ "data: {\"choices\":[],\"usage\":{\"prompt_tokens\":12,\"completion_tokens\":5}}\n\n"
+					+ "data: [DONE]\n\n"
+					: "{\"choices\":[{\"message\":{\"content\":\"{\\\"ok\\\":true}\"}}],"
+					+ "\"usage\":{\"prompt_tokens\":12,\"completion_tokens\":5}}";
+			byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", stream ? "text/event-stream" : "application/json");
+			exchange.sendResponseHeaders(200, bytes.length);
+			exchange.getResponseBody().write(bytes);
+			exchange.close();
+		});
+		stub.start();
+	}
+
+	@AfterEach
+	void stopStub() {
+		stub.stop(0);
+	}
+
+	@Test
+	void routesTasksToConfiguredModels() {
+		LlmRouter router = router(List.of(openAi()), "openai/small-model", "openai/large-model", Duration.ofSeconds(5));
+
+		LlmResponse parse = router.complete(LlmTask.PARSE, "解析");
+		LlmResponse generate = router.complete(LlmTask.GENERATE, "生成");
+
+		assertEquals("{\"ok\":true}", parse.content());
+		assertEquals("small-model", parse.model());
+		assertEquals("large-model", generate.model());
+		assertEquals(new LlmUsage(12, 5), generate.usage());
+		assertEquals(List.of("small-model", "large-model"), requestedModels);
+	}
+
+	@Test
+	void fallsBackToNextCandidateOnError() {
+		FailingProvider failing = new FailingProvider();
+		LlmRouter router = router(List.of(failing, openAi()), "broken/fast,openai/backup", "openai/large-model",
+				Duration.ofSeconds(5));
+
+		for (int i = 0; i < 4; i++) {
+			assertEquals("backup", router.complete(LlmTask.PARSE, "解析").model());
+		}
+		// 错误率超过阈值后直接跳过出错的候选
+		assertEquals(2, failing.calls);
+	}
+
+	@Test
+	void doesNotRetrySameProviderAfterLocalRejectionOrBadRequest() {
+		FailingProvider limited = new FailingProvider(() -> new LimitExceededException("AI 服务繁忙", Duration.ofSeconds(1)));
+		LlmRouter router = router(List.of(limited, openAi()), "broken/fast,broken/slow,openai/backup",
+				"openai/large-model", Duration.ofSeconds(5));
+
+		// 本地限流对同一服务商的所有模型都一样,直接换其他服务商
+		assertEquals("backup", router.complete(LlmTask.PARSE, "解析").model());
+		assertEquals(1, limited.calls);
+
+		FailingProvider badRequest = new FailingProvider(() -> new RuntimeException("调用 AI API 失败",
+				HttpClientErrorException.create(HttpStatus.BAD_REQUEST, "Bad Request", null, null, null)));
+		LlmRouter strict = router(List.of(badRequest, openAi()), "broken/fast,openai/backup",
+				"openai/large-model", Duration.ofSeconds(5));
+
+		assertThrows(RuntimeException.class, () -> strict.complete(LlmTask.PARSE, "解析"));
+		assertEquals(1, badRequest.calls);
+		// 只有第一次换到了备用模型
+		assertEquals(List.of("backup"), requestedModels);
+	}
+
+	@Test
+	void skipsCandidateWhoseP95ExceedsBudget() {
+		SlowProvider slow = new SlowProvider();
+		LlmRouter router = router(List.of(slow, openAi()), "slow/fast,openai/backup", "openai/large-model",
+				Duration.ofMillis(1));
+
+		assertEquals("fast", router.complete(LlmTask.PARSE, "解析").model());
+		assertEquals("fast", router.complete(LlmTask.PARSE, "解析").model());
+		assertEquals("backup", router.complete(LlmTask.PARSE, "解析").model());
+	}
+
+	@Test
+	void streamsThroughOpenAiCompatibleStub() {
+		LlmRouter router = router(List.of(openAi()), "openai/small-model", "openai/large-model", Duration.ofSeconds(5));
+
+		StringBuilder output = new StringBuilder();
+		LlmUsage usage = router.stream(LlmTask.GENERATE, "生成", output::append);
+
+		assertEquals("{\"ok\":true}", output.toString());
+		assertEquals(new LlmUsage(12, 5), usage);
+	}
+
+	@Test
+	void recordsUsageAndCostPerUser() {
+		AiUsageTracker usageTracker = new AiUsageTracker(registry, "large-model=1/2", 100);
+		LlmRouter router = router(List.of(openAi()), "openai/small-model", "openai/large-model",
+				Duration.ofSeconds(5), usageTracker);
+		UUID userId = UUID.randomUUID();
+
+		CurrentUser.wrap(userId, () -> router.stream(LlmTask.GENERATE, "生成", chunk -> {
+		})).run();
+		router.complete(LlmTask.PARSE, "解析");
+
+		// 12 * 1 / 1000 + 5 * 2 / 1000
+		Map<String, Object> usage = usageTracker.userSnapshot(userId.toString());
+		assertEquals(1L, usage.get("calls"));
+		assertEquals(12L, usage.get("inputTokens"));
+		assertEquals(0.022, (double) usage.get("cost"), 1e-9);
+		assertEquals(1L, usageTracker.userSnapshot(AiUsageTracker.ANONYMOUS).get("calls"));
+		assertEquals(0.022, registry.get("ai.llm.cost").tag("model", "large-model").counter().count(), 1e-9);
+		assertEquals(1, registry.get("ai.llm.first_token").timer().count());
+	}
+
+	private LlmRouter router(List<LlmProvider> providers, String parseModels, String generateModels,
+							 Duration parseBudget) {
+		return router(providers, parseModels, generateModels, parseBudget, new AiUsageTracker(registry, "", 100));
+	}
+
+	private LlmRouter router(List<LlmProvider> providers, String parseModels, String generateModels,
+							 Duration parseBudget, AiUsageTracker usageTracker) {
+		return new LlmRouter(providers, registry, usageTracker, parseModels, parseBudget,
+				generateModels, Duration.ofSeconds(60), 0.5, 2, Duration.ofMinutes(1));
+	}
+
+	private OpenAiCompatibleProvider openAi() {
+		return new OpenAiCompatibleProvider(new RestTemplate(),
+				"http://127.0.0.1:" + stub.getAddress().getPort() + "/v1", "");
+	}
+
+	private static class FailingProvider implements LlmProvider {
+
+		private final Supplier<RuntimeException> error;
+		private int calls;
+
+		private FailingProvider() {
+			this(() -> new RuntimeException("调用 AI API 失败: 503"));
+		}
+
+		private FailingProvider(Supplier<RuntimeException> error) {
+			this.error = error;
+		}
+
+		@Override
+		public String name() {
+			return "broken";
+		}
+
+		@Override
+		public boolean isAvailable() {
+			return true;
+		}
+
+		@Override
+		public LlmResponse complete(String model, String prompt) {
+			calls++;
+			throw error.get();
+		}
+
+		@Override
+		public LlmUsage stream(String model, String prompt, Consumer<String> onChunk) {
+			return LlmUsage.EMPTY;
+		}
+	}
+
+	private static class SlowProvider implements LlmProvider {
+
+		@Override
+		public String name() {
+			return "slow";
+		}
+
+		@Override
+		public boolean isAvailable() {
+			return true;
+		}
+
+		@Override
+		public LlmResponse complete(String model, String prompt) {
+			try {
+				Thread.sleep(5);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return new LlmResponse("{}", name(), model, LlmUsage.EMPTY);
+		}
+
+		@Override
+		public LlmUsage stream(String model, String prompt, Consumer<String> onChunk) {
+			return LlmUsage.EMPTY;
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package com.shingeki.travelplannerbackend.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTests {
+
+	@Test
+	void rejectsFastWhenQueueIsFull() {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 4, 0.5,
+				Duration.ofSeconds(10), 0, Duration.ofSeconds(1), Duration.ofSeconds(7));
+
+		AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire();
+		LimitExceededException ex = assertThrows(LimitExceededException.class, limiter::acquire);
+		assertEquals(Duration.ofSeconds(7), ex.getRetryAfter());
+		assertEquals(1, limiter.getRejected());
+
+		permit.onSuccess();
+		assertEquals(0, limiter.getInFlight());
+		limiter.acquire().onIgnore();
+	}
+
+	@Test
+	void waitingCallerProceedsWhenPermitReleased() throws Exception {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 4, 0.5,
+				Duration.ofSeconds(10), 1, Duration.ofSeconds(5), Duration.ofSeconds(1));
+
+		AdaptiveConcurrencyLimiter.Permit first = limiter.acquire();
+		Thread waiter = new Thread(() -> limiter.acquire().onSuccess());
+		waiter.start();
+		while (limiter.getQueueDepth() == 0) {
+			Thread.sleep(5);
+		}
+
+		first.onSuccess();
+		waiter.join(2000);
+		assertFalse(waiter.isAlive());
+		assertEquals(0, limiter.getRejected());
+	}
+
+	@Test
+	void limitShrinksOnDropsAndGrowsOnSuccess() {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 2, 16, 0.5,
+				Duration.ofSeconds(10), 0, Duration.ZERO, Duration.ofSeconds(1));
+
+		limiter.acquire().onDropped();
+		assertEquals(4, limiter.getLimit());
+		limiter.acquire().onDropped();
+		limiter.acquire().onDropped();
+		assertEquals(2, limiter.getLimit());
+
+		for (int i = 0; i < 20; i++) {
+			AdaptiveConcurrencyLimiter.Permit a = limiter.acquire();
+			AdaptiveConcurrencyLimiter.Permit b = limiter.acquire();
+			a.onSuccess();
+			b.onSuccess();
+		}
+		assertTrue(limiter.getLimit() > 2);
+	}
+}
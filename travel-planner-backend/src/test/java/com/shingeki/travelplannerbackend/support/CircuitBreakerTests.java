@@ -0,0 +1,46 @@
+package com.shingeki.travelplannerbackend.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTests {
+
+	@Test
+	void opensAfterFailureRateAndRecoversThroughHalfOpen() throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker(4, 4, 0.5, Duration.ofMillis(50), 1);
+
+		for (int i = 0; i < 2; i++) {
+			assertTrue(breaker.tryAcquire());
+			breaker.onSuccess();
+		}
+		for (int i = 0; i < 2; i++) {
+			assertTrue(breaker.tryAcquire());
+			breaker.onFailure();
+		}
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		assertFalse(breaker.tryAcquire());
+		assertEquals(1, breaker.getNotPermitted());
+
+		Thread.sleep(60);
+		assertTrue(breaker.tryAcquire());
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+		assertFalse(breaker.tryAcquire());
+		breaker.onSuccess();
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+	}
+
+	@Test
+	void failedProbeReopens() throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker(2, 1, 0.5, Duration.ofMillis(20), 1);
+
+		assertTrue(breaker.tryAcquire());
+		breaker.onFailure();
+		Thread.sleep(30);
+		assertTrue(breaker.tryAcquire());
+		breaker.onFailure();
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+	}
+}
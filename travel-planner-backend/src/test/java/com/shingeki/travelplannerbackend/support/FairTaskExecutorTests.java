@@ -0,0 +1,72 @@
+package com.shingeki.travelplannerbackend.support;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FairTaskExecutorTests {
+
+	private String caller;
+
+	@Test
+	void takesQueuedTasksFromCallersInTurn() throws Exception {
+		FairTaskExecutor executor = new FairTaskExecutor("fair-test-", 1, 10, () -> caller, task -> task);
+		List<String> order = new CopyOnWriteArrayList<>();
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(5);
+
+		// A 占住唯一的线程并再排 3 个任务,B 后到的任务不必等 A 全部完成
+		caller = "A";
+		executor.execute(() -> {
+			await(release);
+			order.add("A");
+			done.countDown();
+		});
+		for (int i = 0; i < 3; i++) {
+			executor.execute(() -> {
+				order.add("A");
+				done.countDown();
+			});
+		}
+		caller = "B";
+		executor.execute(() -> {
+			order.add("B");
+			done.countDown();
+		});
+		assertEquals(4, executor.getQueueSize());
+
+		release.countDown();
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertEquals(List.of("A", "A", "B", "A", "A"), order);
+		executor.destroy();
+	}
+
+	@Test
+	void rejectsWhenQueueIsFull() {
+		FairTaskExecutor executor = new FairTaskExecutor("fair-test-", 1, 1, () -> "A", task -> task);
+		CountDownLatch release = new CountDownLatch(1);
+
+		executor.execute(() -> await(release));
+		executor.execute(() -> {
+		});
+		assertThrows(TaskRejectedException.class, () -> executor.execute(() -> {
+		}));
+
+		release.countDown();
+		executor.destroy();
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
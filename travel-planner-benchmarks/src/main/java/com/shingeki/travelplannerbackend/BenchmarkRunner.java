@@ -0,0 +1,31 @@
+package com.shingeki.travelplannerbackend;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 基准测试入口:在 JMH 命令行参数之外默认开启 GC 分析(-prof gc),
+ * 每个基准同时输出吞吐量和每次调用的分配字节数(gc.alloc.rate.norm),结果写入 jmh-result.json
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar                    # 全部基准
+ * java -jar target/benchmarks.jar PlanJsonBenchmark  # 只运行某一组
+ * </pre>
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        Options options = new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(commandLine.getResultFormat().orElse(ResultFormatType.JSON))
+                .result(commandLine.getResult().orElse("jmh-result.json"))
+                .build();
+        new Runner(options).run();
+    }
+}
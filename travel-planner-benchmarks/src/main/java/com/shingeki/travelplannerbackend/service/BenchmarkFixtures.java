@@ -0,0 +1,194 @@
+package com.shingeki.travelplannerbackend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shingeki.travelplannerbackend.dto.GeneratePlanRequest;
+import com.shingeki.travelplannerbackend.dto.GeneratedPlanResponse;
+import com.shingeki.travelplannerbackend.service.llm.AiUsageTracker;
+import com.shingeki.travelplannerbackend.service.llm.LlmProvider;
+import com.shingeki.travelplannerbackend.service.llm.LlmResponse;
+import com.shingeki.travelplannerbackend.service.llm.LlmRouter;
+import com.shingeki.travelplannerbackend.service.llm.LlmUsage;
+import com.shingeki.travelplannerbackend.support.CircuitBreaker;
+import com.shingeki.travelplannerbackend.support.Json;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.core.task.SyncTaskExecutor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 基准测试数据:以录制的成都三日游计划为模板,按天循环扩展为 3/7/14 天的计划,
+ * 并生成与模型输出一致的完整格式(```json 包裹、缩进)和紧凑格式文本
+ */
+final class BenchmarkFixtures {
+
+    private static final GeneratedPlanResponse TEMPLATE = loadTemplate();
+
+    private BenchmarkFixtures() {
+    }
+
+    static GeneratedPlanResponse plan(int days) {
+        GeneratedPlanResponse plan = new GeneratedPlanResponse();
+        plan.setDestination("成都");
+        plan.setSummary(TEMPLATE.getSummary());
+        plan.setTips(TEMPLATE.getTips());
+
+        List<GeneratedPlanResponse.DayPlan> dailyPlans = new ArrayList<>();
+        List<GeneratedPlanResponse.DayPlan> templateDays = TEMPLATE.getDailyPlans();
+        for (int day = 1; day <= days; day++) {
+            GeneratedPlanResponse.DayPlan source = templateDays.get((day - 1) % templateDays.size());
+            GeneratedPlanResponse.DayPlan dayPlan = new GeneratedPlanResponse.DayPlan();
+            dayPlan.setDay(day);
+            List<GeneratedPlanResponse.Activity> activities = new ArrayList<>();
+            for (GeneratedPlanResponse.Activity activity : source.getActivities()) {
+                GeneratedPlanResponse.Activity copy = new GeneratedPlanResponse.Activity();
+                copy.setTime(activity.getTime());
+                copy.setType(activity.getType());
+                copy.setTitle(activity.getTitle());
+                copy.setDescription(activity.getDescription());
+                copy.setLocation(activity.getLocation());
+                copy.setEstimatedCost(activity.getEstimatedCost());
+                activities.add(copy);
+            }
+            dayPlan.setActivities(activities);
+            dailyPlans.add(dayPlan);
+        }
+        plan.setDailyPlans(dailyPlans);
+        plan.setBudgetBreakdown(PlanBudgets.recompute(dailyPlans));
+        return plan;
+    }
+
+    /**
+     * 完整格式的模型输出
+     */
+    static String verboseOutput(GeneratedPlanResponse plan) {
+        try {
+            return "```json\n" + Json.MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(plan) + "\n```";
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 紧凑格式的模型输出,见 CompactPlanCodec
+     */
+    static String compactOutput(GeneratedPlanResponse plan) {
+        ObjectMapper mapper = Json.MAPPER;
+        List<Object> days = new ArrayList<>();
+        for (GeneratedPlanResponse.DayPlan dayPlan : plan.getDailyPlans()) {
+            List<Object> activities = new ArrayList<>();
+            for (GeneratedPlanResponse.Activity activity : dayPlan.getActivities()) {
+                activities.add(List.of(activity.getTime(), typeCode(activity.getType()), activity.getTitle(),
+                        activity.getDescription(), activity.getLocation(), activity.getEstimatedCost()));
+            }
+            days.add(List.of(dayPlan.getDay(), activities));
+        }
+        GeneratedPlanResponse.BudgetBreakdown budget = plan.getBudgetBreakdown();
+        try {
+            return "{\"s\":" + mapper.writeValueAsString(plan.getSummary())
+                    + ",\"d\":" + mapper.writeValueAsString(days)
+                    + ",\"b\":" + mapper.writeValueAsString(List.of(budget.getAccommodation(), budget.getFood(),
+                    budget.getTransport(), budget.getAttraction(), budget.getShopping(), budget.getOther()))
+                    + ",\"t\":" + mapper.writeValueAsString(plan.getTips()) + "}";
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static GeneratePlanRequest request(int days) {
+        GeneratePlanRequest request = new GeneratePlanRequest();
+        request.setUserInput("下个月和朋友去成都玩" + days + "天，想吃火锅、看熊猫，预算每人五千");
+        request.setDestination("成都");
+        request.setDuration(days);
+        request.setBudget(BigDecimal.valueOf(5000L * days / 3));
+        request.setTravelers(2);
+        request.setPreferences("美食,文化,自然");
+        request.setAdditionalRequirements("住宿靠近地铁站");
+        return request;
+    }
+
+    /**
+     * 不连接模型的 AIService,用于测量提示词构建和响应解析
+     */
+    static AIService aiService(String outputFormat) {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        LlmProvider provider = new LlmProvider() {
+            @Override
+            public String name() {
+                return "bench";
+            }
+
+            @Override
+            public boolean isAvailable() {
+                return true;
+            }
+
+            @Override
+            public LlmResponse complete(String model, String prompt) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public LlmUsage stream(String model, String prompt, Consumer<String> onChunk) {
+                throw new UnsupportedOperationException();
+            }
+        };
+        LlmRouter router = new LlmRouter(List.of(provider), registry, new AiUsageTracker(registry, "", 1),
+                "bench/model", Duration.ofSeconds(5),
+                "bench/model", Duration.ofSeconds(90), 0.5, 10, Duration.ofSeconds(60));
+        PlanCacheService cache = new PlanCacheService(registry, false, 1, Duration.ofMinutes(1), 0.1, "",
+                Duration.ofMinutes(1));
+        CircuitBreaker breaker = new CircuitBreaker(20, 10, 0.5, Duration.ofSeconds(30), 3);
+
+        // 不补全坐标
+        ItineraryGeoEnricher geoEnricher = new ItineraryGeoEnricher(null, new SyncTaskExecutor(), registry, false,
+                Duration.ofSeconds(1));
+
+        AIService service = new AIService(router, cache, new LocalInputParser(), geoEnricher, new SyncTaskExecutor(),
+                breaker, new SyncTaskExecutor(), registry);
+        setField(service, "planOutputFormat", outputFormat);
+        setField(service, "fanOutMinDays", Integer.MAX_VALUE);
+        return service;
+    }
+
+    private static void setField(Object target, String name, Object value) {
+        try {
+            Field field = target.getClass().getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String typeCode(String type) {
+        return switch (type) {
+            case "transport" -> "t";
+            case "attraction" -> "a";
+            case "restaurant" -> "r";
+            case "accommodation" -> "h";
+            case "shopping" -> "s";
+            default -> type;
+        };
+    }
+
+    private static GeneratedPlanResponse loadTemplate() {
+        try (InputStream in = BenchmarkFixtures.class.getResourceAsStream("/plans/recorded-plan-verbose.txt")) {
+            if (in == null) {
+                throw new IllegalStateException("找不到计划模板 /plans/recorded-plan-verbose.txt");
+            }
+            String text = new String(in.readAllBytes(), StandardCharsets.UTF_8).trim();
+            text = text.substring(text.indexOf('{'), text.lastIndexOf('}') + 1);
+            return Json.PLAN_READER.readValue(text);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.shingeki.travelplannerbackend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shingeki.travelplannerbackend.dto.GeneratePlanRequest;
+import com.shingeki.travelplannerbackend.dto.GeneratedPlanResponse;
+import com.shingeki.travelplannerbackend.support.Json;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 计划 JSON 热点:提取、解析、序列化
+ * baseline* 为改造前的写法(每次新建 ObjectMapper、先读成 JsonNode 再转换),
+ * shared* 为共享的默认 ObjectMapper,tuned* 为 Json 中预先创建的 Reader/Writer(Blackbird)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlanJsonBenchmark {
+
+    @Param({"3", "7", "14"})
+    public int days;
+
+    private final ObjectMapper sharedDefaultMapper = new ObjectMapper();
+
+    private GeneratePlanRequest request;
+    private GeneratedPlanResponse plan;
+    private String verboseOutput;
+    private String verboseJson;
+    private String compactOutput;
+    private AIService verboseService;
+    private AIService compactService;
+
+    @Setup
+    public void setUp() {
+        request = BenchmarkFixtures.request(days);
+        plan = BenchmarkFixtures.plan(days);
+        verboseOutput = BenchmarkFixtures.verboseOutput(plan);
+        compactOutput = BenchmarkFixtures.compactOutput(plan);
+        verboseService = BenchmarkFixtures.aiService("verbose");
+        compactService = BenchmarkFixtures.aiService("compact");
+        verboseJson = verboseService.extractJSON(verboseOutput);
+    }
+
+    @Benchmark
+    public String extractJson() {
+        return verboseService.extractJSON(verboseOutput);
+    }
+
+    @Benchmark
+    public GeneratedPlanResponse parseAIResponseVerbose() {
+        return verboseService.parseAIResponse(verboseOutput, request);
+    }
+
+    @Benchmark
+    public GeneratedPlanResponse parseAIResponseCompact() {
+        return compactService.parseAIResponse(compactOutput, request);
+    }
+
+    @Benchmark
+    public GeneratedPlanResponse baselineReadTreeNewMapper() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode root = mapper.readTree(verboseJson);
+        return mapper.treeToValue(root, GeneratedPlanResponse.class);
+    }
+
+    @Benchmark
+    public GeneratedPlanResponse sharedReadTree() throws Exception {
+        JsonNode root = sharedDefaultMapper.readTree(verboseJson);
+        return sharedDefaultMapper.treeToValue(root, GeneratedPlanResponse.class);
+    }
+
+    @Benchmark
+    public GeneratedPlanResponse sharedReadValue() throws Exception {
+        return sharedDefaultMapper.readValue(verboseJson, GeneratedPlanResponse.class);
+    }
+
+    @Benchmark
+    public GeneratedPlanResponse tunedReader() throws Exception {
+        return Json.PLAN_READER.readValue(verboseJson);
+    }
+
+    @Benchmark
+    public String baselineWriteNewMapper() throws Exception {
+        return new ObjectMapper().writeValueAsString(plan);
+    }
+
+    @Benchmark
+    public String sharedWrite() throws Exception {
+        return sharedDefaultMapper.writeValueAsString(plan);
+    }
+
+    @Benchmark
+    public String tunedWriter() throws Exception {
+        return Json.PLAN_WRITER.writeValueAsString(plan);
+    }
+}
@@ -0,0 +1,57 @@
+package com.shingeki.travelplannerbackend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shingeki.travelplannerbackend.dto.GeneratedPlanResponse;
+import com.shingeki.travelplannerbackend.support.Json;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流式输出的逐块解析:完整格式与紧凑格式
+ * 输出按每块约 32 个字符切分,模拟 SSE 增量到达;输出 token 数的对比见后端 CompactPlanCodecTests
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlanStreamBenchmark {
+
+    private static final int CHUNK_SIZE = 32;
+
+    @Param({"3", "7", "14"})
+    public int days;
+
+    @Param({"verbose", "compact"})
+    public String format;
+
+    private final ObjectMapper objectMapper = Json.MAPPER;
+
+    private String[] chunks;
+    private boolean compact;
+
+    @Setup
+    public void setUp() {
+        GeneratedPlanResponse plan = BenchmarkFixtures.plan(days);
+        compact = "compact".equals(format);
+        String output = compact ? BenchmarkFixtures.compactOutput(plan) : BenchmarkFixtures.verboseOutput(plan);
+        int count = (output.length() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        chunks = new String[count];
+        for (int i = 0; i < count; i++) {
+            chunks[i] = output.substring(i * CHUNK_SIZE, Math.min(output.length(), (i + 1) * CHUNK_SIZE));
+        }
+    }
+
+    @Benchmark
+    public GeneratedPlanResponse streamParse() {
+        PlanStreamParser parser = new PlanStreamParser(objectMapper, dayPlan -> {
+        }, (day, activity) -> {
+        }, compact);
+        for (String chunk : chunks) {
+            parser.feed(chunk);
+        }
+        return parser.finish();
+    }
+}
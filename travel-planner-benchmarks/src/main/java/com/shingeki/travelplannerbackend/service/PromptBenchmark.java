@@ -0,0 +1,42 @@
+package com.shingeki.travelplannerbackend.service;
+
+import com.shingeki.travelplannerbackend.dto.GeneratePlanRequest;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 生成计划提示词的构建开销(紧凑/完整两种输出格式)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PromptBenchmark {
+
+    @Param({"3", "7", "14"})
+    public int days;
+
+    private GeneratePlanRequest request;
+    private AIService verboseService;
+    private AIService compactService;
+
+    @Setup
+    public void setUp() {
+        request = BenchmarkFixtures.request(days);
+        verboseService = BenchmarkFixtures.aiService("verbose");
+        compactService = BenchmarkFixtures.aiService("compact");
+    }
+
+    @Benchmark
+    public String buildPromptVerbose() {
+        return verboseService.buildPrompt(request);
+    }
+
+    @Benchmark
+    public String buildPromptCompact() {
+        return compactService.buildPrompt(request);
+    }
+}
@@ -0,0 +1,63 @@
+package com.shingeki.travelplannerbackend.service;
+
+import com.shingeki.travelplannerbackend.dto.TravelPlanDTO;
+import com.shingeki.travelplannerbackend.dto.TravelPlanDetailDTO;
+import com.shingeki.travelplannerbackend.entity.TravelPlan;
+import com.shingeki.travelplannerbackend.support.Json;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TravelPlanService 的实体到 DTO 转换,以及详情接口返回计划时的序列化
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TravelPlanDtoBenchmark {
+
+    @Param({"3", "7", "14"})
+    public int days;
+
+    private final TravelPlanService travelPlanService = new TravelPlanService();
+    private TravelPlan plan;
+
+    @Setup
+    public void setUp() throws Exception {
+        plan = new TravelPlan();
+        plan.setId(UUID.randomUUID());
+        plan.setUserId(UUID.randomUUID());
+        plan.setDestination("成都");
+        plan.setStartDate(LocalDate.of(2026, 5, 1));
+        plan.setEndDate(LocalDate.of(2026, 5, days));
+        plan.setDuration(days);
+        plan.setBudget(BenchmarkFixtures.request(days).getBudget());
+        plan.setTravelers(2);
+        plan.setPreferences(new String[]{"美食", "文化", "自然"});
+        plan.setStatus("planning");
+        plan.setAiGeneratedPlan(Json.PLAN_WRITER.writeValueAsString(BenchmarkFixtures.plan(days)));
+        plan.setCreatedAt(LocalDateTime.now());
+        plan.setUpdatedAt(LocalDateTime.now());
+    }
+
+    @Benchmark
+    public TravelPlanDTO convertToDTO() {
+        return travelPlanService.convertToDTO(plan);
+    }
+
+    @Benchmark
+    public TravelPlanDetailDTO convertToDetailDTO() {
+        return travelPlanService.convertToDetailDTO(plan);
+    }
+
+    @Benchmark
+    public String serializeDetailDTO() throws Exception {
+        return Json.MAPPER.writeValueAsString(travelPlanService.convertToDetailDTO(plan));
+    }
+}
@@ -0,0 +1,50 @@
+package com.shingeki.travelplannerbackend.support;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每个请求都要解析的小 JSON:JWT 头部(SupabaseJwtValidator)和语音识别消息(SpeechWebSocketHandler)
+ * 改造前 JWT 头部每次都新建 ObjectMapper 解析
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SmallPayloadBenchmark {
+
+    private static final String JWT_HEADER = "{\"alg\":\"HS256\",\"kid\":\"Yj3vF1kQ8pZs2mXc\",\"typ\":\"JWT\"}";
+    private static final String SPEECH_MESSAGE = "{\"type\":\"audio\",\"status\":1,\"data\":\"UklGRiQAAABXQVZFZm10IBAAAAABAAEAQB8AAIA+AAACABAAZGF0YQAAAAA=\"}";
+
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {
+    };
+
+    private final ObjectMapper sharedDefaultMapper = new ObjectMapper();
+
+    @Benchmark
+    public Map<String, Object> jwtHeaderBaselineNewMapper() throws Exception {
+        return new ObjectMapper().readValue(JWT_HEADER, MAP_TYPE);
+    }
+
+    @Benchmark
+    public Map<String, Object> jwtHeaderTunedReader() throws Exception {
+        return Json.MAP_READER.readValue(JWT_HEADER);
+    }
+
+    @Benchmark
+    public JsonNode speechMessageSharedMapper() throws Exception {
+        return sharedDefaultMapper.readTree(SPEECH_MESSAGE);
+    }
+
+    @Benchmark
+    public JsonNode speechMessageTunedMapper() throws Exception {
+        return Json.MAPPER.readTree(SPEECH_MESSAGE);
+    }
+}
@@ -35,6 +35,22 @@ export const getTravelPlans = async (): Promise<TravelPlan[]> => {
   return response.data
 }
 
+export interface TravelPlanPage {
+  items: TravelPlan[]
+  nextCursor: string | null
+}
+
+/**
+ * 分页获取用户的旅行计划(按创建时间倒序)
+ * cursor 传上一页返回的 nextCursor,不传时取第一页
+ */
+export const getTravelPlanPage = async (
+  params: { status?: TravelPlan['status']; cursor?: string; size?: number } = {}
+): Promise<TravelPlanPage> => {
+  const response = await apiClient.get('/travel-plans/page', { params })
+  return response.data
+}
+
 /**
  * 根据ID获取旅行计划详情
  */
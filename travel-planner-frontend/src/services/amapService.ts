@@ -1,5 +1,6 @@
 // src/services/amapService.ts
 // 高德地图服务 - 地理编码和路线规划
+import { supabase } from '@/lib/supabase'
 
 declare global {
   interface Window {
@@ -104,7 +105,9 @@ export class AmapService {
         address: destination
       })
 
-      const response = await fetch(`http://localhost:8080/api/map/geocode?${params.toString()}`)
+      const response = await fetch(`http://localhost:8080/api/map/geocode?${params.toString()}`, {
+        headers: await this.authHeaders(),
+      })
       
       if (!response.ok) {
         throw new Error(`HTTP error! status: ${response.status}`)
@@ -153,7 +156,9 @@ export class AmapService {
         params.append('city', city)
       }
 
-      const response = await fetch(`http://localhost:8080/api/map/search?${params.toString()}`)
+      const response = await fetch(`http://localhost:8080/api/map/search?${params.toString()}`, {
+        headers: await this.authHeaders(),
+      })
       
       if (!response.ok) {
         throw new Error(`HTTP error! status: ${response.status}`)
@@ -163,28 +168,7 @@ export class AmapService {
 
       console.log(`地点搜索响应:`, result)
 
-      if (result.status === '1' && result.pois && result.pois.length > 0) {
-        const poi = result.pois[0]
-        const [lng, lat] = poi.location.split(',').map(Number)
-
-        console.log(`✅ 地点搜索成功: ${keyword} -> ${poi.name} [${lng}, ${lat}]`)
-
-        return {
-          success: true,
-          location: {
-            name: poi.name,
-            address: poi.address || (poi.pname + poi.cityname + poi.adname),
-            lng: lng,
-            lat: lat,
-          },
-        }
-      } else {
-        console.warn(`❌ 地点搜索失败: ${keyword}`)
-        return {
-          success: false,
-          error: `未找到地点: ${keyword}`,
-        }
-      }
+      return this.toSearchResult(keyword, result)
     } catch (error: any) {
       console.error(`地点搜索异常: ${keyword}`, error)
       return {
@@ -194,6 +178,84 @@ export class AmapService {
     }
   }
 
+  /**
+   * 批量地点搜索 - 一次请求搜索多个地点，后端去重并发查询
+   * @param keywords 搜索关键词列表
+   * @param city 城市名称（可选）
+   * @returns Promise<GeocodingResult[]> 与 keywords 顺序一致
+   */
+  async searchPlaces(keywords: string[], city?: string): Promise<GeocodingResult[]> {
+    // 与后端 amap.batch.max-queries 保持一致
+    const batchSize = 50
+    const results: GeocodingResult[] = []
+
+    for (let start = 0; start < keywords.length; start += batchSize) {
+      const chunk = keywords.slice(start, start + batchSize)
+      try {
+        const response = await fetch('http://localhost:8080/api/map/search/batch', {
+          method: 'POST',
+          headers: { 'Content-Type': 'application/json', ...(await this.authHeaders()) },
+          body: JSON.stringify({ queries: chunk.map((query) => ({ query, city })) }),
+        })
+
+        if (!response.ok) {
+          throw new Error(`HTTP error! status: ${response.status}`)
+        }
+
+        const body = await response.json()
+        chunk.forEach((keyword, index) => {
+          const item = body.results?.[index]
+          if (item?.status === 'ok' && item.data) {
+            results.push(this.toSearchResult(keyword, item.data))
+          } else {
+            console.warn(`❌ 地点搜索失败: ${keyword}`, item?.error)
+            results.push({ success: false, error: item?.error || `未找到地点: ${keyword}` })
+          }
+        })
+      } catch (error: any) {
+        console.error('批量地点搜索异常', error)
+        chunk.forEach((keyword) => results.push({ success: false, error: `地点搜索异常: ${keyword}` }))
+      }
+    }
+
+    return results
+  }
+
+  /**
+   * 已登录时带上 Authorization，后端按用户公平分配高德查询配额（地图接口不要求登录）
+   */
+  private async authHeaders(): Promise<Record<string, string>> {
+    const { data: { session } } = await supabase.auth.getSession()
+    return session?.access_token ? { Authorization: `Bearer ${session.access_token}` } : {}
+  }
+
+  /**
+   * 将高德地点搜索响应转换为 GeocodingResult，取第一个 POI
+   */
+  private toSearchResult(keyword: string, result: any): GeocodingResult {
+    if (result.status === '1' && result.pois && result.pois.length > 0) {
+      const poi = result.pois[0]
+      const [lng, lat] = poi.location.split(',').map(Number)
+
+      console.log(`✅ 地点搜索成功: ${keyword} -> ${poi.name} [${lng}, ${lat}]`)
+
+      return {
+        success: true,
+        location: {
+          name: poi.name,
+          address: poi.address || (poi.pname + poi.cityname + poi.adname),
+          lng: lng,
+          lat: lat,
+        },
+      }
+    }
+    console.warn(`❌ 地点搜索失败: ${keyword}`)
+    return {
+      success: false,
+      error: `未找到地点: ${keyword}`,
+    }
+  }
+
   /**
    * 地理编码 - 将地点名称/地址转换为坐标（已废弃，推荐使用 searchPlace）
    * @param address 地点名称或地址